@@ -0,0 +1,48 @@
+package com.example.account.benchmark;
+
+import com.example.account.dto.AccountDto;
+import com.example.account.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌 생성과 사용자별 계좌 목록 조회.
+ * 목록 조회는 캐시가 채워진 뒤의 값이므로, 캐시를 뺀 비용은 account.cache.local.maximum-size=0 으로 따로 잰다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class AccountServiceBenchmark {
+    private static final long CREATE_USER_ID = 1L;
+    private static final long QUERY_USER_ID = 2L;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        accountService = context.getBean(AccountService.class);
+        for (int i = 0; i < 10; i++) {
+            accountService.createAccount(QUERY_USER_ID, 10000L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AccountDto createAccount() {
+        return accountService.createAccount(CREATE_USER_ID, 10000L);
+    }
+
+    @Benchmark
+    public List<AccountDto> getAccountsByUserID() {
+        return accountService.getAccountsByUserID(QUERY_USER_ID);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.account.benchmark;
+
+import com.example.account.dto.TransactionDto;
+import com.example.account.service.AccountService;
+import com.example.account.service.LockService;
+import com.example.account.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 잔액 사용. 컨트롤러와 같이 계좌 락을 잡고 TransactionService.useBalance 를 호출한다.
+ * - uncontended: 스레드마다 자기 계좌만 사용
+ * - contended: 모든 스레드가 한 계좌를 사용
+ * - spread: 여러 계좌 중 임의로 골라 사용
+ * 스레드 수는 jmhThreads 로 바꾼다. 예) ./gradlew jmh -PjmhThreads=8 -PjmhIncludes=TransactionServiceBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TransactionServiceBenchmark {
+    private static final long USER_ID = 3L;
+    private static final long INITIAL_BALANCE = 1_000_000_000_000L;
+    private static final long AMOUNT = 1L;
+    private static final int SPREAD_ACCOUNTS = 1000;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private TransactionService transactionService;
+    private LockService lockService;
+
+    private String sharedAccountNumber;
+    private String[] spreadAccountNumbers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        accountService = context.getBean(AccountService.class);
+        transactionService = context.getBean(TransactionService.class);
+        lockService = context.getBean(LockService.class);
+
+        sharedAccountNumber = accountService.createAccount(USER_ID, INITIAL_BALANCE).getAccountNumber();
+        spreadAccountNumbers = new String[SPREAD_ACCOUNTS];
+        for (int i = 0; i < SPREAD_ACCOUNTS; i++) {
+            spreadAccountNumbers[i] = accountService.createAccount(USER_ID, INITIAL_BALANCE).getAccountNumber();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class OwnAccount {
+        private String accountNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(TransactionServiceBenchmark benchmark) {
+            accountNumber = benchmark.accountService.createAccount(USER_ID, INITIAL_BALANCE).getAccountNumber();
+        }
+    }
+
+    @Benchmark
+    public TransactionDto useBalanceUncontended(OwnAccount ownAccount) {
+        return useBalance(ownAccount.accountNumber);
+    }
+
+    @Benchmark
+    public TransactionDto useBalanceContended() {
+        return useBalance(sharedAccountNumber);
+    }
+
+    @Benchmark
+    public TransactionDto useBalanceSpread() {
+        return useBalance(spreadAccountNumbers[ThreadLocalRandom.current().nextInt(SPREAD_ACCOUNTS)]);
+    }
+
+    private TransactionDto useBalance(String accountNumber) {
+        lockService.lock(accountNumber);
+        try {
+            return transactionService.useBalance(USER_ID, accountNumber, AMOUNT);
+        } finally {
+            lockService.unlock(accountNumber);
+        }
+    }
+}
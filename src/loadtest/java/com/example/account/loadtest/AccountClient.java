@@ -0,0 +1,78 @@
+package com.example.account.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * 부하 테스트가 호출하는 엔드포인트. 실패 응답(HTTP 200 이 아님)은 null 을 반환한다.
+ */
+class AccountClient {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+
+    AccountClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .build();
+    }
+
+    String createAccount(long userID, long initialBalance) throws IOException, InterruptedException {
+        JsonNode response = post("/account", String.format(
+                "{\"userID\":%d,\"initialBalance\":%d}", userID, initialBalance));
+        return response == null ? null : response.get("accountNumber").asText();
+    }
+
+    JsonNode getAccounts(long userID) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/account?user_id=" + userID))
+                .timeout(TIMEOUT)
+                .GET()
+                .build());
+    }
+
+    /**
+     * 같은 idempotencyKey 로 다시 보내면 처음 요청의 결과를 돌려받는다.
+     * 응답을 받지 못하면(타임아웃 등) 처리됐는지 알 수 없으므로 IOException 을 그대로 던진다.
+     */
+    JsonNode useBalance(long userID, String accountNumber, long amount, String idempotencyKey)
+            throws IOException, InterruptedException {
+        return send(request("/transaction/use", String.format(
+                "{\"userID\":%d,\"accountNumber\":\"%s\",\"amount\":%d}", userID, accountNumber, amount))
+                .header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                .build());
+    }
+
+    static boolean succeeded(JsonNode useBalanceResponse) {
+        return useBalanceResponse != null && "S".equals(useBalanceResponse.get("transactionResult").asText());
+    }
+
+    private JsonNode post(String path, String body) throws IOException, InterruptedException {
+        return send(request(path, body).build());
+    }
+
+    private HttpRequest.Builder request(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.account.loadtest;
+
+import com.example.account.AccountApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP 부하 테스트
+ * 실제 엔드포인트(POST /account, GET /account, POST /transaction/use)를 정해진 비율로 호출하고
+ * 요청 종류별 처리량과 p50/p99/p999 지연시간을 출력한다. 전체 분포는 build/loadtest/*.hgrm 에 남긴다.
+ * 끝나면 계좌 잔액과 거래 기록이 맞는지(초기 잔액 - 현재 잔액 = 성공한 사용 금액) 확인하고, 틀리면 1 로 종료한다.
+ * 응답을 받지 못한(타임아웃 등) 사용 요청은 unknown 으로 세고, 끝난 뒤 같은 Idempotency-Key 로 다시 보내 거래 ID 를 얻는다.
+ * 앱을 직접 띄운 경우에는 write-behind 가 DB 에 반영할 때까지 기다린 뒤 그 거래 ID 가 DB 에 있는지 확인해 사용 금액에 더한다.
+ *
+ * ./gradlew loadTest -Pargs="--concurrency=256 --zipf=1.2 --app.account.execution.mode=virtual"
+ *
+ * 클라이언트는 응답을 받은 뒤 다음 요청을 보내는 closed-loop 이므로, 지연이 커지면 요청률도 함께 줄어든다.
+ */
+public class LoadTest {
+    private static final long[] USER_IDS = {1L, 2L, 3L, 4L};
+    private static final Path REPORT_DIR = Paths.get("build", "loadtest");
+    private static final long WRITE_BEHIND_TIMEOUT_MILLIS = 30_000;
+
+    private final LoadTestOptions options;
+    private final AccountClient client;
+    private final List<String> accountNumbers = new ArrayList<>();
+    private final Map<String, Long> ownerByAccount = Collections.synchronizedMap(new HashMap<>());
+    private final ZipfianGenerator zipfian;
+    private final Operation[] weightedOperations;
+    private final LongAdder spentAmount = new LongAdder();
+    private final List<UseRequest> unknownUses = Collections.synchronizedList(new ArrayList<>());
+
+    LoadTest(LoadTestOptions options, String baseUrl) {
+        this.options = options;
+        this.client = new AccountClient(baseUrl);
+        this.zipfian = new ZipfianGenerator(options.accounts, options.zipf);
+
+        List<Operation> operations = new ArrayList<>();
+        options.mix.forEach((name, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(Operation.of(name));
+            }
+        });
+        this.weightedOperations = operations.toArray(new Operation[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        System.out.println("load test: " + options);
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.target;
+        if (baseUrl == null) {
+            context = startApplication(options);
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        boolean conserved;
+        try {
+            LoadTest loadTest = new LoadTest(options, baseUrl);
+            loadTest.createAccounts();
+
+            loadTest.run(options.warmupSeconds);
+            Map<Operation, Result> results = loadTest.run(options.durationSeconds);
+            report(results, options.durationSeconds);
+
+            JdbcTemplate jdbcTemplate = context != null ? context.getBean(JdbcTemplate.class) : null;
+            conserved = loadTest.reconcileUnknownUses(jdbcTemplate);
+            conserved &= loadTest.verifyBalances();
+            if (jdbcTemplate != null) {
+                conserved &= loadTest.verifyLedger(jdbcTemplate);
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(conserved ? 0 : 1);
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.redis.port", "16380");
+        properties.put("spring.jpa.properties.hibernate.show_sql", "false");
+        properties.put("spring.jpa.properties.hibernate.format_sql", "false");
+        properties.put("logging.level.root", "warn");
+        properties.put("account.audit.spill-file", "build/loadtest-failed-transactions.spill");
+        properties.putAll(options.appProperties);
+
+        return new SpringApplicationBuilder(AccountApplication.class)
+                .properties(properties)
+                .run();
+    }
+
+    private void createAccounts() throws IOException, InterruptedException {
+        for (int i = 0; i < options.accounts; i++) {
+            long userID = USER_IDS[i % USER_IDS.length];
+            String accountNumber = client.createAccount(userID, options.initialBalance);
+            if (accountNumber == null) {
+                throw new IllegalStateException("계좌를 만들지 못했습니다. userID=" + userID);
+            }
+            accountNumbers.add(accountNumber);
+            ownerByAccount.put(accountNumber, userID);
+        }
+    }
+
+    private Map<Operation, Result> run(int seconds) throws InterruptedException {
+        Map<Operation, Result> results = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            results.put(operation, new Result());
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency);
+        for (int i = 0; i < options.concurrency; i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    Operation operation = weightedOperations[
+                            ThreadLocalRandom.current().nextInt(weightedOperations.length)];
+                    Result result = results.get(operation);
+
+                    long start = System.nanoTime();
+                    Outcome outcome;
+                    try {
+                        outcome = call(operation);
+                    } catch (IOException e) {
+                        outcome = Outcome.FAILED;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    result.latency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                    if (outcome == Outcome.FAILED) {
+                        result.errors.increment();
+                    } else if (outcome == Outcome.UNKNOWN) {
+                        result.unknowns.increment();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        return results;
+    }
+
+    private Outcome call(Operation operation) throws IOException, InterruptedException {
+        switch (operation) {
+            case USE: {
+                String accountNumber = accountNumbers.get(zipfian.next());
+                UseRequest use = new UseRequest(UUID.randomUUID().toString(), ownerByAccount.get(accountNumber),
+                        accountNumber, options.amount);
+                JsonNode response;
+                try {
+                    response = client.useBalance(use.userID, use.accountNumber, use.amount, use.idempotencyKey);
+                } catch (IOException e) {
+                    // 서버가 처리했는지 알 수 없으므로 실패로 세지 않고 끝난 뒤 확인한다.
+                    unknownUses.add(use);
+                    return Outcome.UNKNOWN;
+                }
+                if (!AccountClient.succeeded(response)) {
+                    return Outcome.FAILED;
+                }
+                spentAmount.add(options.amount);
+                return Outcome.SUCCEEDED;
+            }
+            case GET:
+                return client.getAccounts(USER_IDS[ThreadLocalRandom.current().nextInt(USER_IDS.length)]) != null
+                        ? Outcome.SUCCEEDED : Outcome.FAILED;
+            case CREATE: {
+                long userID = USER_IDS[ThreadLocalRandom.current().nextInt(USER_IDS.length)];
+                String accountNumber = client.createAccount(userID, options.initialBalance);
+                if (accountNumber == null) {
+                    return Outcome.FAILED;
+                }
+                ownerByAccount.put(accountNumber, userID);
+                return Outcome.SUCCEEDED;
+            }
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private static void report(Map<Operation, Result> results, int seconds) throws IOException {
+        Files.createDirectories(REPORT_DIR);
+        System.out.printf("%-24s %10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "unknown", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        for (Map.Entry<Operation, Result> entry : results.entrySet()) {
+            Histogram histogram = entry.getValue().latency.getIntervalHistogram();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-24s %10d %8d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey().endpoint,
+                    histogram.getTotalCount(),
+                    entry.getValue().errors.sum(),
+                    entry.getValue().unknowns.sum(),
+                    histogram.getTotalCount() / (double) seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(REPORT_DIR.resolve(entry.getKey().name + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    /**
+     * 응답을 받지 못한 사용 요청을 같은 Idempotency-Key 로 다시 보내 결과를 확정한다.
+     * 처음 요청이 처리됐으면 그 응답(거래 ID)을, 처리되지 않았으면 지금 처리한 결과를 받는다.
+     * jdbcTemplate 이 있으면 write-behind 가 반영될 때까지 기다린 뒤 성공한 거래 ID 가 DB 에 있는지 확인하고,
+     * 있는 것만 사용 금액에 더한다. 없으면 응답만 믿는다.
+     */
+    private boolean reconcileUnknownUses(JdbcTemplate jdbcTemplate) throws InterruptedException {
+        Map<String, Long> succeeded = new HashMap<>();
+        int unresolved = 0;
+        for (UseRequest use : unknownUses) {
+            try {
+                JsonNode response = client.useBalance(use.userID, use.accountNumber, use.amount, use.idempotencyKey);
+                if (AccountClient.succeeded(response)) {
+                    succeeded.put(response.get("transactionID").asText(), use.amount);
+                }
+            } catch (IOException e) {
+                unresolved++;
+            }
+        }
+
+        Set<String> missing = Collections.emptySet();
+        if (jdbcTemplate != null) {
+            long expectedSpent = spentAmount.sum() + succeeded.values().stream().mapToLong(Long::longValue).sum();
+            awaitWriteBehind(jdbcTemplate, expectedSpent);
+            missing = missingTransactions(jdbcTemplate, succeeded.keySet());
+        }
+        for (Map.Entry<String, Long> entry : succeeded.entrySet()) {
+            if (!missing.contains(entry.getKey())) {
+                spentAmount.add(entry.getValue());
+            }
+        }
+
+        boolean reconciled = unresolved == 0 && missing.isEmpty();
+        System.out.printf("unknown check: %d unknown, %d succeeded, %d unresolved, %d missing in DB %s%n",
+                unknownUses.size(), succeeded.size(), unresolved, missing.size(), reconciled ? "OK" : "MISMATCH");
+        return reconciled;
+    }
+
+    // 엔진/Redis 가 잔액 기준이면 DB 반영이 늦으므로, DB 에서 줄어든 잔액이 성공한 사용 금액에 닿을 때까지 기다린다.
+    private void awaitWriteBehind(JdbcTemplate jdbcTemplate, long expectedSpent) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITE_BEHIND_TIMEOUT_MILLIS);
+        while (System.nanoTime() < deadline) {
+            Long spent = jdbcTemplate.queryForObject(
+                    "select count(*) * ? - coalesce(sum(balance), 0) from account", Long.class,
+                    options.initialBalance);
+            if (spent != null && spent >= expectedSpent) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        System.out.println("write-behind check: DB 반영을 기다리다 시간이 지났습니다.");
+    }
+
+    private static Set<String> missingTransactions(JdbcTemplate jdbcTemplate, Set<String> transactionIDs) {
+        Set<String> missing = new HashSet<>(transactionIDs);
+        List<String> ids = new ArrayList<>(transactionIDs);
+        for (int from = 0; from < ids.size(); from += 500) {
+            List<String> chunk = ids.subList(from, Math.min(from + 500, ids.size()));
+            missing.removeAll(jdbcTemplate.queryForList(
+                    "select transaction_id from transaction where transaction_result_type = 'S' " +
+                            "and transaction_id in (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    String.class, chunk.toArray()));
+        }
+        return missing;
+    }
+
+    // API 로 본 잔액 합계가 클라이언트가 성공 응답을 받은 사용 금액만큼 줄었는지 확인한다.
+    private boolean verifyBalances() throws IOException, InterruptedException {
+        long balance = 0;
+        for (long userID : USER_IDS) {
+            JsonNode accounts = client.getAccounts(userID);
+            if (accounts == null) {
+                System.out.println("balance check: GET /account 실패, userID=" + userID);
+                return false;
+            }
+            for (JsonNode account : accounts) {
+                if (ownerByAccount.containsKey(account.get("accountNumber").asText())) {
+                    balance += account.get("balance").asLong();
+                }
+            }
+        }
+
+        long expected = ownerByAccount.size() * options.initialBalance - spentAmount.sum();
+        boolean conserved = balance == expected;
+        System.out.printf("balance check: expected=%d actual=%d %s%n", expected, balance, conserved ? "OK" : "MISMATCH");
+        return conserved;
+    }
+
+    // 계좌마다 (초기 잔액 - 현재 잔액) 이 성공한 거래 기록 합계와 같은지 DB 에서 확인한다.
+    private boolean verifyLedger(JdbcTemplate jdbcTemplate) {
+        List<Map<String, Object>> mismatches = jdbcTemplate.queryForList(
+                "select a.account_number, a.balance, " +
+                        "coalesce(sum(case t.transaction_type when 'USE' then t.amount " +
+                        "when 'CANCELED' then -t.amount end), 0) as ledger " +
+                        "from account a left join transaction t " +
+                        "on t.account_id = a.id and t.transaction_result_type = 'S' " +
+                        "group by a.id, a.account_number, a.balance " +
+                        "having ? - a.balance <> coalesce(sum(case t.transaction_type when 'USE' then t.amount " +
+                        "when 'CANCELED' then -t.amount end), 0)",
+                options.initialBalance);
+
+        boolean conserved = mismatches.isEmpty();
+        System.out.printf("ledger check: %d accounts %s%n", ownerByAccount.size(),
+                conserved ? "OK" : "MISMATCH " + mismatches);
+        return conserved;
+    }
+
+    private enum Outcome {
+        SUCCEEDED, FAILED, UNKNOWN
+    }
+
+    private static class Result {
+        private final Recorder latency = new Recorder(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder unknowns = new LongAdder();
+    }
+
+    private static class UseRequest {
+        private final String idempotencyKey;
+        private final long userID;
+        private final String accountNumber;
+        private final long amount;
+
+        UseRequest(String idempotencyKey, long userID, String accountNumber, long amount) {
+            this.idempotencyKey = idempotencyKey;
+            this.userID = userID;
+            this.accountNumber = accountNumber;
+            this.amount = amount;
+        }
+    }
+}
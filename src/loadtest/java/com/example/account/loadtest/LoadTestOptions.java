@@ -0,0 +1,83 @@
+package com.example.account.loadtest;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * --key=value 형식의 실행 옵션
+ *
+ * --target           이미 떠 있는 서버 주소. 없으면 H2 + embedded Redis 로 앱을 직접 띄운다.
+ * --concurrency      동시에 요청하는 클라이언트 수 (기본 64)
+ * --duration         측정 시간(초) (기본 30)
+ * --warmup           측정 전 워밍업 시간(초) (기본 5)
+ * --accounts         미리 만들어 둘 계좌 수 (기본 1000)
+ * --zipf             계좌 선택 skew. 0 이면 균등 (기본 0.99)
+ * --mix              요청 비율 (기본 use:90,get:8,create:2)
+ * --amount           잔액 사용 금액 (기본 1)
+ * --initial-balance  계좌 초기 잔액 (기본 1000000000)
+ * --app.*            앱을 직접 띄울 때 넘길 설정. 예) --app.account.execution.mode=virtual
+ */
+class LoadTestOptions {
+    final String target;
+    final int concurrency;
+    final int durationSeconds;
+    final int warmupSeconds;
+    final int accounts;
+    final double zipf;
+    final Map<String, Integer> mix;
+    final long amount;
+    final long initialBalance;
+    final Map<String, String> appProperties = new LinkedHashMap<>();
+
+    LoadTestOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("옵션은 --key=value 형식이어야 합니다: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (key.startsWith("app.")) {
+                appProperties.put(key.substring(4), value);
+            } else {
+                options.put(key, value);
+            }
+        }
+
+        target = options.get("target");
+        concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        zipf = Double.parseDouble(options.getOrDefault("zipf", "0.99"));
+        mix = parseMix(options.getOrDefault("mix", "use:90,get:8,create:2"));
+        amount = Long.parseLong(options.getOrDefault("amount", "1"));
+        initialBalance = Long.parseLong(options.getOrDefault("initial-balance", "1000000000"));
+    }
+
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] pair = part.split(":");
+            String operation = pair[0].trim();
+            if (!Operation.NAMES.contains(operation)) {
+                throw new IllegalArgumentException("알 수 없는 요청 종류입니다: " + operation);
+            }
+            mix.put(operation, Integer.parseInt(pair[1].trim()));
+        }
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return "target=" + (target == null ? "embedded" : target)
+                + ", concurrency=" + concurrency
+                + ", duration=" + durationSeconds + "s"
+                + ", warmup=" + warmupSeconds + "s"
+                + ", accounts=" + accounts
+                + ", zipf=" + zipf
+                + ", mix=" + mix
+                + ", app=" + appProperties;
+    }
+}
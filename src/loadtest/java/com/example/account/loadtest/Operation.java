@@ -0,0 +1,30 @@
+package com.example.account.loadtest;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+enum Operation {
+    USE("use", "POST /transaction/use"),
+    GET("get", "GET /account"),
+    CREATE("create", "POST /account");
+
+    static final Set<String> NAMES = Arrays.stream(values())
+            .map(operation -> operation.name)
+            .collect(Collectors.toSet());
+
+    final String name;
+    final String endpoint;
+
+    Operation(String name, String endpoint) {
+        this.name = name;
+        this.endpoint = endpoint;
+    }
+
+    static Operation of(String name) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(name));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.account.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 0 ~ n-1 중 하나를 Zipf 분포(순위 k 의 확률이 1/k^skew 에 비례)로 고른다.
+ * skew 가 0 이면 균등 분포이고, 클수록 앞 순위(핫 계좌)에 요청이 몰린다.
+ * 누적 분포를 미리 계산해 두고 이진 탐색하므로 n 은 수십만 정도까지 쓴다.
+ */
+class ZipfianGenerator {
+    private final double[] cumulative;
+
+    ZipfianGenerator(int n, double skew) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.account.allocator;
+
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.example.account.type.ErrorCode.ACCOUNT_NUMBER_UNAVAILABLE;
+
+/**
+ * 계좌번호 발급기
+ * Redis 카운터에서 blockSize 만큼의 번호 구간을 미리 예약해 두고 메모리에서 하나씩 꺼내 준다.
+ * 남은 번호가 절반 이하로 떨어지면 다음 구간을 비동기로 미리 예약한다.
+ * 여러 노드가 같은 카운터를 쓰므로 구간이 겹치지 않아 계좌번호가 중복되지 않는다.
+ * 구간을 기다리는 동안 가상 스레드가 캐리어 스레드에 고정(pinning)되지 않도록 synchronized 대신 ReentrantLock 을 쓴다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AccountNumberAllocator {
+    private static final String COUNTER_KEY = "account:number:sequence";
+    private static final long FIRST_ACCOUNT_NUMBER = 1_000_000_000L;
+    private static final long LAST_ACCOUNT_NUMBER = 9_999_999_999L;
+
+    private final RedissonClient redissonClient;
+    private final AccountRepository accountRepository;
+
+    @Value("${account.number.block-size:100}")
+    private int blockSize;
+
+    @Value("${account.number.reserve-timeout:3000}")
+    private long reserveTimeoutMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Block current = Block.EMPTY;
+    private CompletableFuture<Block> reserved;
+
+    // Redis 카운터가 비어 있거나 DB 보다 뒤처져 있으면 이미 발급된 번호 뒤로 맞춰 둔다.
+    @PostConstruct
+    public void alignCounter() {
+        long issued = accountRepository.findMaxAccountNumber()
+                .map(accountNumber -> Long.parseLong(accountNumber) - FIRST_ACCOUNT_NUMBER + 1)
+                .orElse(0L);
+        RAtomicLong counter = counter();
+        long value = counter.get();
+        while (value < issued && !counter.compareAndSet(value, issued)) {
+            value = counter.get();
+        }
+    }
+
+    public String next() {
+        lock.lock();
+        try {
+            if (!current.hasNext()) {
+                current = takeReservedBlock();
+            }
+            if (reserved == null && current.remaining() <= blockSize / 2) {
+                reserved = reserveAsync();
+            }
+            return String.valueOf(current.next());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 발급한 번호가 이미 있는 계좌번호와 겹쳤을 때 부른다. 카운터를 DB 의 마지막 계좌번호 뒤로 다시 맞추고,
+     * 들고 있던 구간과 미리 예약한 구간은 겹칠 수 있으므로 버린다.
+     */
+    public void realign() {
+        lock.lock();
+        try {
+            alignCounter();
+            current = Block.EMPTY;
+            if (reserved != null) {
+                reserved.cancel(false);
+                reserved = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Block takeReservedBlock() {
+        CompletableFuture<Block> block = reserved != null ? reserved : reserveAsync();
+        reserved = null;
+        try {
+            return block.get(reserveTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountException(ACCOUNT_NUMBER_UNAVAILABLE);
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("계좌번호 구간 예약에 실패했습니다.", e);
+            throw new AccountException(ACCOUNT_NUMBER_UNAVAILABLE);
+        }
+    }
+
+    private CompletableFuture<Block> reserveAsync() {
+        return counter().getAndAddAsync(blockSize)
+                .toCompletableFuture()
+                .thenApply(offset -> {
+                    long start = FIRST_ACCOUNT_NUMBER + offset;
+                    if (start > LAST_ACCOUNT_NUMBER) {
+                        throw new AccountException(ACCOUNT_NUMBER_UNAVAILABLE);
+                    }
+                    return new Block(start, Math.min(start + blockSize, LAST_ACCOUNT_NUMBER + 1));
+                });
+    }
+
+    private RAtomicLong counter() {
+        return redissonClient.getAtomicLong(COUNTER_KEY);
+    }
+
+    private static class Block {
+        static final Block EMPTY = new Block(0, 0);
+
+        private long next;
+        private final long end;
+
+        Block(long start, long end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        boolean hasNext() {
+            return next < end;
+        }
+
+        long remaining() {
+            return end - next;
+        }
+
+        long next() {
+            return next++;
+        }
+    }
+}
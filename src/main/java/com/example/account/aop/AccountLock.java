@@ -0,0 +1,19 @@
+package com.example.account.aop;
+
+import java.lang.annotation.*;
+
+/**
+ * 요청의 계좌번호 단위로 락을 잡고 메서드를 실행한다.
+ * 메서드 인자 중 하나는 AccountLockIdInterface 를 구현해야 한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface AccountLock {
+    /**
+     * Redis 나 메모리 엔진이 잔액 기준인 계좌도 DB 경로로 처리하는 요청(취소 등)이면 true.
+     * 이때는 Redis 스크립트나 shard 가 순서를 보장하지 않으므로 그 계좌들도 락을 잡는다.
+     */
+    boolean dbPath() default false;
+}
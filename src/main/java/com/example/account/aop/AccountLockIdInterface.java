@@ -0,0 +1,5 @@
+package com.example.account.aop;
+
+public interface AccountLockIdInterface {
+    String getAccountNumber();
+}
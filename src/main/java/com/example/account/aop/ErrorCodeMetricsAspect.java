@@ -0,0 +1,27 @@
+package com.example.account.aop;
+
+import com.example.account.exception.AccountException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * 컨트롤러가 AccountException 으로 끝나면 ErrorCode 별로 집계한다. (account.errors)
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ErrorCodeMetricsAspect {
+    private final MeterRegistry meterRegistry;
+
+    @AfterThrowing(pointcut = "within(com.example.account.controller..*)", throwing = "e")
+    public void countErrorCode(JoinPoint joinPoint, AccountException e) {
+        meterRegistry.counter("account.errors",
+                "endpoint", joinPoint.getSignature().getName(),
+                "errorCode", String.valueOf(e.getErrorCode()))
+                .increment();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.account.aop;
+
+import com.example.account.exception.AccountException;
+import com.example.account.exception.IdempotencyKeyReusedException;
+import com.example.account.idempotency.IdempotencyStore;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+
+/**
+ * 1. 같은 노드에서 동시에 들어온 중복 요청은 처리 중인 요청의 결과를 함께 기다린다.
+ * 2. 이미 끝난 요청이면 저장소의 응답을 돌려준다.
+ * 3. 다른 노드가 처리 중이면 응답이 저장될 때까지 기다린다. 그 요청이 실패하면 이어서 직접 처리한다.
+ * 실패한 요청은 저장하지 않으므로 같은 키로 다시 시도할 수 있다.
+ *
+ * 키는 사용자(userID)별로 나뉘고, 응답과 함께 요청 본문의 해시를 저장한다.
+ * 같은 키로 본문이 다른 요청이 오면 IdempotencyKeyReusedException(422)으로 거절한다.
+ * 처리하는 동안에는 PENDING 이 만료되지 않도록 pending-ttl 의 1/3 마다 늘린다.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class IdempotencyAspect {
+    public static final String HEADER = "Idempotency-Key";
+    private static final long POLL_INTERVAL_MILLIS = 10;
+    private static final char FINGERPRINT_SEPARATOR = ':';
+
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    private final long waitMillis;
+    private final long renewIntervalMillis;
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter replayedCounter;
+    private final Counter coalescedCounter;
+
+    public IdempotencyAspect(IdempotencyStore idempotencyStore,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${account.idempotency.wait-time:5000}") long waitMillis,
+                             @Value("${account.idempotency.pending-ttl:10000}") long pendingTtlMillis) {
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
+        this.waitMillis = waitMillis;
+        this.renewIntervalMillis = Math.max(1, pendingTtlMillis / 3);
+        this.replayedCounter = meterRegistry.counter("account.idempotency.duplicates", "result", "replayed");
+        this.coalescedCounter = meterRegistry.counter("account.idempotency.duplicates", "result", "coalesced");
+    }
+
+    @PreDestroy
+    public void stop() {
+        renewer.shutdownNow();
+    }
+
+    @Around("@annotation(com.example.account.aop.Idempotent)")
+    public Object aroundMethod(ProceedingJoinPoint pjp) throws Throwable {
+        String idempotencyKey = findIdempotencyKey();
+        if (idempotencyKey == null) {
+            return pjp.proceed();
+        }
+
+        MethodSignature signature = (MethodSignature) pjp.getSignature();
+        Object[] args = pjp.getArgs();
+        String key = signature.getMethod().getName() + ":" + findUserID(args) + ":" + idempotencyKey;
+        String fingerprint = fingerprint(args);
+
+        InFlight request = new InFlight(fingerprint);
+        InFlight running = inFlight.putIfAbsent(key, request);
+        if (running != null) {
+            checkFingerprint(running.fingerprint, fingerprint);
+            coalescedCounter.increment();
+            return join(running.result);
+        }
+
+        try {
+            Object response = proceedOnce(pjp, key, fingerprint, signature.getReturnType());
+            request.result.complete(response);
+            return response;
+        } catch (Throwable e) {
+            request.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, request);
+        }
+    }
+
+    private Object proceedOnce(ProceedingJoinPoint pjp, String key, String fingerprint,
+                               Class<?> responseType) throws Throwable {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        String stored = idempotencyStore.get(key);
+        // 다른 노드가 처리 중(PENDING)이면 응답이 저장될 때까지 기다린다. 그 요청이 실패해 PENDING 이 지워지면 직접 처리한다.
+        while (stored == null || IdempotencyStore.PENDING.equals(stored)) {
+            if (stored == null && idempotencyStore.tryBegin(key)) {
+                return proceedAndStore(pjp, key, fingerprint);
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AccountException(ErrorCode.IDEMPOTENT_REQUEST_IN_PROGRESS);
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+            stored = idempotencyStore.get(key);
+        }
+
+        int separator = stored.indexOf(FINGERPRINT_SEPARATOR);
+        checkFingerprint(stored.substring(0, separator), fingerprint);
+        replayedCounter.increment();
+        return objectMapper.readValue(stored.substring(separator + 1), responseType);
+    }
+
+    private Object proceedAndStore(ProceedingJoinPoint pjp, String key, String fingerprint) throws Throwable {
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> renew(key),
+                renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+        Object response;
+        try {
+            response = pjp.proceed();
+        } catch (Throwable e) {
+            idempotencyStore.abort(key);
+            throw e;
+        } finally {
+            renewal.cancel(false);
+        }
+        idempotencyStore.complete(key, fingerprint + FINGERPRINT_SEPARATOR + objectMapper.writeValueAsString(response));
+        return response;
+    }
+
+    private void renew(String key) {
+        try {
+            idempotencyStore.renew(key);
+        } catch (RuntimeException e) {
+            log.warn("failed to renew idempotency key {}", key, e);
+        }
+    }
+
+    private void checkFingerprint(String stored, String fingerprint) {
+        if (!stored.equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException();
+        }
+    }
+
+    private String fingerprint(Object[] args) throws JsonProcessingException {
+        return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(args));
+    }
+
+    private Object join(CompletableFuture<Object> running) throws Throwable {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Long findUserID(Object[] args) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof UserIdInterface) {
+                    return ((UserIdInterface) arg).getUserID();
+                }
+            }
+        }
+        return null;
+    }
+
+    private String findIdempotencyKey() {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        String idempotencyKey = attributes.getRequest().getHeader(HEADER);
+        return idempotencyKey == null || idempotencyKey.isBlank() ? null : idempotencyKey;
+    }
+
+    private static class InFlight {
+        private final String fingerprint;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
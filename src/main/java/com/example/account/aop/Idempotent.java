@@ -0,0 +1,15 @@
+package com.example.account.aop;
+
+import java.lang.annotation.*;
+
+/**
+ * 요청에 Idempotency-Key 헤더가 있으면 같은 키의 요청을 한 번만 처리하고,
+ * 이후 요청에는 저장해 둔 응답을 그대로 돌려준다.
+ * 계좌 락보다 바깥에서 실행되므로 중복 요청은 락도, DB 도 건드리지 않는다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface Idempotent {
+}
@@ -0,0 +1,51 @@
+package com.example.account.aop;
+
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
+import com.example.account.service.LockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// optimistic 모드에서는 락 없이 버전 충돌 시 재시도한다.
+// Redis 가 잔액 기준인 계좌는 Redis 스크립트가, 메모리 엔진 계좌는 shard 스레드 하나가 순서대로 처리하므로 락을 잡지 않는다.
+// DB 경로로 처리하는 요청(dbPath)은 예외다.
+@Slf4j
+@Aspect
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "account.concurrency.mode", havingValue = "lock", matchIfMissing = true)
+public class LockAopAspect {
+    private final LockService lockService;
+    private final RedisBalanceAuthority redisBalanceAuthority;
+    private final BalanceEngine balanceEngine;
+
+    @Around("@annotation(accountLock)")
+    public Object aroundMethod(ProceedingJoinPoint pjp, AccountLock accountLock) throws Throwable {
+        String accountNumber = findAccountNumber(pjp.getArgs());
+        if (!accountLock.dbPath()
+                && (redisBalanceAuthority.owns(accountNumber) || balanceEngine.owns(accountNumber))) {
+            return pjp.proceed();
+        }
+
+        lockService.lock(accountNumber);
+        try {
+            return pjp.proceed();
+        } finally {
+            lockService.unlock(accountNumber);
+        }
+    }
+
+    private String findAccountNumber(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof AccountLockIdInterface) {
+                return ((AccountLockIdInterface) arg).getAccountNumber();
+            }
+        }
+        throw new IllegalStateException("@AccountLock 메서드에는 AccountLockIdInterface 인자가 필요합니다.");
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.account.aop;
+
+import com.example.account.exception.AccountException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.example.account.type.ErrorCode.ACCOUNT_TRANSACTION_CONFLICT;
+
+/**
+ * 트랜잭션 인터셉터보다 먼저 실행되어야 커밋 시점의 충돌까지 잡을 수 있다.
+ * 재시도 간격은 initial-backoff 부터 두 배씩 늘어나며 max-backoff 를 넘지 않고, 지터를 섞는다.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class OptimisticRetryAspect {
+    private final Counter conflictCounter;
+    private final Counter retryCounter;
+
+    @Value("${account.concurrency.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${account.concurrency.retry.initial-backoff:5}")
+    private long initialBackoffMillis;
+
+    @Value("${account.concurrency.retry.max-backoff:100}")
+    private long maxBackoffMillis;
+
+    public OptimisticRetryAspect(MeterRegistry meterRegistry) {
+        this.conflictCounter = meterRegistry.counter("account.optimistic.conflicts");
+        this.retryCounter = meterRegistry.counter("account.optimistic.retries");
+    }
+
+    @Around("@annotation(com.example.account.aop.OptimisticRetry)")
+    public Object aroundMethod(ProceedingJoinPoint pjp) throws Throwable {
+        long backoffMillis = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return pjp.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                conflictCounter.increment();
+                if (attempt >= maxAttempts) {
+                    log.error("optimistic lock conflict, giving up after {} attempts", attempt);
+                    throw new AccountException(ACCOUNT_TRANSACTION_CONFLICT);
+                }
+                retryCounter.increment();
+                pause(backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1));
+                backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+            }
+        }
+    }
+
+    // 테스트에서 대기 시간을 확인할 수 있도록 분리해 둔다.
+    void pause(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+}
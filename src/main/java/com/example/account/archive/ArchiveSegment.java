@@ -0,0 +1,359 @@
+package com.example.account.archive;
+
+import com.example.account.journal.JournalRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 보관 파일 하나. (accountId, transactedAt, id) 순으로 정렬한 거래를 blockRows 건씩 묶어 압축한다.
+ * [header: magic(4) | blockCount(4) | rowCount(8) | min/max accountId | min/max transactedAt
+ *          | filterWords(4) | filterHashes(4)] (64)
+ * [block index: min/max accountId | min/max transactedAt | rowCount(4) | length(4) | offset(8)] * blockCount
+ * [account filter: long * filterWords]
+ * [block: deflate(JournalRecord payload * rowCount)] ...
+ * 열 때는 header, block index, account filter 만 읽고, 계좌/시간 범위가 맞는 block 만 읽어 푼다.
+ * 계좌 id 범위는 넓게 걸치기 쉬우므로, 파일에 없는 계좌는 account filter 로 걸러 파일을 열지 않는다.
+ */
+class ArchiveSegment {
+    static final int HEADER_SIZE = 64;
+    static final int INDEX_ENTRY_SIZE = 48;
+    private static final int MAGIC = 0x41524332; // "ARC2"
+    private static final int MAGIC_WITHOUT_FILTER = 0x41524331; // "ARC1": account filter 가 없다
+
+    private final Path path;
+    private final long rowCount;
+    private final long minAccountId;
+    private final long maxAccountId;
+    private final long minTransactedAt;
+    private final long maxTransactedAt;
+    private final List<Block> blocks;
+    // null 이면 계좌 id 범위로만 거른다.
+    private final AccountFilter accountFilter;
+
+    private ArchiveSegment(Path path, long rowCount, long minAccountId, long maxAccountId,
+                           long minTransactedAt, long maxTransactedAt, List<Block> blocks,
+                           AccountFilter accountFilter) {
+        this.path = path;
+        this.rowCount = rowCount;
+        this.minAccountId = minAccountId;
+        this.maxAccountId = maxAccountId;
+        this.minTransactedAt = minTransactedAt;
+        this.maxTransactedAt = maxTransactedAt;
+        this.blocks = blocks;
+        this.accountFilter = accountFilter;
+    }
+
+    /**
+     * records 는 (accountId, transactedAt, id) 순으로 정렬되어 있어야 한다. 파일을 다 쓰고 fsync 한 뒤 반환한다.
+     */
+    static ArchiveSegment write(Path path, List<JournalRecord> records, int blockRows) {
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("empty archive segment: " + path);
+        }
+        AccountFilter accountFilter = AccountFilter.of(records);
+        List<Block> blocks = new ArrayList<>();
+        List<byte[]> compressed = new ArrayList<>();
+        long offset = HEADER_SIZE + (long) INDEX_ENTRY_SIZE * ((records.size() + blockRows - 1) / blockRows)
+                + accountFilter.byteSize();
+        for (int from = 0; from < records.size(); from += blockRows) {
+            List<JournalRecord> rows = records.subList(from, Math.min(from + blockRows, records.size()));
+            byte[] bytes = deflate(rows);
+            blocks.add(Block.of(rows, offset, bytes.length));
+            compressed.add(bytes);
+            offset += bytes.length;
+        }
+
+        ArchiveSegment segment = new ArchiveSegment(path, records.size(),
+                blocks.stream().mapToLong(block -> block.minAccountId).min().getAsLong(),
+                blocks.stream().mapToLong(block -> block.maxAccountId).max().getAsLong(),
+                blocks.stream().mapToLong(block -> block.minTransactedAt).min().getAsLong(),
+                blocks.stream().mapToLong(block -> block.maxTransactedAt).max().getAsLong(),
+                blocks, accountFilter);
+
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + INDEX_ENTRY_SIZE * blocks.size()
+                + accountFilter.byteSize());
+        head.putInt(MAGIC);
+        head.putInt(blocks.size());
+        head.putLong(segment.rowCount);
+        head.putLong(segment.minAccountId);
+        head.putLong(segment.maxAccountId);
+        head.putLong(segment.minTransactedAt);
+        head.putLong(segment.maxTransactedAt);
+        head.putInt(accountFilter.words.length);
+        head.putInt(accountFilter.hashCount);
+        head.position(HEADER_SIZE);
+        blocks.forEach(block -> block.writeTo(head));
+        accountFilter.writeTo(head);
+        head.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, head);
+            for (byte[] bytes : compressed) {
+                writeFully(channel, ByteBuffer.wrap(bytes));
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segment;
+    }
+
+    static ArchiveSegment open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            int magic = header.getInt();
+            if (magic != MAGIC && magic != MAGIC_WITHOUT_FILTER) {
+                throw new IllegalStateException("not an archive segment: " + path);
+            }
+            int blockCount = header.getInt();
+            long rowCount = header.getLong();
+            long minAccountId = header.getLong();
+            long maxAccountId = header.getLong();
+            long minTransactedAt = header.getLong();
+            long maxTransactedAt = header.getLong();
+
+            ByteBuffer index = readFully(channel, HEADER_SIZE, INDEX_ENTRY_SIZE * blockCount);
+            List<Block> blocks = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(Block.readFrom(index));
+            }
+
+            AccountFilter accountFilter = null;
+            if (magic == MAGIC) {
+                int filterWords = header.getInt();
+                int filterHashes = header.getInt();
+                accountFilter = AccountFilter.readFrom(readFully(channel,
+                        HEADER_SIZE + (long) INDEX_ENTRY_SIZE * blockCount, Long.BYTES * filterWords),
+                        filterWords, filterHashes);
+            }
+            return new ArchiveSegment(path, rowCount, minAccountId, maxAccountId,
+                    minTransactedAt, maxTransactedAt, blocks, accountFilter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    boolean mayContain(long accountId) {
+        return minAccountId <= accountId && accountId <= maxAccountId
+                && (accountFilter == null || accountFilter.mayContain(accountId));
+    }
+
+    /**
+     * accountId 의 거래 중 transactedAt 이 untilMillis 이하인 것을 (transactedAt, id) 순으로 반환한다.
+     */
+    List<JournalRecord> read(long accountId, long untilMillis) {
+        List<JournalRecord> records = new ArrayList<>();
+        if (!mayContain(accountId) || minTransactedAt > untilMillis) {
+            return records;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (Block block : blocks) {
+                if (block.minAccountId > accountId || block.maxAccountId < accountId
+                        || block.minTransactedAt > untilMillis) {
+                    continue;
+                }
+                ByteBuffer rows = inflate(readFully(channel, block.offset, block.length), block.rowCount);
+                while (rows.hasRemaining()) {
+                    JournalRecord record = JournalRecord.readFrom(rows);
+                    if (record.getAccountId() == accountId && record.getTransactedAtMillis() <= untilMillis) {
+                        records.add(record);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    long maxTransactedAt() {
+        return maxTransactedAt;
+    }
+
+    private static byte[] deflate(List<JournalRecord> rows) {
+        ByteBuffer buffer = ByteBuffer.allocate(rows.size() * JournalRecord.PAYLOAD_SIZE);
+        rows.forEach(row -> row.writeTo(buffer));
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(buffer.array());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(buffer.capacity() / 4);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer compressed, int rowCount) {
+        byte[] rows = new byte[rowCount * JournalRecord.PAYLOAD_SIZE];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, compressed.limit());
+            int length = 0;
+            while (length < rows.length && !inflater.finished()) {
+                length += inflater.inflate(rows, length, rows.length - length);
+            }
+            if (length != rows.length) {
+                throw new IllegalStateException("truncated archive block");
+            }
+            return ByteBuffer.wrap(rows);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("corrupted archive block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IllegalStateException("truncated archive segment");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // 계좌 id 의 Bloom filter. 계좌당 10 bit, hash 7 개로 없는 계좌를 잘못 통과시키는 비율이 약 1% 이다.
+    private static class AccountFilter {
+        private static final int BITS_PER_ACCOUNT = 10;
+        private static final int HASH_COUNT = 7;
+
+        private final long[] words;
+        private final int hashCount;
+
+        private AccountFilter(long[] words, int hashCount) {
+            this.words = words;
+            this.hashCount = hashCount;
+        }
+
+        // records 는 accountId 순으로 정렬되어 있다.
+        static AccountFilter of(List<JournalRecord> records) {
+            long accounts = records.stream().mapToLong(JournalRecord::getAccountId).distinct().count();
+            AccountFilter filter = new AccountFilter(
+                    new long[(int) ((accounts * BITS_PER_ACCOUNT + Long.SIZE - 1) / Long.SIZE)], HASH_COUNT);
+            records.forEach(record -> filter.add(record.getAccountId()));
+            return filter;
+        }
+
+        static AccountFilter readFrom(ByteBuffer buffer, int wordCount, int hashCount) {
+            long[] words = new long[wordCount];
+            for (int i = 0; i < wordCount; i++) {
+                words[i] = buffer.getLong();
+            }
+            return new AccountFilter(words, hashCount);
+        }
+
+        int byteSize() {
+            return Long.BYTES * words.length;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+
+        void add(long accountId) {
+            long hash = mix(accountId);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * step, (long) words.length * Long.SIZE);
+                words[(int) (bit >>> 6)] |= 1L << (bit & 63);
+            }
+        }
+
+        boolean mayContain(long accountId) {
+            long hash = mix(accountId);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * step, (long) words.length * Long.SIZE);
+                if ((words[(int) (bit >>> 6)] & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // splitmix64 finalizer: 연속된 계좌 id 도 고르게 흩는다.
+        private static long mix(long value) {
+            value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+            value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+            return value ^ (value >>> 31);
+        }
+    }
+
+    private static class Block {
+        private final long minAccountId;
+        private final long maxAccountId;
+        private final long minTransactedAt;
+        private final long maxTransactedAt;
+        private final int rowCount;
+        private final int length;
+        private final long offset;
+
+        private Block(long minAccountId, long maxAccountId, long minTransactedAt, long maxTransactedAt,
+                      int rowCount, int length, long offset) {
+            this.minAccountId = minAccountId;
+            this.maxAccountId = maxAccountId;
+            this.minTransactedAt = minTransactedAt;
+            this.maxTransactedAt = maxTransactedAt;
+            this.rowCount = rowCount;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        static Block of(List<JournalRecord> rows, long offset, int length) {
+            return new Block(rows.get(0).getAccountId(), rows.get(rows.size() - 1).getAccountId(),
+                    rows.stream().mapToLong(JournalRecord::getTransactedAtMillis).min().getAsLong(),
+                    rows.stream().mapToLong(JournalRecord::getTransactedAtMillis).max().getAsLong(),
+                    rows.size(), length, offset);
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.putLong(minAccountId);
+            buffer.putLong(maxAccountId);
+            buffer.putLong(minTransactedAt);
+            buffer.putLong(maxTransactedAt);
+            buffer.putInt(rowCount);
+            buffer.putInt(length);
+            buffer.putLong(offset);
+        }
+
+        static Block readFrom(ByteBuffer buffer) {
+            return new Block(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getInt(), buffer.getInt(), buffer.getLong());
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.account.archive;
+
+import com.example.account.journal.JournalRecord;
+import com.example.account.repository.projection.TransactionHistoryRow;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 거래 보관소
+ * 오래된 거래를 거래일별 디렉터리(archive/yyyy-MM-dd)의 압축 segment 파일로 보관하고, 계좌별 내역을 최신순으로 읽는다.
+ * 파일은 .tmp 로 쓴 뒤 DB 에서 지운 트랜잭션이 커밋되면 이름을 바꿔 공개한다(publish).
+ * 기동 시 공개된 파일의 header/block index 만 읽어 날짜별 목록(catalog)을 만든다.
+ *
+ * 여러 노드가 내역을 같이 보여주려면 directory 는 모든 노드가 같이 보는 공유 위치(NFS 등)여야 한다.
+ * 다른 노드가 공개한 파일은 register/refresh 로 목록에 올린다.
+ */
+@Slf4j
+@Component
+public class TransactionArchive {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".arc";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Comparator<JournalRecord> ARCHIVE_ORDER = Comparator
+            .comparingLong(JournalRecord::getAccountId)
+            .thenComparingLong(JournalRecord::getTransactedAtMillis)
+            .thenComparingLong(JournalRecord::getId);
+    private static final Comparator<JournalRecord> NEWEST_FIRST = Comparator
+            .comparingLong(JournalRecord::getTransactedAtMillis)
+            .thenComparingLong(JournalRecord::getId)
+            .reversed();
+
+    @Value("${account.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${account.archive.directory:archive}")
+    private String directory;
+
+    @Value("${account.archive.block-rows:1024}")
+    private int blockRows;
+
+    private final NavigableMap<LocalDate, List<ArchiveSegment>> catalog = new ConcurrentSkipListMap<>();
+    private final Set<Path> cataloged = ConcurrentHashMap.newKeySet();
+    private final LongAccumulator newestTransactedAt = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private Path directoryPath;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directoryPath = Paths.get(directory);
+        Files.createDirectories(directoryPath);
+
+        long rows = 0;
+        for (Path segment : files(SEGMENT_SUFFIX)) {
+            rows += catalog(segment);
+        }
+        log.info("transaction archive opened at {}, {} days, {} rows", directoryPath, catalog.size(), rows);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 한 거래일의 거래를 .tmp 파일로 쓴다. 아직 조회 대상이 아니며 publish 해야 보인다.
+     */
+    public Path write(LocalDate date, List<JournalRecord> records) {
+        List<JournalRecord> sorted = new ArrayList<>(records);
+        sorted.sort(ARCHIVE_ORDER);
+        long firstId = sorted.stream().mapToLong(JournalRecord::getId).min().getAsLong();
+        try {
+            Path dateDirectory = Files.createDirectories(directoryPath.resolve(date.toString()));
+            Path temp = dateDirectory.resolve(
+                    SEGMENT_PREFIX + String.format("%020d", firstId) + SEGMENT_SUFFIX + TEMP_SUFFIX);
+            Files.deleteIfExists(temp);
+            ArchiveSegment.write(temp, sorted, blockRows);
+            return temp;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return directory 기준 segment 경로. 다른 노드는 이 경로로 register 한다.
+     */
+    public String publish(Path temp) {
+        String name = temp.getFileName().toString();
+        Path segment = temp.resolveSibling(name.substring(0, name.length() - TEMP_SUFFIX.length()));
+        try {
+            Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catalog(segment);
+        return directoryPath.relativize(segment).toString();
+    }
+
+    /**
+     * 다른 노드가 공유 directory 에 공개한 segment 를 목록에 올린다. 이미 올라 있으면 아무것도 하지 않는다.
+     */
+    public void register(String segment) {
+        if (enabled) {
+            catalog(directoryPath.resolve(segment));
+        }
+    }
+
+    /**
+     * 공유 directory 를 다시 훑어 목록에 없는 segment 를 올린다. register 알림을 놓친 경우를 메운다.
+     */
+    public void refresh() {
+        if (enabled) {
+            files(SEGMENT_SUFFIX).forEach(this::catalog);
+        }
+    }
+
+    public void discard(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("failed to delete archive temp file {}", temp, e);
+        }
+    }
+
+    /**
+     * 공개되지 않은 .tmp 파일. 쓰는 중에 프로세스가 죽으면 남는다.
+     */
+    public List<Path> pending() {
+        return enabled ? files(SEGMENT_SUFFIX + TEMP_SUFFIX) : Collections.emptyList();
+    }
+
+    // .tmp 파일에 담긴 가장 작은 거래 id. DB 에 남아 있으면 삭제가 롤백된 것이다.
+    public static long firstIdOf(Path temp) {
+        String name = temp.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length() - TEMP_SUFFIX.length()));
+    }
+
+    /**
+     * 보관된 거래 중 가장 최근 거래 시각. 보관된 거래가 없으면 null.
+     * 이보다 새로운 거래는 테이블에만 있으므로, 내역 조회는 그 거래들을 다 넘긴 뒤에야 보관 파일을 읽으면 된다.
+     */
+    public LocalDateTime newestTransactedAt() {
+        long newest = newestTransactedAt.get();
+        return !enabled || newest == Long.MIN_VALUE ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(newest), ZoneId.systemDefault());
+    }
+
+    /**
+     * 계좌의 보관 거래를 (transactedAt, id) 최신순으로 넘긴다. before 가 있으면 그보다 오래된 거래부터 넘긴다.
+     * 최신 거래일부터 하루씩 읽으므로, 필요한 만큼만 꺼내면 그 이전 날짜의 파일은 읽지 않는다.
+     * 계좌가 없는 파일은 account filter 로 걸러 열지 않는다.
+     */
+    public Iterator<TransactionHistoryRow> history(long accountId, LocalDateTime beforeAt, Long beforeId) {
+        if (!enabled || catalog.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        NavigableMap<LocalDate, List<ArchiveSegment>> days = beforeAt == null
+                ? catalog.descendingMap()
+                : catalog.headMap(beforeAt.toLocalDate(), true).descendingMap();
+        long untilMillis = beforeAt == null ? Long.MAX_VALUE : toMillis(beforeAt);
+        Iterator<List<ArchiveSegment>> dayIterator = days.values().iterator();
+
+        return new Iterator<TransactionHistoryRow>() {
+            private Iterator<JournalRecord> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && dayIterator.hasNext()) {
+                    current = readDay(dayIterator.next(), accountId, untilMillis, beforeId);
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public TransactionHistoryRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return ArchivedRow.of(current.next());
+            }
+        };
+    }
+
+    private static Iterator<JournalRecord> readDay(List<ArchiveSegment> segments, long accountId,
+                                                   long untilMillis, Long beforeId) {
+        List<JournalRecord> records = new ArrayList<>();
+        for (ArchiveSegment segment : segments) {
+            for (JournalRecord record : segment.read(accountId, untilMillis)) {
+                if (beforeId == null || record.getTransactedAtMillis() < untilMillis || record.getId() < beforeId) {
+                    records.add(record);
+                }
+            }
+        }
+        records.sort(NEWEST_FIRST);
+        return records.iterator();
+    }
+
+    // 처음 보는 segment 만 열어 올린다. 올린 행 수를 반환한다.
+    private long catalog(Path segment) {
+        if (!cataloged.add(segment.toAbsolutePath().normalize())) {
+            return 0;
+        }
+        ArchiveSegment archiveSegment = ArchiveSegment.open(segment);
+        catalogOf(dateOf(segment)).add(archiveSegment);
+        newestTransactedAt.accumulate(archiveSegment.maxTransactedAt());
+        return archiveSegment.rowCount();
+    }
+
+    private List<ArchiveSegment> catalogOf(LocalDate date) {
+        return catalog.computeIfAbsent(date, key -> new CopyOnWriteArrayList<>());
+    }
+
+    private List<Path> files(String suffix) {
+        try (Stream<Path> files = Files.walk(directoryPath, 2)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(suffix))
+                    .filter(path -> dateOf(path) != null)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static LocalDate dateOf(Path segment) {
+        try {
+            return LocalDate.parse(segment.getParent().getFileName().toString());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class ArchivedRow implements TransactionHistoryRow {
+        private final Long id;
+        private final TransactionType transactionType;
+        private final TransactionResultType transactionResultType;
+        private final String transactionID;
+        private final String originalTransactionID;
+        private final Long amount;
+        private final Long balanceSnapshot;
+        private final LocalDateTime transactedAt;
+
+        static ArchivedRow of(JournalRecord record) {
+            return new ArchivedRow(record.getId(), record.getTransactionType(), record.getTransactionResultType(),
+                    record.getTransactionID(), record.getOriginalTransactionID(), record.getAmount(),
+                    record.getBalanceSnapshot(),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getTransactedAtMillis()), ZoneId.systemDefault()));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.account.archive;
+
+import com.example.account.domain.Transaction;
+import com.example.account.journal.JournalRecord;
+import com.example.account.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 거래 보관 작업
+ * min-age 일보다 오래된 거래를 chunk-size 건씩 TransactionArchive 로 옮기고 Transaction 테이블에서 지운다.
+ * chunk 마다 한 트랜잭션에서 .tmp 파일을 fsync 까지 쓰고 행을 삭제하며, 커밋된 뒤에 파일을 공개한다.
+ * 공개 전에 프로세스가 죽으면 다음 보관 때 .tmp 파일의 첫 거래가 DB 에 남아 있는지 보고 공개하거나 버린다.
+ *
+ * 모든 노드가 같은 테이블을 지우므로 Redisson 락(account:archive:archiver)을 잡은 노드 하나만 보관한다.
+ * 보관 파일은 공유 directory 에 쓰고, 공개한 segment 는 topic 으로 다른 노드에 알려 목록에 올리게 한다.
+ * 알림을 놓친 노드는 interval 마다 directory 를 다시 훑어 채운다.
+ *
+ * 보관된 거래는 내역 조회/내보내기에만 나오고, 거래 ID 조회와 취소는 할 수 없다.
+ */
+@Slf4j
+@Component
+public class TransactionArchiver {
+    private static final String ARCHIVER_LOCK_KEY = "account:archive:archiver";
+    private static final String PUBLISHED_TOPIC = "account:archive:published";
+
+    private final TransactionArchive transactionArchive;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final RedissonClient redissonClient;
+    private final Counter archivedCounter;
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+
+    @Value("${account.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${account.archive.min-age:90}")
+    private long minAgeDays;
+
+    @Value("${account.archive.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${account.archive.chunk-pause:100}")
+    private long chunkPauseMillis;
+
+    @Value("${account.archive.interval:3600000}")
+    private long intervalMillis;
+
+    private RTopic publishedTopic;
+    private Thread archiverThread;
+
+    public TransactionArchiver(TransactionArchive transactionArchive,
+                               TransactionRepository transactionRepository,
+                               PlatformTransactionManager transactionManager,
+                               RedissonClient redissonClient,
+                               MeterRegistry meterRegistry) {
+        this.transactionArchive = transactionArchive;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.redissonClient = redissonClient;
+        this.archivedCounter = meterRegistry.counter("account.archive.rows");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        publishedTopic = redissonClient.getTopic(PUBLISHED_TOPIC, StringCodec.INSTANCE);
+        publishedTopic.addListener(String.class, (channel, segment) -> transactionArchive.register(segment));
+        archiverThread = new Thread(this::archiveLoop, "transaction-archiver");
+        archiverThread.setDaemon(true);
+        archiverThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (archiverThread == null) {
+            return;
+        }
+        stopSignal.countDown();
+        archiverThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * cutoff(오늘 - min-age 일의 0시) 이전 거래를 모두 옮긴다. 거래일이 끝난 날짜만 옮기므로 날짜 디렉터리가 닫힌 뒤 채워진다.
+     * 다른 노드가 보관하는 중이면 건너뛴다.
+     * @return 옮긴 건수
+     */
+    public long archive() {
+        RLock archiverLock = redissonClient.getLock(ARCHIVER_LOCK_KEY);
+        if (!archiverLock.tryLock()) {
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDate.now().minusDays(minAgeDays).atStartOfDay();
+        long total = 0;
+        try {
+            // 락을 잡은 노드만 .tmp 를 쓰므로, 지금 남아 있는 .tmp 는 죽은 보관 작업이 남긴 것이다.
+            recover();
+            int archived;
+            do {
+                archived = archiveChunk(cutoff);
+                total += archived;
+            } while (archived == chunkSize && !stopSignal.await(chunkPauseMillis, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            archiverLock.unlock();
+        }
+        if (total > 0) {
+            log.info("archived {} transactions older than {}", total, cutoff);
+        }
+        return total;
+    }
+
+    private void archiveLoop() {
+        try {
+            do {
+                try {
+                    transactionArchive.refresh();
+                    archive();
+                } catch (RuntimeException e) {
+                    log.error("transaction archiving failed", e);
+                }
+            } while (!stopSignal.await(intervalMillis, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int archiveChunk(LocalDateTime cutoff) {
+        List<Path> written = new ArrayList<>();
+        Integer archived;
+        try {
+            archived = transactionTemplate.execute(status -> {
+                List<Transaction> transactions = transactionRepository.findArchivable(cutoff,
+                        PageRequest.of(0, chunkSize));
+                if (transactions.isEmpty()) {
+                    return 0;
+                }
+                Map<LocalDate, List<JournalRecord>> recordsByDate = transactions.stream()
+                        .collect(Collectors.groupingBy(transaction -> transaction.getTransactedAt().toLocalDate(),
+                                TreeMap::new,
+                                Collectors.mapping(transaction -> JournalRecord.of(0, transaction),
+                                        Collectors.toList())));
+                recordsByDate.forEach((date, records) -> written.add(transactionArchive.write(date, records)));
+
+                transactionRepository.deleteAllByIdInBatch(transactions.stream()
+                        .map(Transaction::getId)
+                        .collect(Collectors.toList()));
+                return transactions.size();
+            });
+        } catch (RuntimeException e) {
+            written.forEach(transactionArchive::discard);
+            throw e;
+        }
+        written.forEach(this::publish);
+        archivedCounter.increment(archived);
+        return archived;
+    }
+
+    private void publish(Path temp) {
+        publishedTopic.publish(transactionArchive.publish(temp));
+    }
+
+    // 삭제가 커밋됐으면 첫 거래가 DB 에 없다.
+    private void recover() {
+        for (Path temp : transactionArchive.pending()) {
+            if (transactionRepository.existsById(TransactionArchive.firstIdOf(temp))) {
+                transactionArchive.discard(temp);
+                log.info("discarded uncommitted archive segment {}", temp);
+            } else {
+                publish(temp);
+                log.info("published committed archive segment {}", temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.account.cache;
+
+import com.example.account.dto.AccountDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RedissonClient;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * 계좌 조회 캐시
+ * - 계좌번호 -> AccountDto
+ * - 사용자 ID -> 계좌번호 목록
+ * 잔액이 바뀌면 계좌 항목만, 계좌가 생기면 사용자 목록만 무효화한다.
+ * 진행 중인 트랜잭션이 있으면 커밋 후에 무효화한다.
+ */
+@Component
+public class AccountCache {
+    private final TwoTierCache<AccountDto> accounts;
+    private final TwoTierCache<String[]> accountNumbersByUser;
+
+    public AccountCache(RedissonClient redissonClient,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${account.cache.local.maximum-size:10000}") long localMaximumSize,
+                        @Value("${account.cache.local.expire-after-write:60000}") long localExpireMillis,
+                        @Value("${account.cache.remote.ttl:600000}") long remoteTtlMillis) {
+        this.accounts = new TwoTierCache<>("account", redissonClient,
+                new TypedJsonJacksonCodec(String.class, AccountDto.class, objectMapper),
+                meterRegistry, localMaximumSize, localExpireMillis, remoteTtlMillis);
+        this.accountNumbersByUser = new TwoTierCache<>("user-accounts", redissonClient,
+                new TypedJsonJacksonCodec(String.class, String[].class, objectMapper),
+                meterRegistry, localMaximumSize, localExpireMillis, remoteTtlMillis);
+    }
+
+    public AccountDto getAccount(String accountNumber, Supplier<AccountDto> loader) {
+        return accounts.get(accountNumber, loader);
+    }
+
+    public void putAccount(AccountDto accountDto) {
+        accounts.put(accountDto.getAccountNumber(), accountDto);
+    }
+
+    public String[] getAccountNumbers(Long userID, Supplier<String[]> loader) {
+        return accountNumbersByUser.get(String.valueOf(userID), loader);
+    }
+
+    public void evictAccount(String accountNumber) {
+        afterCommit(() -> accounts.invalidate(accountNumber));
+    }
+
+    public void evictAccountNumbers(Long userID) {
+        afterCommit(() -> accountNumbersByUser.invalidate(String.valueOf(userID)));
+    }
+
+    private void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+}
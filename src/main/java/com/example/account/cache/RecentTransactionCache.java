@@ -0,0 +1,48 @@
+package com.example.account.cache;
+
+import com.example.account.dto.TransactionDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RedissonClient;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * 최근 거래 조회 캐시
+ * - 거래 ID -> TransactionDto
+ * 거래 직후 확인 요청이 몰리므로 커밋된 거래를 짧은 TTL 로 넣어둔다.
+ * 거래는 바뀌지 않아 무효화하지 않는다.
+ */
+@Component
+public class RecentTransactionCache {
+    private final boolean enabled;
+    private final TwoTierCache<TransactionDto> transactions;
+
+    public RecentTransactionCache(RedissonClient redissonClient,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${account.cache.transaction.enabled:true}") boolean enabled,
+                                  @Value("${account.cache.transaction.maximum-size:10000}") long maximumSize,
+                                  @Value("${account.cache.transaction.ttl:60000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.transactions = enabled
+                ? new TwoTierCache<>("transaction", redissonClient,
+                new TypedJsonJacksonCodec(String.class, TransactionDto.class, objectMapper),
+                meterRegistry, maximumSize, ttlMillis, ttlMillis)
+                : null;
+    }
+
+    public TransactionDto get(String transactionID, Supplier<TransactionDto> loader) {
+        return enabled ? transactions.get(transactionID, loader) : loader.get();
+    }
+
+    // 커밋이 끝난 거래만 넣는다.
+    public void put(TransactionDto transactionDto) {
+        if (enabled) {
+            transactions.put(transactionDto.getTransactionID(), transactionDto);
+        }
+    }
+}
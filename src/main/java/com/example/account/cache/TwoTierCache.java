@@ -0,0 +1,115 @@
+package com.example.account.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 1차: 프로세스 내 Caffeine(W-TinyLFU, 크기 제한) / 2차: Redis RMapCache(TTL)
+ * 읽을 때는 1차 -> 2차 -> loader 순으로 찾고, 찾은 값을 앞 단계에 채운다.
+ * 무효화는 두 단계에서 모두 지우고 topic 으로 다른 노드의 1차 캐시에도 알린다.
+ *
+ * 읽는 동안 무효화가 끼어들면 읽어 온 옛 값을 다시 채울 수 있으므로, 채운 뒤 세대(generation)를 다시 확인해
+ * 바뀌었으면 채운 값을 지운다. 2차는 키별 세대(Redis hash), 1차는 노드의 무효화 횟수(epoch)로 확인한다.
+ * 키별 세대는 한 번이라도 무효화된 키마다 숫자 하나씩 남는다.
+ */
+public class TwoTierCache<V> {
+    private final Cache<String, V> local;
+    private final RMapCache<String, V> remote;
+    private final RMap<String, Long> generations;
+    private final AtomicLong localEpoch = new AtomicLong();
+    private final RTopic invalidationTopic;
+    private final long remoteTtlMillis;
+    private final Counter remoteHitCounter;
+    private final Counter remoteMissCounter;
+
+    public TwoTierCache(String name, RedissonClient redissonClient, Codec codec, MeterRegistry meterRegistry,
+                        long localMaximumSize, long localExpireMillis, long remoteTtlMillis) {
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(Duration.ofMillis(localExpireMillis))
+                .recordStats()
+                .build();
+        this.remote = redissonClient.getMapCache("account:cache:" + name, codec);
+        this.generations = redissonClient.getMap("account:cache:" + name + ":generation",
+                new CompositeCodec(StringCodec.INSTANCE, LongCodec.INSTANCE));
+        this.invalidationTopic = redissonClient.getTopic("account:cache:" + name + ":invalidate", StringCodec.INSTANCE);
+        this.remoteTtlMillis = remoteTtlMillis;
+        this.remoteHitCounter = meterRegistry.counter("account.cache.remote", "cache", name, "result", "hit");
+        this.remoteMissCounter = meterRegistry.counter("account.cache.remote", "cache", name, "result", "miss");
+
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name);
+        invalidationTopic.addListener(String.class, (channel, key) -> invalidateLocal(key));
+    }
+
+    /**
+     * @param loader 캐시에 없을 때 원본을 읽는다. null 을 돌려주면 캐시하지 않는다.
+     */
+    public V get(String key, Supplier<V> loader) {
+        V value = local.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+
+        long epoch = localEpoch.get();
+        value = remote.get(key);
+        if (value != null) {
+            remoteHitCounter.increment();
+            local.put(key, value);
+            if (localEpoch.get() != epoch) {
+                local.invalidate(key);
+            }
+            return value;
+        }
+        remoteMissCounter.increment();
+
+        long generation = generationOf(key);
+        value = loader.get();
+        if (value != null) {
+            put(key, value);
+            if (generationOf(key) != generation || localEpoch.get() != epoch) {
+                // 읽는 사이에 무효화됐다. 방금 채운 값이 옛 값일 수 있으므로 지운다.
+                local.invalidate(key);
+                remote.fastRemove(key);
+            }
+        }
+        return value;
+    }
+
+    public void put(String key, V value) {
+        remote.fastPut(key, value, remoteTtlMillis, TimeUnit.MILLISECONDS);
+        local.put(key, value);
+    }
+
+    public void invalidate(String key) {
+        generations.addAndGet(key, 1L);
+        invalidateLocal(key);
+        remote.fastRemove(key);
+        invalidationTopic.publish(key);
+    }
+
+    private void invalidateLocal(String key) {
+        localEpoch.incrementAndGet();
+        local.invalidate(key);
+    }
+
+    private long generationOf(String key) {
+        Long generation = generations.get(key);
+        return generation == null ? 0 : generation;
+    }
+}
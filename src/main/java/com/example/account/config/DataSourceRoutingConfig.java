@@ -0,0 +1,84 @@
+package com.example.account.config;
+
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.datasource.ReplicaLagMonitor;
+import com.example.account.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * account.datasource.replica.enabled=true 이면 DataSource 를 primary / replica 두 풀로 나눈다.
+ * Spring 의 @Transactional(readOnly = true) 트랜잭션은 replica 로, 나머지는 primary 로 간다.
+ * primary 는 spring.datasource.*, replica 는 account.datasource.replica.* 설정을 쓴다.
+ *
+ * 로컬에서는 replica url 을 같은 H2 메모리 DB 로 두면 별도 풀이 같은 데이터를 보는 지연 없는 replica 가 되고,
+ * 다른 H2 DB 로 두면 heartbeat 를 읽지 못해 모든 읽기가 primary 로 넘어가는 것을 확인할 수 있다.
+ * 실제 replica 는 replica_heartbeat 테이블까지 복제되어야 지연을 잴 수 있다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "account.datasource.replica.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("account.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${account.datasource.replica.url}") String url,
+                                              @Value("${account.datasource.replica.username:}") String username,
+                                              @Value("${account.datasource.replica.password:}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                               @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${account.datasource.replica.heartbeat-interval:200}") long intervalMillis) {
+        return new ReplicaLagMonitor(primaryDataSource, replicaDataSource, meterRegistry, intervalMillis);
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                      @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                                      ReplicaLagMonitor replicaLagMonitor,
+                                                      ReadYourWritesTracker readYourWritesTracker,
+                                                      @Value("${account.datasource.replica.lag-tolerance:1000}") long lagToleranceMillis) {
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource,
+                replicaLagMonitor, readYourWritesTracker, lagToleranceMillis);
+    }
+
+    // JPA, 초기화 스크립트 등은 이 DataSource 를 쓴다.
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.account.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * account.execution.mode=virtual 이면 Tomcat 요청 처리를 가상 스레드(Java 21+)에서 실행한다.
+ * 락 대기(Redisson tryLock)나 JDBC 호출로 멈춘 요청이 플랫폼 스레드를 붙잡지 않으므로
+ * 동시에 대기 중인 요청 수가 Tomcat 스레드 수(server.tomcat.threads.max)에 묶이지 않는다.
+ * 동시 처리량의 상한은 server.tomcat.max-connections 와 DB 커넥션 풀이 정한다.
+ *
+ * 소스는 Java 11 로 컴파일하므로 가상 스레드 API 는 리플렉션으로 찾는다.
+ * Java 21 미만에서 이 모드를 켜면 기동 시 실패한다.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "account.execution.mode", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("request execution runs on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("account.execution.mode=virtual 은 Java 21 이상에서만 사용할 수 있습니다. 현재: "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+}
@@ -1,30 +1,61 @@
 package com.example.account.controller;
 
+import com.example.account.aop.AccountLock;
+import com.example.account.aop.Idempotent;
+import com.example.account.dto.CancelBalance;
+import com.example.account.dto.HoldBalance;
+import com.example.account.dto.QueryTransactionResponse;
+import com.example.account.dto.Statement;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistory;
 import com.example.account.dto.UseBalance;
+import com.example.account.dto.UseBalanceBatch;
 import com.example.account.exception.AccountException;
+import com.example.account.service.HoldService;
+import com.example.account.service.StatementService;
 import com.example.account.service.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 
 /**
  * 잔액 관련 컨트롤러
  * 1. 잔액 사용
  * 2. 잔액 사용 취소
  * 3. 거래 확인
+ * 4. 계좌 거래 내역 조회(페이지 / NDJSON 스트리밍)
+ * 5. 잔액 홀드 / 확정 / 해제
+ * 6. 계좌 거래명세(일별 집계)
  */
 @RestController
 @Slf4j
 @RequiredArgsConstructor
 public class TransactionController {
+    private static final String NDJSON = "application/x-ndjson";
+
     private final TransactionService transactionService;
+    private final HoldService holdService;
+    private final StatementService statementService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/transaction/use")
+    @Idempotent
+    @AccountLock
     public UseBalance.Response useBalance(
             @Valid @RequestBody UseBalance.Request request
     ){
@@ -41,4 +72,107 @@ public class TransactionController {
             throw e;
         }
     }
+
+    @PostMapping("/transaction/cancel")
+    @AccountLock(dbPath = true)
+    public CancelBalance.Response cancelBalance(
+            @Valid @RequestBody CancelBalance.Request request
+    ){
+        try {
+            return CancelBalance.Response.from(transactionService.cancelBalance(request.getTransactionID(),
+                    request.getAccountNumber(), request.getAmount()));
+        } catch (AccountException e) {
+            log.error("잔액 사용을 취소하는 데에 실패했습니다.");
+
+            transactionService.saveFailedCancelTransaction(
+                    request.getAccountNumber(),
+                    request.getAmount()
+            );
+            throw e;
+        }
+    }
+
+    @PostMapping("/transaction/hold")
+    @Idempotent
+    @AccountLock
+    public HoldBalance.Response holdBalance(
+            @Valid @RequestBody HoldBalance.Request request
+    ){
+        return HoldBalance.Response.from(holdService.holdBalance(request.getUserID(),
+                request.getAccountNumber(), request.getAmount(), request.getTtlSeconds()));
+    }
+
+    @PostMapping("/transaction/hold/capture")
+    @AccountLock
+    public HoldBalance.Response captureHold(
+            @Valid @RequestBody HoldBalance.CaptureRequest request
+    ){
+        return HoldBalance.Response.from(holdService.captureHold(request.getUserID(), request.getHoldID(),
+                request.getAccountNumber(), request.getAmount()));
+    }
+
+    @PostMapping("/transaction/hold/release")
+    @AccountLock
+    public HoldBalance.Response releaseHold(
+            @Valid @RequestBody HoldBalance.ReleaseRequest request
+    ){
+        return HoldBalance.Response.from(holdService.releaseHold(request.getUserID(), request.getHoldID(),
+                request.getAccountNumber()));
+    }
+
+    @PostMapping("/transaction/use/batch")
+    public UseBalanceBatch.Response useBalanceBatch(
+            @Valid @RequestBody UseBalanceBatch.Request request
+    ){
+        return UseBalanceBatch.Response.from(
+                transactionService.useBalanceBatch(request.getRequests())
+        );
+    }
+
+    @GetMapping("/transaction/{transactionId}")
+    public QueryTransactionResponse queryTransaction(
+            @PathVariable String transactionId
+    ){
+        return QueryTransactionResponse.from(
+                transactionService.queryTransaction(transactionId)
+        );
+    }
+
+    @GetMapping("/account/{accountNumber}/transactions")
+    public TransactionHistory.Response getTransactionHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ){
+        return transactionService.getTransactionHistory(accountNumber, cursor, size);
+    }
+
+    // Accept: application/x-ndjson 이면 전체 내역을 한 줄에 한 건씩 chunked 응답으로 내려보낸다.
+    @GetMapping(value = "/account/{accountNumber}/transactions", produces = NDJSON)
+    public void exportTransactionHistory(
+            @PathVariable String accountNumber,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        transactionService.exportTransactionHistory(accountNumber, item -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(item));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    @GetMapping("/account/{accountNumber}/statement")
+    public Statement.Response getStatement(
+            @PathVariable String accountNumber,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ){
+        return statementService.getStatement(accountNumber, from, to);
+    }
 }
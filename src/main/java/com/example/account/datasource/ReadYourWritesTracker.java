@@ -0,0 +1,77 @@
+package com.example.account.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * 사용자별 read-your-writes
+ * 사용자가 쓰기를 커밋한 시각을 기억해 두고, 그 사용자의 읽기는 replica 가 그 시각 이후까지 따라올 때까지 primary 로 보낸다.
+ * 읽는 사용자는 readOnly 트랜잭션 안에서 bindReader 로 표시하며, 트랜잭션이 끝나면 풀린다.
+ * window 가 지난 기록은 버린다. window 는 lag-tolerance 보다 길어야 한다.
+ */
+@Component
+public class ReadYourWritesTracker {
+    private static final ThreadLocal<Long> CURRENT_READER = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final Cache<Long, Long> lastWriteByUser;
+
+    public ReadYourWritesTracker(@Value("${account.datasource.replica.enabled:false}") boolean enabled,
+                                 @Value("${account.datasource.replica.read-your-writes-window:60000}") long windowMillis) {
+        this.enabled = enabled;
+        this.lastWriteByUser = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(windowMillis))
+                .build();
+    }
+
+    /**
+     * 진행 중인 트랜잭션이 있으면 커밋된 뒤에 기록한다. 커밋 전에 기록하면 그 사이의 heartbeat 를 보고 replica 로 보낼 수 있다.
+     */
+    public void recordWrite(Long userID) {
+        if (!enabled || userID == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lastWriteByUser.put(userID, System.currentTimeMillis());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastWriteByUser.put(userID, System.currentTimeMillis());
+            }
+        });
+    }
+
+    /**
+     * 현재 트랜잭션을 userID 의 읽기로 표시한다. 커넥션은 첫 쿼리 때 얻으므로 쿼리 전에 불러야 한다.
+     */
+    public void bindReader(Long userID) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        CURRENT_READER.set(userID);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                CURRENT_READER.remove();
+            }
+        });
+    }
+
+    // 현재 읽는 사용자의 마지막 쓰기가 replicatedUpTo 이후면 replica 에 아직 없을 수 있다.
+    boolean requiresPrimary(long replicatedUpTo) {
+        Long userID = CURRENT_READER.get();
+        if (userID == null) {
+            return false;
+        }
+        Long lastWrite = lastWriteByUser.getIfPresent(userID);
+        return lastWrite != null && lastWrite >= replicatedUpTo;
+    }
+}
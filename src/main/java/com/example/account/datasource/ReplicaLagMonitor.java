@@ -0,0 +1,97 @@
+package com.example.account.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * replica 지연 측정
+ * interval 마다 primary 의 replica_heartbeat 에 현재 시각을 쓰고 replica 에서 다시 읽는다.
+ * replica 에서 읽은 시각(replicatedUpTo)까지의 쓰기는 replica 에 반영된 것으로 본다.
+ * replica 를 읽지 못하면 replicatedUpTo 가 멈추므로 지연이 커져 읽기가 primary 로 넘어간다.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    private static final String UPDATE_BEAT = "update replica_heartbeat set beat_at = ? where id = 1";
+    private static final String INSERT_BEAT = "insert into replica_heartbeat (id, beat_at) values (1, ?)";
+    private static final String SELECT_BEAT = "select beat_at from replica_heartbeat where id = 1";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long intervalMillis;
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+
+    private volatile long replicatedUpTo;
+    private Thread heartbeatThread;
+
+    public ReplicaLagMonitor(DataSource primaryDataSource, DataSource replicaDataSource,
+                             MeterRegistry meterRegistry, long intervalMillis) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.intervalMillis = intervalMillis;
+        meterRegistry.gauge("account.datasource.replica.lag", this, ReplicaLagMonitor::lagMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeatThread = new Thread(this::heartbeatLoop, "replica-heartbeat");
+        heartbeatThread.setDaemon(true);
+        heartbeatThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopSignal.countDown();
+        heartbeatThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public long replicatedUpTo() {
+        return replicatedUpTo;
+    }
+
+    public long lagMillis() {
+        return System.currentTimeMillis() - replicatedUpTo;
+    }
+
+    private void heartbeatLoop() {
+        try {
+            do {
+                beat();
+                probe();
+            } while (!stopSignal.await(intervalMillis, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 기동 직후에는 테이블이 아직 없을 수 있으므로 실패는 다음 주기에 다시 시도한다.
+    private void beat() {
+        try {
+            long now = System.currentTimeMillis();
+            if (primary.update(UPDATE_BEAT, now) == 0) {
+                primary.update(INSERT_BEAT, now);
+            }
+        } catch (DataAccessException e) {
+            log.debug("replica heartbeat write failed", e);
+        }
+    }
+
+    private void probe() {
+        try {
+            List<Long> beats = replica.queryForList(SELECT_BEAT, Long.class);
+            if (!beats.isEmpty()) {
+                replicatedUpTo = Math.max(replicatedUpTo, beats.get(0));
+            }
+        } catch (DataAccessException e) {
+            log.debug("replica heartbeat read failed", e);
+        }
+    }
+}
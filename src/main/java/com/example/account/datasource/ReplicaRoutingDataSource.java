@@ -0,0 +1,49 @@
+package com.example.account.datasource;
+
+import com.example.account.type.DataSourceType;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * readOnly 트랜잭션은 replica, 나머지는 primary 로 보낸다.
+ * replica 지연이 lag-tolerance 를 넘었거나, 읽는 사용자의 마지막 쓰기가 아직 replica 에 없으면 primary 로 읽는다.
+ * 트랜잭션의 readOnly 여부는 트랜잭션이 시작된 뒤에 정해지므로 LazyConnectionDataSourceProxy 로 감싸
+ * 첫 쿼리 때 커넥션을 고르게 한다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final long lagToleranceMillis;
+
+    public ReplicaRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource,
+                                    ReplicaLagMonitor replicaLagMonitor,
+                                    ReadYourWritesTracker readYourWritesTracker,
+                                    long lagToleranceMillis) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.lagToleranceMillis = lagToleranceMillis;
+
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(DataSourceType.PRIMARY, primaryDataSource);
+        targetDataSources.put(DataSourceType.REPLICA, replicaDataSource);
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primaryDataSource);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return DataSourceType.PRIMARY;
+        }
+        long replicatedUpTo = replicaLagMonitor.replicatedUpTo();
+        if (System.currentTimeMillis() - replicatedUpTo > lagToleranceMillis
+                || readYourWritesTracker.requiresPrimary(replicatedUpTo)) {
+            return DataSourceType.PRIMARY;
+        }
+        return DataSourceType.REPLICA;
+    }
+}
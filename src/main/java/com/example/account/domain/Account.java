@@ -23,13 +23,21 @@ public class Account {
     @GeneratedValue
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private AccountUser accountUser;
+    @Column(unique = true)
     private String accountNumber;
 
     @Enumerated(EnumType.STRING)
     private AccountStatus accountStatus;
     private Long balance;
+    // 홀드로 묶어 둔 금액. 잔액(balance)에 포함되어 있고, 사용할 수 있는 금액은 balance - heldAmount 이다.
+    @Builder.Default
+    @Column(nullable = false)
+    private Long heldAmount = 0L;
+
+    @Version
+    private Long version;
 
     private LocalDateTime registeredAt;
     private LocalDateTime unregisteredAt;
@@ -40,9 +48,17 @@ public class Account {
     private LocalDateTime updatedAt;
 
     public void useBalance(Long amount){
-        if(amount > balance){
+        if(amount > getAvailableBalance()){
             throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
         }
         balance -= amount;
     }
+
+    public void cancelBalance(Long amount){
+        balance += amount;
+    }
+
+    public Long getAvailableBalance(){
+        return balance - heldAmount;
+    }
 }
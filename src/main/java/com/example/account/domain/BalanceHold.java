@@ -0,0 +1,48 @@
+package com.example.account.domain;
+
+import com.example.account.type.HoldStatus;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 잔액 홀드(승인). 확정(capture)하면 잔액에서 빠지고, 해제(release)되거나 만료되면 묶인 금액이 풀린다.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(indexes = {
+        @Index(name = "uk_balance_hold_hold_id", columnList = "holdID", unique = true),
+        // 기동 시 만료 스케줄을 다시 잡을 때 진행 중인 홀드만 읽는다.
+        @Index(name = "idx_balance_hold_status_expires_at", columnList = "holdStatus, expiresAt")
+})
+public class BalanceHold {
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @Column(length = 32, nullable = false)
+    private String holdID;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Account account;
+    private Long amount;
+    private Long capturedAmount;
+
+    @Enumerated(EnumType.STRING)
+    private HoldStatus holdStatus;
+    private LocalDateTime expiresAt;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+}
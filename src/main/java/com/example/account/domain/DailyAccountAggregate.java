@@ -0,0 +1,45 @@
+package com.example.account.domain;
+
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 계좌별 하루 거래 집계. 성공한 거래가 저장될 때 같은 트랜잭션에서 더해진다.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(indexes = {
+        @Index(name = "uk_daily_account_aggregate_account_date", columnList = "account_id, aggregateDate", unique = true)
+})
+public class DailyAccountAggregate {
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Account account;
+    private LocalDate aggregateDate;
+
+    private Long transactionCount;
+    private Long usedAmount;
+    private Long canceledAmount;
+    // 그날 마지막 거래의 balanceSnapshot
+    private Long closingBalance;
+    private LocalDateTime lastTransactedAt;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,22 @@
+package com.example.account.domain;
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * replica 지연 측정용 heartbeat. 한 행(id = 1)만 두고 primary 에서 주기적으로 시각(epoch millis)을 갱신한다.
+ * replica 에서 읽은 값이 replica 에 반영된 마지막 시각이다. 읽고 쓰는 것은 ReplicaLagMonitor 가 JDBC 로 한다.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class ReplicaHeartbeat {
+    @Id
+    private Long id;
+
+    private Long beatAt;
+}
@@ -18,9 +18,17 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Entity
 @EntityListeners(AuditingEntityListener.class)
+@Table(indexes = {
+        @Index(name = "uk_transaction_transaction_id", columnList = "transactionID", unique = true),
+        @Index(name = "uk_transaction_original_transaction_id", columnList = "originalTransactionID", unique = true),
+        // 계좌별 거래 내역을 최신순으로 읽는 keyset 조회용
+        @Index(name = "idx_transaction_account_transacted_at", columnList = "account_id, transactedAt, id")
+})
 public class Transaction {
+    // pooled 시퀀스로 id 를 allocationSize 개씩 미리 받아 batch insert 시 row 마다 조회하지 않는다.
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -28,12 +36,16 @@ public class Transaction {
     @Enumerated(EnumType.STRING)
     private TransactionResultType transactionResultType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Account account;
     private Long amount;
     private Long balanceSnapshot;
 
+    @Column(length = 32, nullable = false)
     private String transactionID;
+    // 성공한 취소 거래에만 원거래 ID 를 남긴다. unique 인덱스라 같은 거래를 두 번 취소할 수 없다.
+    @Column(length = 32)
+    private String originalTransactionID;
     private LocalDateTime transactedAt;
 
     @CreatedDate
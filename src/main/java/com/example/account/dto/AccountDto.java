@@ -1,6 +1,7 @@
 package com.example.account.dto;
 
 import com.example.account.domain.Account;
+import com.example.account.repository.projection.AccountSummary;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -27,4 +28,14 @@ public class AccountDto {
                 .unRegisteredAt(account.getUnregisteredAt())
                 .build();
     }
+
+    public static AccountDto fromSummary(AccountSummary accountSummary){
+        return AccountDto.builder()
+                .userID(accountSummary.getUserID())
+                .accountNumber(accountSummary.getAccountNumber())
+                .balance(accountSummary.getBalance())
+                .registeredAt(accountSummary.getRegisteredAt())
+                .unRegisteredAt(accountSummary.getUnregisteredAt())
+                .build();
+    }
 }
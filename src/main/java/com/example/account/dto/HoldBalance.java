@@ -0,0 +1,95 @@
+package com.example.account.dto;
+
+import com.example.account.aop.AccountLockIdInterface;
+import com.example.account.aop.UserIdInterface;
+import com.example.account.type.HoldStatus;
+import lombok.*;
+
+import javax.validation.constraints.*;
+import java.time.LocalDateTime;
+
+public class HoldBalance {
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    public static class Request implements AccountLockIdInterface, UserIdInterface {
+        @NotNull
+        @Min(1)
+        private Long userID;
+
+        @NotBlank
+        @Size(min = 10, max = 10)
+        private String accountNumber;
+
+        @NotNull
+        @Min(1)
+        @Max(1000_000_000)
+        private Long amount;
+
+        // 없으면 account.hold.default-ttl
+        @Min(1)
+        private Long ttlSeconds;
+    }
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    public static class CaptureRequest implements AccountLockIdInterface, UserIdInterface {
+        @NotNull
+        @Min(1)
+        private Long userID;
+
+        @NotBlank
+        private String holdID;
+
+        @NotBlank
+        @Size(min = 10, max = 10)
+        private String accountNumber;
+
+        // 없으면 홀드 금액 전체. 홀드 금액보다 적으면 나머지는 해제한다.
+        @Min(0)
+        @Max(1000_000_000)
+        private Long amount;
+    }
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    public static class ReleaseRequest implements AccountLockIdInterface, UserIdInterface {
+        @NotNull
+        @Min(1)
+        private Long userID;
+
+        @NotBlank
+        private String holdID;
+
+        @NotBlank
+        @Size(min = 10, max = 10)
+        private String accountNumber;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response{
+        private String accountNumber;
+        private String holdID;
+        private HoldStatus holdStatus;
+        private Long amount;
+        private Long capturedAmount;
+        private LocalDateTime expiresAt;
+
+        public static Response from(HoldDto holdDto) {
+            return Response.builder()
+                    .accountNumber(holdDto.getAccountNumber())
+                    .holdID(holdDto.getHoldID())
+                    .holdStatus(holdDto.getHoldStatus())
+                    .amount(holdDto.getAmount())
+                    .capturedAmount(holdDto.getCapturedAmount())
+                    .expiresAt(holdDto.getExpiresAt())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.account.dto;
+
+import com.example.account.domain.BalanceHold;
+import com.example.account.type.HoldStatus;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HoldDto {
+    private String holdID;
+    private String accountNumber;
+    private HoldStatus holdStatus;
+    private Long amount;
+    private Long capturedAmount;
+    private Long balanceSnapshot;
+    private LocalDateTime expiresAt;
+
+    public static HoldDto fromEntity(BalanceHold hold, String accountNumber, Long balanceSnapshot) {
+        return HoldDto.builder()
+                .holdID(hold.getHoldID())
+                .accountNumber(accountNumber)
+                .holdStatus(hold.getHoldStatus())
+                .amount(hold.getAmount())
+                .capturedAmount(hold.getCapturedAmount())
+                .balanceSnapshot(balanceSnapshot)
+                .expiresAt(hold.getExpiresAt())
+                .build();
+    }
+}
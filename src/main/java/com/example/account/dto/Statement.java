@@ -0,0 +1,51 @@
+package com.example.account.dto;
+
+import com.example.account.repository.projection.DailyAggregateRow;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class Statement {
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response{
+        private String accountNumber;
+        private LocalDate from;
+        private LocalDate to;
+        // 기간 전후 잔액. 기간과 그 이전에 거래가 없으면 null.
+        private Long openingBalance;
+        private Long closingBalance;
+        private Long transactionCount;
+        private Long usedAmount;
+        private Long canceledAmount;
+        // 거래가 있었던 날만 담는다.
+        private List<Day> days;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Day{
+        private LocalDate date;
+        private Long transactionCount;
+        private Long usedAmount;
+        private Long canceledAmount;
+        private Long closingBalance;
+
+        public static Day from(DailyAggregateRow row) {
+            return Day.builder()
+                    .date(row.getAggregateDate())
+                    .transactionCount(row.getTransactionCount())
+                    .usedAmount(row.getUsedAmount())
+                    .canceledAmount(row.getCanceledAmount())
+                    .closingBalance(row.getClosingBalance())
+                    .build();
+        }
+    }
+}
@@ -1,14 +1,10 @@
 package com.example.account.dto;
 
-import com.example.account.domain.Account;
 import com.example.account.domain.Transaction;
+import com.example.account.type.ErrorCode;
 import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
 import lombok.*;
-import org.springframework.data.annotation.CreatedDate;
-import org.springframework.data.annotation.LastModifiedDate;
-
-import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Setter
@@ -20,17 +16,22 @@ public class TransactionDto {
     private String accountNumber;
     private TransactionType transactionType;
     private TransactionResultType transactionResultType;
-    private Account account;
     private Long amount;
     private Long balanceSnapshot;
     private String transactionID;
     private LocalDateTime transactedAt;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private ErrorCode errorCode;
 
     public static TransactionDto fromEntity(Transaction transaction){
+        return fromEntity(transaction, transaction.getAccount().getAccountNumber());
+    }
+
+    // 계좌번호를 이미 알고 있으면 연관된 Account 를 읽지 않는다.
+    public static TransactionDto fromEntity(Transaction transaction, String accountNumber){
         return TransactionDto.builder()
-                .accountNumber(transaction.getAccount().getAccountNumber())
+                .accountNumber(accountNumber)
                 .transactionType(transaction.getTransactionType())
                 .transactionResultType(transaction.getTransactionResultType())
                 .amount(transaction.getAmount())
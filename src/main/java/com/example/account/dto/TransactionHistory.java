@@ -0,0 +1,86 @@
+package com.example.account.dto;
+
+import com.example.account.exception.AccountException;
+import com.example.account.repository.projection.TransactionHistoryRow;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import lombok.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+public class TransactionHistory {
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response{
+        private List<Item> transactions;
+        // 다음 페이지를 요청할 때 cursor 로 넘긴다. 마지막 페이지면 null.
+        private String nextCursor;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item{
+        private TransactionType transactionType;
+        private TransactionResultType transactionResult;
+        private String transactionID;
+        private String originalTransactionID;
+        private Long amount;
+        private Long balanceSnapshot;
+        private LocalDateTime transactedAt;
+
+        public static Item from(TransactionHistoryRow row) {
+            return Item.builder()
+                    .transactionType(row.getTransactionType())
+                    .transactionResult(row.getTransactionResultType())
+                    .transactionID(row.getTransactionID())
+                    .originalTransactionID(row.getOriginalTransactionID())
+                    .amount(row.getAmount())
+                    .balanceSnapshot(row.getBalanceSnapshot())
+                    .transactedAt(row.getTransactedAt())
+                    .build();
+        }
+    }
+
+    /**
+     * 마지막으로 읽은 거래의 (transactedAt, id). 다음 페이지는 이 위치보다 오래된 거래부터 읽는다.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Cursor{
+        private final LocalDateTime transactedAt;
+        private final Long id;
+
+        public static Cursor of(TransactionHistoryRow row) {
+            return new Cursor(row.getTransactedAt(), row.getId());
+        }
+
+        public String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((transactedAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                        .split("\\|");
+                if (parts.length != 2) {
+                    throw new AccountException(ErrorCode.INVALID_TRANSACTION_CURSOR);
+                }
+                return new Cursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new AccountException(ErrorCode.INVALID_TRANSACTION_CURSOR);
+            }
+        }
+    }
+}
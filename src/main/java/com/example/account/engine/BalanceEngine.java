@@ -0,0 +1,315 @@
+package com.example.account.engine;
+
+import com.example.account.cache.AccountCache;
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.exception.AccountException;
+import com.example.account.ledger.TransactionLedgerWriter;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 거래가 몰리는 계좌(account.engine.accounts)의 잔액을 메모리에서 처리하는 엔진
+ *
+ * - 계좌번호 해시로 shard 를 고르고, shard 스레드 하나가 해당 계좌들의 잔액을 소유한다.
+ * - 잔액 사용은 shard 의 WAL 에 기록(force)된 뒤 응답한다. 요청 경로에 DB 왕복과 계좌 락이 없다.
+ * - flusher 가 flush-interval 마다 WAL 에 쌓인 거래를 TransactionLedgerWriter 로 DB 에 반영한다.
+ *   잔액은 절대값이 아니라 차감액으로 반영하므로 DB 경로의 입금(취소)과 섞여도 잃지 않는다.
+ *   취소는 DB 에 커밋된 뒤 shard 의 메모리 잔액에도 더한다.
+ * - 기동 시 DB 에 반영되지 않은 WAL 기록을 다시 반영한다. 이미 들어간 거래(transactionID)는 건너뛴다.
+ *
+ * - 해지는 shard 가 메모리의 잔액으로 확인하고 막은 뒤, 남은 거래가 DB 에 반영되고 나서 DB 에 해지를 남긴다.
+ *
+ * 엔진이 소유한 계좌는 잔액 사용을 엔진으로만 해야 한다. DB 에서 읽는 잔액은 flush-interval 만큼 늦을 수 있다.
+ * 잔액과 WAL 이 노드 메모리/로컬 디스크에 있으므로 한 계좌는 한 노드의 engine.accounts 에만 두어야 한다.
+ * 여러 노드가 같은 계좌를 엔진으로 가지면 각자 잔액을 들고 차감해 잔액을 넘겨 쓸 수 있다.
+ */
+@Slf4j
+@Component
+public class BalanceEngine {
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionLedgerWriter transactionLedgerWriter;
+    private final AccountCache accountCache;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    @Value("${account.engine.enabled:false}")
+    private boolean enabled;
+
+    @Value("${account.engine.accounts:}")
+    private Set<String> ownedAccounts;
+
+    @Value("${account.engine.shards:4}")
+    private int shardCount;
+
+    @Value("${account.engine.wal-directory:engine-wal}")
+    private String walDirectory;
+
+    @Value("${account.engine.wal-size:67108864}")
+    private int walSize;
+
+    @Value("${account.engine.flush-interval:50}")
+    private long flushIntervalMillis;
+
+    @Value("${account.engine.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${account.engine.drain-timeout:5000}")
+    private long drainTimeoutMillis;
+
+    private EngineShard[] shards;
+    private WriteAheadLog[] wals;
+    private Thread flusherThread;
+    private volatile boolean running;
+
+    public BalanceEngine(AccountRepository accountRepository,
+                         TransactionRepository transactionRepository,
+                         TransactionLedgerWriter transactionLedgerWriter,
+                         AccountCache accountCache,
+                         ReadYourWritesTracker readYourWritesTracker) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionLedgerWriter = transactionLedgerWriter;
+        this.accountCache = accountCache;
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path directory = Paths.get(walDirectory);
+        Files.createDirectories(directory);
+
+        shards = new EngineShard[shardCount];
+        wals = new WriteAheadLog[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            wals[i] = WriteAheadLog.open(directory.resolve("shard-" + i + ".wal"), walSize);
+            recover(i);
+            shards[i] = new EngineShard(i, wals[i], this::loadAccount);
+            shards[i].start();
+        }
+
+        running = true;
+        flusherThread = new Thread(this::flushLoop, "balance-engine-flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+        log.info("balance engine started: {} shards, {} accounts", shardCount, ownedAccounts.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        for (EngineShard shard : shards) {
+            shard.stop();
+        }
+        running = false;
+        flusherThread.join(TimeUnit.SECONDS.toMillis(10));
+        for (WriteAheadLog wal : wals) {
+            wal.close();
+        }
+    }
+
+    public boolean owns(String accountNumber) {
+        return enabled && ownedAccounts.contains(accountNumber);
+    }
+
+    /**
+     * WAL 에 기록된 뒤 반환한다. 반환된 Transaction 은 아직 DB 에 저장되지 않았다.
+     */
+    public Transaction useBalance(Long userID, String accountNumber, Long amount) {
+        String transactionID = UUID.randomUUID().toString().replace("-", "");
+        WalRecord record = join(shardOf(accountNumber).submit(userID, accountNumber, amount, transactionID));
+        return toTransaction(record, null);
+    }
+
+    /**
+     * 해지 전에 엔진의 잔액을 확인하고 더 이상 사용할 수 없게 막은 뒤, 그때까지의 거래가 DB 에 반영될 때까지 기다린다.
+     * 최대 drain-timeout 만큼 기다리므로 DB 커넥션을 잡지 않도록 트랜잭션 밖에서 부르고,
+     * 뒤이은 DB 해지가 실패하면 reopen 으로 되돌린다. 기다리다 실패하면 여기서 되돌린다.
+     * 엔진이 소유하지 않은 계좌면 false 를 반환하고, 이때는 DB 잔액으로 확인한다.
+     */
+    public boolean unregister(Long userID, String accountNumber) {
+        if (!owns(accountNumber)) {
+            return false;
+        }
+        EngineShard shard = shardOf(accountNumber);
+        long seq = join(shard.unregister(userID, accountNumber));
+
+        long deadline = System.currentTimeMillis() + drainTimeoutMillis;
+        while (shard.flushedSeq() < seq) {
+            if (System.currentTimeMillis() > deadline) {
+                log.error("balance engine did not flush {} before unregistering it", accountNumber);
+                shard.reopen(accountNumber);
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shard.reopen(accountNumber);
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * unregister 로 막은 계좌를 DB 해지가 커밋되지 않았을 때 다시 사용할 수 있게 되돌린다.
+     */
+    public void reopen(String accountNumber) {
+        if (owns(accountNumber)) {
+            join(shardOf(accountNumber).reopen(accountNumber));
+        }
+    }
+
+    /**
+     * DB 에 커밋된 취소 금액을 엔진의 잔액에도 더한다. 취소는 DB 에 이미 남았으므로 WAL 에는 쓰지 않는다.
+     * @param canceledVersion 취소를 반영한 뒤의 계좌 version
+     */
+    public void credit(String accountNumber, Long amount, long canceledVersion) {
+        if (owns(accountNumber)) {
+            join(shardOf(accountNumber).credit(accountNumber, amount, canceledVersion));
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private EngineShard shardOf(String accountNumber) {
+        return shards[Math.floorMod(accountNumber.hashCode(), shards.length)];
+    }
+
+    private EngineShard.AccountState loadAccount(String accountNumber) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        return new EngineShard.AccountState(account.getId(), account.getAccountUser().getID(),
+                account.getAccountStatus(), account.getBalance(), account.getVersion());
+    }
+
+    private void recover(int shardIndex) {
+        WriteAheadLog wal = wals[shardIndex];
+        List<WalRecord> unflushed = wal.recover();
+        for (int from = 0; from < unflushed.size(); from += flushBatchSize) {
+            List<WalRecord> chunk = unflushed.subList(from, Math.min(from + flushBatchSize, unflushed.size()));
+            persist(chunk, true);
+            wal.checkpoint(chunk.get(chunk.size() - 1).getSeq());
+        }
+        if (!unflushed.isEmpty()) {
+            log.info("balance engine shard {} recovered {} records from WAL", shardIndex, unflushed.size());
+        }
+    }
+
+    private void flushLoop() {
+        boolean[] retrying = new boolean[shards.length];
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            // 멈추는 중에도 shard 가 마지막으로 기록한 것까지 반영한다.
+            for (int i = 0; i < shards.length; i++) {
+                List<WalRecord> records;
+                while (!(records = shards[i].takeUnflushed(flushBatchSize)).isEmpty()) {
+                    try {
+                        persist(records, retrying[i]);
+                        shards[i].markFlushed();
+                        retrying[i] = false;
+                    } catch (RuntimeException e) {
+                        // 반영 여부를 알 수 없으므로 다음에는 이미 저장된 거래를 걸러내고 다시 반영한다.
+                        log.error("balance engine flush failed for shard {}", i, e);
+                        retrying[i] = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // 거래 기록 저장과 잔액 차감을 한 DB 트랜잭션에서 한다.
+    private void persist(List<WalRecord> records, boolean skipPersisted) {
+        transactionLedgerWriter.appendAll(() -> {
+            List<WalRecord> pending = records;
+            if (skipPersisted) {
+                Set<String> persisted = new HashSet<>(transactionRepository.findExistingTransactionIDs(
+                        records.stream().map(WalRecord::getTransactionID).collect(Collectors.toList())));
+                pending = records.stream()
+                        .filter(record -> !persisted.contains(record.getTransactionID()))
+                        .collect(Collectors.toList());
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            pending.stream()
+                    .collect(Collectors.groupingBy(WalRecord::getAccountNumber,
+                            Collectors.summingLong(WalRecord::getAmount)))
+                    .forEach((accountNumber, amount) -> {
+                        if (accountRepository.applyBalanceDelta(accountNumber, -amount, now) == 0) {
+                            log.error("balance engine could not apply {} to unregistered account {}", -amount, accountNumber);
+                        }
+                    });
+
+            List<Transaction> transactions = pending.stream()
+                    .map(record -> toTransaction(record, accountRepository.getById(record.getAccountId())))
+                    .collect(Collectors.toList());
+            // 요청 시점이 아니라 DB 에 반영된 커밋 뒤에 기록해야 그 사용자의 읽기가 이 반영 이전의 replica 로 가지 않는다.
+            transactions.stream()
+                    .map(transaction -> transaction.getAccount().getAccountUser().getID())
+                    .distinct()
+                    .forEach(readYourWritesTracker::recordWrite);
+            return transactions;
+        });
+        records.stream()
+                .map(WalRecord::getAccountNumber)
+                .distinct()
+                .forEach(accountCache::evictAccount);
+    }
+
+    private static Transaction toTransaction(WalRecord record, Account account) {
+        return Transaction.builder()
+                .transactionType(USE)
+                .transactionResultType(S)
+                .account(account)
+                .amount(record.getAmount())
+                .balanceSnapshot(record.getBalanceSnapshot())
+                .transactionID(record.getTransactionID())
+                .transactedAt(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(record.getTransactedAtMillis()), ZoneId.systemDefault()))
+                .build();
+    }
+}
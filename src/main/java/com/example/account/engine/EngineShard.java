@@ -0,0 +1,291 @@
+package com.example.account.engine;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 계좌번호 해시로 나뉜 계좌들의 잔액을 소유하는 단일 writer.
+ * 요청은 lock-free 큐(ConcurrentLinkedQueue)로 받고, shard 스레드 하나만 잔액과 WAL 을 바꾸므로 락이 없다.
+ * 모아 꺼낸 요청을 WAL 에 쓰고 한 번 force 한 뒤 응답한다. DB 반영은 flusher 가 따로 한다.
+ * 해지처럼 계좌 상태를 바꾸는 작업(task)도 shard 스레드가 잔액 변경 batch 사이에 실행한다.
+ */
+@Slf4j
+class EngineShard implements Runnable {
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int index;
+    private final WriteAheadLog wal;
+    private final Function<String, AccountState> loader;
+    private final Queue<Command> requests = new ConcurrentLinkedQueue<>();
+    private final Queue<Task<?>> tasks = new ConcurrentLinkedQueue<>();
+    private final Queue<WalRecord> committed = new ConcurrentLinkedQueue<>();
+    private final Map<String, AccountState> accounts = new HashMap<>();
+
+    // flusher 스레드 전용: DB 반영을 시도 중인 record
+    private final List<WalRecord> flushing = new ArrayList<>();
+
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    EngineShard(int index, WriteAheadLog wal, Function<String, AccountState> loader) {
+        this.index = index;
+        this.wal = wal;
+        this.loader = loader;
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "balance-engine-" + index);
+        thread.start();
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    CompletableFuture<WalRecord> submit(Long userID, String accountNumber, Long amount, String transactionID) {
+        Command command = new Command(userID, accountNumber, amount, transactionID, new CompletableFuture<>());
+        if (!running) {
+            command.result.completeExceptionally(new IllegalStateException("balance engine shard " + index + " is stopped"));
+            return command.result;
+        }
+        requests.offer(command);
+        LockSupport.unpark(thread);
+        return command.result;
+    }
+
+    /**
+     * 해지 전에 shard 스레드에서 잔액을 확인하고 더 이상 사용할 수 없게 막는다.
+     * @return 지금까지 WAL 에 쓴 마지막 seq. 이 seq 까지 DB 에 반영되면 DB 잔액이 이 계좌의 최종 잔액이다.
+     */
+    CompletableFuture<Long> unregister(Long userID, String accountNumber) {
+        return call(() -> {
+            AccountState account = accountOf(accountNumber);
+            if (!Objects.equals(account.userID, userID)) {
+                throw new AccountException(ErrorCode.USER_ACCOUNT_UN_MATCHED);
+            }
+            if (account.accountStatus != AccountStatus.IN_USE) {
+                throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+            }
+            if (account.balance > 0) {
+                throw new AccountException(ErrorCode.BALANCE_OVER_ZERO);
+            }
+            account.accountStatus = AccountStatus.UNREGISTERED;
+            return wal.lastSeq();
+        });
+    }
+
+    // DB 해지가 롤백되면 다시 사용할 수 있게 되돌린다.
+    CompletableFuture<Void> reopen(String accountNumber) {
+        return call(() -> {
+            AccountState account = accounts.get(accountNumber);
+            if (account != null) {
+                account.accountStatus = AccountStatus.IN_USE;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * DB 에 커밋된 취소 금액을 메모리 잔액에도 더한다.
+     * 취소가 커밋된 뒤에 읽어 온 계좌는 이미 그 금액을 포함하므로 canceledVersion 으로 걸러 한 번만 더한다.
+     */
+    CompletableFuture<Void> credit(String accountNumber, long amount, long canceledVersion) {
+        return call(() -> {
+            AccountState account = accounts.get(accountNumber);
+            if (account != null && account.loadedVersion < canceledVersion) {
+                account.balance += amount;
+            }
+            return null;
+        });
+    }
+
+    long flushedSeq() {
+        return wal.flushedSeq();
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<T> work) {
+        Task<T> task = new Task<>(work, new CompletableFuture<>());
+        if (!running) {
+            task.result.completeExceptionally(new IllegalStateException("balance engine shard " + index + " is stopped"));
+            return task.result;
+        }
+        tasks.offer(task);
+        LockSupport.unpark(thread);
+        return task.result;
+    }
+
+    @Override
+    public void run() {
+        List<Command> pending = new ArrayList<>(MAX_BATCH);
+        List<WalRecord> records = new ArrayList<>(MAX_BATCH);
+        while (running || !requests.isEmpty() || !tasks.isEmpty()) {
+            Task<?> task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            Command command = requests.poll();
+            if (command == null) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                do {
+                    WalRecord record = apply(command);
+                    if (record != null) {
+                        appendToWal(record, pending, records);
+                        pending.add(command);
+                        records.add(record);
+                    }
+                } while (pending.size() < MAX_BATCH && (command = requests.poll()) != null);
+
+                commit(pending, records);
+            } catch (RuntimeException e) {
+                // WAL 에 쓰지 못했으면 메모리의 잔액도 믿을 수 없으므로 멈춘다. 재기동 시 WAL 과 DB 로 복구한다.
+                log.error("balance engine shard {} stopped", index, e);
+                running = false;
+                pending.forEach(failed -> failed.result.completeExceptionally(e));
+                Command queued;
+                while ((queued = requests.poll()) != null) {
+                    queued.result.completeExceptionally(e);
+                }
+                Task<?> queuedTask;
+                while ((queuedTask = tasks.poll()) != null) {
+                    queuedTask.result.completeExceptionally(e);
+                }
+            } finally {
+                pending.clear();
+                records.clear();
+            }
+        }
+    }
+
+    private WalRecord apply(Command command) {
+        AccountState account;
+        try {
+            account = accountOf(command.accountNumber);
+        } catch (AccountException e) {
+            command.result.completeExceptionally(e);
+            return null;
+        }
+
+        ErrorCode errorCode = validate(account, command);
+        if (errorCode != null) {
+            command.result.completeExceptionally(new AccountException(errorCode));
+            return null;
+        }
+
+        account.balance -= command.amount;
+        return new WalRecord(wal.nextSeq(), account.accountId, command.accountNumber, command.amount,
+                account.balance, command.transactionID, System.currentTimeMillis());
+    }
+
+    private AccountState accountOf(String accountNumber) {
+        AccountState account = accounts.get(accountNumber);
+        if (account == null) {
+            account = loader.apply(accountNumber);
+            accounts.put(accountNumber, account);
+        }
+        return account;
+    }
+
+    private ErrorCode validate(AccountState account, Command command) {
+        if (!Objects.equals(account.userID, command.userID)) {
+            return ErrorCode.USER_ACCOUNT_UN_MATCHED;
+        }
+        if (account.accountStatus != AccountStatus.IN_USE) {
+            return ErrorCode.ACCOUNT_ALREADY_UNREGISTERED;
+        }
+        if (account.balance < command.amount) {
+            return ErrorCode.AMOUNT_EXCEED_BALANCE;
+        }
+        return null;
+    }
+
+    // WAL 이 가득 차면 쓴 것까지 응답하고 flusher 가 DB 에 반영해 자리를 비울 때까지 기다린다.
+    private void appendToWal(WalRecord record, List<Command> pending, List<WalRecord> records) {
+        while (!wal.tryAppend(record)) {
+            commit(pending, records);
+            pending.clear();
+            records.clear();
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    private void commit(List<Command> pending, List<WalRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        wal.force();
+        committed.addAll(records);
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).result.complete(records.get(i));
+        }
+    }
+
+    /**
+     * flusher 스레드가 호출한다. 지난번 반영에 실패한 record 가 있으면 그것부터 다시 돌려준다.
+     */
+    List<WalRecord> takeUnflushed(int maxSize) {
+        WalRecord record;
+        while (flushing.size() < maxSize && (record = committed.poll()) != null) {
+            flushing.add(record);
+        }
+        return flushing;
+    }
+
+    void markFlushed() {
+        if (flushing.isEmpty()) {
+            return;
+        }
+        wal.checkpoint(flushing.get(flushing.size() - 1).getSeq());
+        flushing.clear();
+    }
+
+    @AllArgsConstructor
+    static class AccountState {
+        private final long accountId;
+        private final Long userID;
+        private AccountStatus accountStatus;
+        private long balance;
+        // 읽어 온 시점의 DB version. 이보다 뒤에 커밋된 취소만 메모리 잔액에 더한다.
+        private final long loadedVersion;
+    }
+
+    @AllArgsConstructor
+    private static class Task<T> {
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result;
+
+        void run() {
+            try {
+                result.complete(work.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Command {
+        private final Long userID;
+        private final String accountNumber;
+        private final Long amount;
+        private final String transactionID;
+        private final CompletableFuture<WalRecord> result;
+    }
+}
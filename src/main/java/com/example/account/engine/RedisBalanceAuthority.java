@@ -0,0 +1,475 @@
+package com.example.account.engine;
+
+import com.example.account.cache.AccountCache;
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.exception.AccountException;
+import com.example.account.ledger.TransactionLedgerWriter;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 계좌 잔액을 Redis 에 두고 Redis 를 기준으로 잔액 사용을 처리한다.
+ *
+ * - 잔액 사용은 Lua 스크립트 한 번으로 상태/소유주/잔액을 확인하고 차감한 뒤 계좌별 거래 로그(list)에 남긴다.
+ *   스크립트는 Redis 에서 원자적으로 실행되므로 요청 경로에 계좌 락과 DB 왕복이 없다.
+ * - 처음 쓰는 계좌는 DB 의 잔액을 읽어 Redis 에 올린다. 읽은 DB version 을 함께 두어 그 사이에 커밋된 취소를 놓치지 않는다.
+ * - writer 스레드가 flush-interval 마다 거래 로그를 Transaction 으로 저장하고 DB 잔액에 차감액을 반영한다.
+ *   이미 저장된 거래(transactionID)는 건너뛰므로 저장 후 로그를 지우기 전에 죽어도 두 번 반영하지 않는다.
+ *   모든 노드의 writer 가 같은 로그를 보므로 Redisson 락(account:balance-writer)을 잡은 노드만 반영한다.
+ *   락이 풀린 사이(GC 멈춤 등)에 두 노드가 같은 로그를 읽어도, 로그는 앞에서부터 저장한 transactionID 가 이어지는 만큼만 지우므로
+ *   다른 노드가 아직 저장하지 않은 뒤의 거래를 지우지 않는다. 같은 거래를 동시에 저장하면 transactionID unique 인덱스가 막는다.
+ * - 취소(입금)와 해지는 DB 경로로 처리하고 Redis 잔액/상태에도 반영한다.
+ *   해지는 Redis 잔액으로 확인하고 막은 뒤, 남은 거래 로그가 DB 에 반영되고 나서 DB 에 해지를 남긴다.
+ *   원거래가 아직 DB 에 반영되지 않았으면 취소할 수 없다.
+ *
+ * 로그를 Redis 에만 두므로 Redis 는 AOF 등으로 영속화해야 한다. DB 에서 읽는 잔액은 flush-interval 만큼 늦을 수 있다.
+ * Redis stream 은 5.0 부터라 내장 Redis(2.8)에서도 도는 list 를 로그로 쓴다.
+ */
+@Slf4j
+@Component
+public class RedisBalanceAuthority {
+    private static final String BALANCE_KEY = "account:balance:";
+    private static final String LOG_KEY = "account:balance-log:";
+    private static final String DIRTY_KEY = "account:balance-dirty";
+    private static final String WRITER_LOCK_KEY = "account:balance-writer";
+
+    // KEYS: 잔액 hash, 거래 로그, 반영 대기 계좌 set / ARGV: userID, amount, transactionID, now, accountNumber
+    private static final String USE_BALANCE_SCRIPT =
+            "local account = redis.call('HMGET', KEYS[1], 'status', 'userID', 'balance', 'accountId') " +
+            "if not account[1] then return {'NOT_LOADED'} end " +
+            "if account[2] ~= ARGV[1] then return {'USER_ACCOUNT_UN_MATCHED'} end " +
+            "if account[1] ~= 'IN_USE' then return {'ACCOUNT_ALREADY_UNREGISTERED'} end " +
+            "local amount = tonumber(ARGV[2]) " +
+            "if tonumber(account[3]) < amount then return {'AMOUNT_EXCEED_BALANCE'} end " +
+            "local balance = redis.call('HINCRBY', KEYS[1], 'balance', -amount) " +
+            "redis.call('RPUSH', KEYS[2], " +
+            "ARGV[3] .. ':' .. ARGV[2] .. ':' .. balance .. ':' .. ARGV[4] .. ':' .. account[4]) " +
+            "redis.call('SADD', KEYS[3], ARGV[5]) " +
+            "return {'OK', tostring(balance)}";
+
+    // 이미 올라간 계좌는 덮어쓰지 않는다(status 가 있을 때만 올라간 것으로 본다).
+    // 읽어 온 DB version 보다 뒤에 커밋돼 먼저 도착한 취소(credit:<version>)는 잔액에 더한다.
+    // ARGV: status, userID, balance, accountId, version
+    private static final String LOAD_SCRIPT =
+            "if redis.call('HEXISTS', KEYS[1], 'status') == 1 then return 0 end " +
+            "local balance = tonumber(ARGV[3]) " +
+            "local fields = redis.call('HGETALL', KEYS[1]) " +
+            "for i = 1, #fields, 2 do " +
+            "  local version = string.match(fields[i], '^credit:(%d+)$') " +
+            "  if version then " +
+            "    if tonumber(version) > tonumber(ARGV[5]) then balance = balance + tonumber(fields[i + 1]) end " +
+            "    redis.call('HDEL', KEYS[1], fields[i]) " +
+            "  end " +
+            "end " +
+            "redis.call('HMSET', KEYS[1], 'status', ARGV[1], 'userID', ARGV[2], 'balance', balance, " +
+            "'accountId', ARGV[4], 'version', ARGV[5]) " +
+            "return 1";
+
+    // 올라간 계좌는 취소가 올린 때의 version 보다 뒤에 커밋됐을 때만 더한다(앞이면 이미 DB 잔액에 들어 있다).
+    // 올라가지 않은 계좌는 지금 올리는 중일 수 있으므로 credit:<version> 으로 남겨 LOAD 가 판단하게 한다.
+    // ARGV: amount, canceledVersion
+    private static final String CREDIT_SCRIPT =
+            "local loaded = redis.call('HGET', KEYS[1], 'version') " +
+            "if not loaded then " +
+            "  redis.call('HSET', KEYS[1], 'credit:' .. ARGV[2], ARGV[1]) " +
+            "  return 0 " +
+            "end " +
+            "if tonumber(loaded) >= tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('HINCRBY', KEYS[1], 'balance', ARGV[1]) " +
+            "return 1";
+
+    // ARGV: userID
+    private static final String UNREGISTER_SCRIPT =
+            "local account = redis.call('HMGET', KEYS[1], 'status', 'userID', 'balance') " +
+            "if not account[1] then return 'NOT_LOADED' end " +
+            "if account[2] ~= ARGV[1] then return 'USER_ACCOUNT_UN_MATCHED' end " +
+            "if account[1] ~= 'IN_USE' then return 'ACCOUNT_ALREADY_UNREGISTERED' end " +
+            "if tonumber(account[3]) > 0 then return 'BALANCE_OVER_ZERO' end " +
+            "redis.call('HSET', KEYS[1], 'status', 'UNREGISTERED') " +
+            "return 'OK'";
+
+    // DB 해지가 롤백되면 다시 사용할 수 있게 되돌린다.
+    private static final String REOPEN_SCRIPT =
+            "if redis.call('HGET', KEYS[1], 'status') ~= 'UNREGISTERED' then return 0 end " +
+            "redis.call('HSET', KEYS[1], 'status', 'IN_USE') " +
+            "return 1";
+
+    // 로그가 비었을 때만 반영 대기 set 에서 뺀다.
+    private static final String CLEAN_SCRIPT =
+            "if redis.call('LLEN', KEYS[1]) == 0 then redis.call('SREM', KEYS[2], ARGV[1]) end " +
+            "return 0";
+
+    // 로그 앞에서부터 저장한 거래(ARGV: transactionID 목록)가 이어지는 만큼만 지운다.
+    private static final String TRIM_SCRIPT =
+            "local persisted = {} " +
+            "for i = 1, #ARGV do persisted[ARGV[i]] = true end " +
+            "local trimmed = 0 " +
+            "while true do " +
+            "  local head = redis.call('LINDEX', KEYS[1], 0) " +
+            "  if not head or not persisted[string.match(head, '^[^:]+')] then break end " +
+            "  redis.call('LPOP', KEYS[1]) " +
+            "  trimmed = trimmed + 1 " +
+            "end " +
+            "return trimmed";
+
+    private final RedissonClient redissonClient;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionLedgerWriter transactionLedgerWriter;
+    private final AccountCache accountCache;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    @Value("${account.redis-balance.enabled:false}")
+    private boolean enabled;
+
+    // 비어 있으면 모든 계좌
+    @Value("${account.redis-balance.accounts:}")
+    private Set<String> ownedAccounts;
+
+    @Value("${account.redis-balance.flush-interval:50}")
+    private long flushIntervalMillis;
+
+    @Value("${account.redis-balance.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${account.redis-balance.drain-timeout:5000}")
+    private long drainTimeoutMillis;
+
+    private RScript script;
+    private final Map<String, String> scriptShas = new HashMap<>();
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public RedisBalanceAuthority(RedissonClient redissonClient,
+                                 AccountRepository accountRepository,
+                                 TransactionRepository transactionRepository,
+                                 TransactionLedgerWriter transactionLedgerWriter,
+                                 AccountCache accountCache,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        this.redissonClient = redissonClient;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionLedgerWriter = transactionLedgerWriter;
+        this.accountCache = accountCache;
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        script = redissonClient.getScript(StringCodec.INSTANCE);
+        for (String lua : Arrays.asList(USE_BALANCE_SCRIPT, LOAD_SCRIPT, CREDIT_SCRIPT,
+                UNREGISTER_SCRIPT, REOPEN_SCRIPT, CLEAN_SCRIPT, TRIM_SCRIPT)) {
+            scriptShas.put(lua, script.scriptLoad(lua));
+        }
+
+        running = true;
+        writerThread = new Thread(this::writeBehindLoop, "redis-balance-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("redis balance authority started for {}",
+                ownedAccounts.isEmpty() ? "all accounts" : ownedAccounts.size() + " accounts");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public boolean owns(String accountNumber) {
+        return enabled && (ownedAccounts.isEmpty() || ownedAccounts.contains(accountNumber));
+    }
+
+    /**
+     * Redis 잔액에서 차감하고 거래 로그에 남긴 뒤 반환한다. 반환된 Transaction 은 아직 DB 에 저장되지 않았다.
+     */
+    public Transaction useBalance(Long userID, String accountNumber, Long amount) {
+        String transactionID = UUID.randomUUID().toString().replace("-", "");
+        long now = System.currentTimeMillis();
+
+        List<Object> result = useBalanceScript(userID, accountNumber, amount, transactionID, now);
+        if ("NOT_LOADED".equals(result.get(0))) {
+            load(accountNumber);
+            result = useBalanceScript(userID, accountNumber, amount, transactionID, now);
+        }
+        if (!"OK".equals(result.get(0))) {
+            throw new AccountException(ErrorCode.valueOf((String) result.get(0)));
+        }
+
+        return toTransaction(new LogEntry(accountNumber, transactionID, amount,
+                Long.parseLong((String) result.get(1)), now, null), null);
+    }
+
+    /**
+     * DB 에 커밋된 취소 금액을 Redis 잔액에도 더한다.
+     * @param canceledVersion 취소를 반영한 뒤의 계좌 version. 이 취소를 이미 포함해 올린 계좌에는 더하지 않는다.
+     */
+    public void credit(String accountNumber, Long amount, long canceledVersion) {
+        if (owns(accountNumber)) {
+            eval(CREDIT_SCRIPT, RScript.ReturnType.INTEGER, Collections.singletonList(balanceKey(accountNumber)),
+                    String.valueOf(amount), String.valueOf(canceledVersion));
+        }
+    }
+
+    /**
+     * 해지 전에 Redis 잔액을 확인하고 더 이상 사용할 수 없게 막은 뒤, 남은 거래 로그가 DB 에 반영될 때까지 기다린다.
+     * 최대 drain-timeout 만큼 기다리므로 DB 커넥션을 잡지 않도록 트랜잭션 밖에서 부르고,
+     * 뒤이은 DB 해지가 실패하면 reopen 으로 되돌린다. 기다리다 실패하면 여기서 되돌린다.
+     * Redis 가 소유하지 않은 계좌면 false 를 반환하고, 이때는 DB 잔액으로 확인한다.
+     */
+    public boolean unregister(Long userID, String accountNumber) {
+        if (!owns(accountNumber)) {
+            return false;
+        }
+        String result = unregisterScript(userID, accountNumber);
+        if ("NOT_LOADED".equals(result)) {
+            load(accountNumber);
+            result = unregisterScript(userID, accountNumber);
+        }
+        if (!"OK".equals(result)) {
+            throw new AccountException(ErrorCode.valueOf(result));
+        }
+
+        try {
+            awaitWrittenBehind(accountNumber);
+        } catch (AccountException e) {
+            reopen(accountNumber);
+            throw e;
+        }
+        return true;
+    }
+
+    private String unregisterScript(Long userID, String accountNumber) {
+        return eval(UNREGISTER_SCRIPT, RScript.ReturnType.VALUE,
+                Collections.singletonList(balanceKey(accountNumber)), String.valueOf(userID));
+    }
+
+    /**
+     * unregister 로 막은 계좌를 DB 해지가 커밋되지 않았을 때 다시 사용할 수 있게 되돌린다.
+     */
+    public void reopen(String accountNumber) {
+        if (!owns(accountNumber)) {
+            return;
+        }
+        try {
+            eval(REOPEN_SCRIPT, RScript.ReturnType.INTEGER, Collections.singletonList(balanceKey(accountNumber)));
+        } catch (RuntimeException e) {
+            log.error("failed to reopen redis balance of {} after a failed unregister", accountNumber, e);
+        }
+    }
+
+    // 해지 전까지 쌓인 거래 로그가 DB 에 반영될 때까지 기다린다. 그 뒤의 DB 잔액이 최종 잔액이다.
+    private void awaitWrittenBehind(String accountNumber) {
+        List<String> entries = redissonClient.getList(logKey(accountNumber), StringCodec.INSTANCE);
+        long deadline = System.currentTimeMillis() + drainTimeoutMillis;
+        while (!entries.isEmpty()) {
+            if (System.currentTimeMillis() > deadline) {
+                log.error("redis balance log of {} was not written behind before unregistering it", accountNumber);
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+        }
+    }
+
+    private List<Object> useBalanceScript(Long userID, String accountNumber, Long amount,
+                                          String transactionID, long now) {
+        return eval(USE_BALANCE_SCRIPT, RScript.ReturnType.MULTI,
+                Arrays.asList(balanceKey(accountNumber), logKey(accountNumber), DIRTY_KEY),
+                String.valueOf(userID), String.valueOf(amount), transactionID, String.valueOf(now), accountNumber);
+    }
+
+    // 다른 노드가 먼저 올렸으면 덮어쓰지 않고, 읽는 사이에 커밋된 취소는 version 으로 가려 더한다.
+    private void load(String accountNumber) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        eval(LOAD_SCRIPT, RScript.ReturnType.INTEGER, Collections.singletonList(balanceKey(accountNumber)),
+                account.getAccountStatus().name(), String.valueOf(account.getAccountUser().getID()),
+                String.valueOf(account.getBalance()), String.valueOf(account.getId()),
+                String.valueOf(account.getVersion()));
+    }
+
+    // 스크립트는 미리 올려 두고 SHA 로 실행한다. Redis 가 재시작돼 스크립트가 없어지면 다시 올린다.
+    private <R> R eval(String lua, RScript.ReturnType returnType, List<Object> keys, Object... values) {
+        try {
+            return script.evalSha(RScript.Mode.READ_WRITE, scriptShas.get(lua), returnType, keys, values);
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            script.scriptLoad(lua);
+            return script.evalSha(RScript.Mode.READ_WRITE, scriptShas.get(lua), returnType, keys, values);
+        }
+    }
+
+    private void writeBehindLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            // 멈추는 중에도 남은 로그를 반영한다.
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("redis balance write-behind failed", e);
+            }
+        }
+    }
+
+    // 다른 노드가 반영하는 중이면 이번에는 건너뛴다. 한 번에 flush-batch-size 만큼 찼으면 쉬지 않고 이어서 반영한다.
+    void flush() {
+        RLock writerLock = redissonClient.getLock(WRITER_LOCK_KEY);
+        if (!writerLock.tryLock()) {
+            return;
+        }
+        try {
+            int written;
+            do {
+                written = writeBehind();
+            } while (written >= flushBatchSize);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    // 반영 대기 계좌들의 로그를 flush-batch-size 건까지 모아 한 트랜잭션으로 저장한다.
+    int writeBehind() {
+        Map<String, List<LogEntry>> entriesByAccount = new LinkedHashMap<>();
+        int total = 0;
+        for (String accountNumber : redissonClient.<String>getSet(DIRTY_KEY, StringCodec.INSTANCE).readAll()) {
+            if (total >= flushBatchSize) {
+                break;
+            }
+            List<String> lines = redissonClient.<String>getList(logKey(accountNumber), StringCodec.INSTANCE)
+                    .range(0, flushBatchSize - total - 1);
+            if (lines.isEmpty()) {
+                eval(CLEAN_SCRIPT, RScript.ReturnType.INTEGER, Arrays.asList(logKey(accountNumber), DIRTY_KEY),
+                        accountNumber);
+                continue;
+            }
+            entriesByAccount.put(accountNumber, lines.stream()
+                    .map(line -> LogEntry.parse(accountNumber, line))
+                    .collect(Collectors.toList()));
+            total += lines.size();
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        persist(entriesByAccount.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+        entriesByAccount.forEach((accountNumber, entries) -> {
+            eval(TRIM_SCRIPT, RScript.ReturnType.INTEGER, Collections.singletonList(logKey(accountNumber)),
+                    entries.stream().map(LogEntry::getTransactionID).toArray());
+            accountCache.evictAccount(accountNumber);
+        });
+        return total;
+    }
+
+    // 거래 기록 저장과 잔액 차감을 한 DB 트랜잭션에서 한다.
+    private void persist(List<LogEntry> entries) {
+        transactionLedgerWriter.appendAll(() -> {
+            Set<String> persisted = new HashSet<>(transactionRepository.findExistingTransactionIDs(
+                    entries.stream().map(LogEntry::getTransactionID).collect(Collectors.toList())));
+            List<LogEntry> pending = entries.stream()
+                    .filter(entry -> !persisted.contains(entry.getTransactionID()))
+                    .collect(Collectors.toList());
+
+            LocalDateTime now = LocalDateTime.now();
+            pending.stream()
+                    .collect(Collectors.groupingBy(LogEntry::getAccountNumber,
+                            Collectors.summingLong(LogEntry::getAmount)))
+                    .forEach((accountNumber, amount) -> {
+                        if (accountRepository.applyBalanceDelta(accountNumber, -amount, now) == 0) {
+                            log.error("redis balance write-behind could not apply {} to unregistered account {}", -amount, accountNumber);
+                        }
+                    });
+
+            List<Transaction> transactions = pending.stream()
+                    .map(entry -> toTransaction(entry, accountRepository.getById(entry.getAccountId())))
+                    .collect(Collectors.toList());
+            // 요청 시점이 아니라 DB 에 반영된 커밋 뒤에 기록해야 그 사용자의 읽기가 이 반영 이전의 replica 로 가지 않는다.
+            transactions.stream()
+                    .map(transaction -> transaction.getAccount().getAccountUser().getID())
+                    .distinct()
+                    .forEach(readYourWritesTracker::recordWrite);
+            return transactions;
+        });
+    }
+
+    private static Transaction toTransaction(LogEntry entry, Account account) {
+        return Transaction.builder()
+                .transactionType(USE)
+                .transactionResultType(S)
+                .account(account)
+                .amount(entry.getAmount())
+                .balanceSnapshot(entry.getBalanceSnapshot())
+                .transactionID(entry.getTransactionID())
+                .transactedAt(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(entry.getTransactedAtMillis()), ZoneId.systemDefault()))
+                .build();
+    }
+
+    private static String balanceKey(String accountNumber) {
+        return BALANCE_KEY + accountNumber;
+    }
+
+    private static String logKey(String accountNumber) {
+        return LOG_KEY + accountNumber;
+    }
+
+    // 거래 로그 한 줄: transactionID:amount:balanceSnapshot:transactedAtMillis:accountId
+    @Getter
+    @AllArgsConstructor
+    static class LogEntry {
+        private final String accountNumber;
+        private final String transactionID;
+        private final long amount;
+        private final long balanceSnapshot;
+        private final long transactedAtMillis;
+        private final Long accountId;
+
+        static LogEntry parse(String accountNumber, String line) {
+            String[] fields = line.split(":");
+            return new LogEntry(accountNumber, fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.account.engine;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * WAL 에 남기는 잔액 사용 한 건. 고정 길이(PAYLOAD_SIZE)로 직렬화한다.
+ */
+@Getter
+@AllArgsConstructor
+class WalRecord {
+    static final int ACCOUNT_NUMBER_LENGTH = 10;
+    static final int TRANSACTION_ID_LENGTH = 32;
+    static final int PAYLOAD_SIZE = Long.BYTES * 6 + ACCOUNT_NUMBER_LENGTH + TRANSACTION_ID_LENGTH;
+
+    private final long seq;
+    private final long accountId;
+    private final String accountNumber;
+    private final long amount;
+    private final long balanceSnapshot;
+    private final String transactionID;
+    private final long transactedAtMillis;
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putLong(seq);
+        buffer.putLong(accountId);
+        buffer.put(accountNumber.getBytes(StandardCharsets.US_ASCII), 0, ACCOUNT_NUMBER_LENGTH);
+        buffer.putLong(amount);
+        buffer.putLong(balanceSnapshot);
+        buffer.put(transactionID.getBytes(StandardCharsets.US_ASCII), 0, TRANSACTION_ID_LENGTH);
+        buffer.putLong(transactedAtMillis);
+        buffer.putLong(0L); // 예약
+    }
+
+    static WalRecord readFrom(ByteBuffer buffer) {
+        long seq = buffer.getLong();
+        long accountId = buffer.getLong();
+        byte[] accountNumber = new byte[ACCOUNT_NUMBER_LENGTH];
+        buffer.get(accountNumber);
+        long amount = buffer.getLong();
+        long balanceSnapshot = buffer.getLong();
+        byte[] transactionID = new byte[TRANSACTION_ID_LENGTH];
+        buffer.get(transactionID);
+        long transactedAtMillis = buffer.getLong();
+        buffer.getLong();
+        return new WalRecord(seq, accountId, new String(accountNumber, StandardCharsets.US_ASCII), amount,
+                balanceSnapshot, new String(transactionID, StandardCharsets.US_ASCII), transactedAtMillis);
+    }
+}
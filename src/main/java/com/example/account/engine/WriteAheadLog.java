@@ -0,0 +1,152 @@
+package com.example.account.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * shard 하나의 write-ahead log. 고정 크기 파일을 memory-map 해서 쓴다.
+ *
+ * [header: magic(4) | flushedSeq(8) | ...] [record: crc(4) | payload] [record] ...
+ * - record 는 shard 스레드 하나만 추가한다.
+ * - flushedSeq 는 DB 에 반영된 마지막 seq 로 flusher 스레드가 갱신한다.
+ * - 파일이 가득 차면 모든 record 가 DB 에 반영된 뒤 처음부터 다시 쓴다.
+ *   읽을 때는 seq 가 1씩 늘어나는 동안만 읽으므로 덮어쓰고 남은 이전 record 는 읽지 않는다.
+ */
+class WriteAheadLog implements AutoCloseable {
+    private static final int MAGIC = 0x57414C31; // "WAL1"
+    private static final int FLUSHED_SEQ_OFFSET = Integer.BYTES;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = Integer.BYTES + WalRecord.PAYLOAD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final CRC32 crc = new CRC32();
+
+    private int position;
+    private long lastSeq;
+    private volatile long flushedSeq;
+
+    private WriteAheadLog(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    static WriteAheadLog open(Path path, int size) {
+        try {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(size, HEADER_SIZE + RECORD_SIZE));
+            WriteAheadLog wal = new WriteAheadLog(channel, buffer);
+            if (buffer.getInt(0) != MAGIC) {
+                buffer.putInt(0, MAGIC);
+                buffer.putLong(FLUSHED_SEQ_OFFSET, 0L);
+                buffer.force();
+            }
+            wal.flushedSeq = buffer.getLong(FLUSHED_SEQ_OFFSET);
+            return wal;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 파일 끝까지 읽어 다음에 쓸 위치와 seq 를 정하고, 아직 DB 에 반영되지 않은 record 를 반환한다.
+     */
+    List<WalRecord> recover() {
+        List<WalRecord> unflushed = new ArrayList<>();
+        ByteBuffer reader = buffer.duplicate();
+        int offset = HEADER_SIZE;
+        long expectedSeq = -1;
+        lastSeq = flushedSeq;
+        while (offset + RECORD_SIZE <= capacity) {
+            reader.position(offset);
+            int storedCrc = reader.getInt();
+            ByteBuffer payload = reader.slice();
+            payload.limit(WalRecord.PAYLOAD_SIZE);
+            if (storedCrc != checksum(payload.duplicate())) {
+                break;
+            }
+            WalRecord record = WalRecord.readFrom(payload);
+            if (expectedSeq != -1 && record.getSeq() != expectedSeq) {
+                break;
+            }
+            if (record.getSeq() > flushedSeq) {
+                unflushed.add(record);
+            }
+            lastSeq = Math.max(lastSeq, record.getSeq());
+            expectedSeq = record.getSeq() + 1;
+            offset += RECORD_SIZE;
+        }
+        position = offset;
+        return unflushed;
+    }
+
+    long nextSeq() {
+        return lastSeq + 1;
+    }
+
+    /**
+     * @return 자리가 없어 쓰지 못했으면 false. DB 반영이 끝날 때까지 기다린 뒤 다시 시도한다.
+     */
+    boolean tryAppend(WalRecord record) {
+        if (position + RECORD_SIZE > capacity) {
+            if (flushedSeq < lastSeq) {
+                return false;
+            }
+            position = HEADER_SIZE;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(WalRecord.PAYLOAD_SIZE);
+        record.writeTo(payload);
+        payload.flip();
+
+        ByteBuffer writer = buffer.duplicate();
+        writer.position(position);
+        writer.putInt(checksum(payload.duplicate()));
+        writer.put(payload);
+        position += RECORD_SIZE;
+        lastSeq = record.getSeq();
+        return true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    long lastSeq() {
+        return lastSeq;
+    }
+
+    // DB 에 반영된 마지막 seq. 다른 스레드에서 읽어도 된다.
+    long flushedSeq() {
+        return flushedSeq;
+    }
+
+    void checkpoint(long seq) {
+        buffer.putLong(FLUSHED_SEQ_OFFSET, seq);
+        buffer.force();
+        flushedSeq = seq;
+    }
+
+    private int checksum(ByteBuffer payload) {
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.account.exception;
+
+import com.example.account.type.ErrorCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 같은 Idempotency-Key 로 내용이 다른 요청이 들어온 경우. 클라이언트 오류이므로 422 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyReusedException extends AccountException {
+    public IdempotencyKeyReusedException() {
+        super(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.account.hold;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 홀드 만료 스케줄러
+ * 만료 시각을 timer wheel(Netty HashedWheelTimer, Redisson 이 이미 쓰는 의존성)에 올려 두고,
+ * 시각이 되면 만료 처리를 별도 스레드에 넘긴다. 홀드가 수백만 건이어도 등록/만료가 O(1)이고 DB 를 주기적으로 조회하지 않는다.
+ *
+ * 먼저 확정/해제된 홀드의 타이머는 지우지 않는다. 만료 처리가 HELD 상태인 홀드만 바꾸므로 그대로 지나간다.
+ * tick-duration 만큼 늦게 만료될 수 있다.
+ */
+@Slf4j
+@Component
+public class HoldExpiryScheduler {
+    private static final long RETRY_DELAY_MILLIS = 10_000;
+
+    private final Timer timer;
+    private final ExecutorService expiryExecutor;
+
+    public HoldExpiryScheduler(MeterRegistry meterRegistry,
+                               @Value("${account.hold.timer.tick-duration:100}") long tickDurationMillis,
+                               @Value("${account.hold.timer.ticks-per-wheel:1024}") int ticksPerWheel) {
+        HashedWheelTimer wheelTimer = new HashedWheelTimer(new DefaultThreadFactory("hold-expiry-timer", true),
+                tickDurationMillis, TimeUnit.MILLISECONDS, ticksPerWheel);
+        this.timer = wheelTimer;
+        // 타이머 스레드는 바로 돌려주고, DB 작업은 만료 처리 스레드가 한다.
+        this.expiryExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("hold-expiry", true));
+        meterRegistry.gauge("account.hold.pending", wheelTimer, HashedWheelTimer::pendingTimeouts);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.stop();
+        expiryExecutor.shutdown();
+    }
+
+    public void schedule(String holdID, LocalDateTime expiresAt, Consumer<String> onExpire) {
+        schedule(holdID, Math.max(0, Duration.between(LocalDateTime.now(), expiresAt).toMillis()), onExpire);
+    }
+
+    private void schedule(String holdID, long delayMillis, Consumer<String> onExpire) {
+        timer.newTimeout(timeout -> expiryExecutor.execute(() -> expire(holdID, onExpire)),
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 실패하면(DB 장애 등) 잠시 뒤 다시 시도한다.
+    private void expire(String holdID, Consumer<String> onExpire) {
+        try {
+            onExpire.accept(holdID);
+        } catch (RuntimeException e) {
+            log.error("failed to expire hold {}, retrying in {} ms", holdID, RETRY_DELAY_MILLIS, e);
+            schedule(holdID, RETRY_DELAY_MILLIS, onExpire);
+        }
+    }
+}
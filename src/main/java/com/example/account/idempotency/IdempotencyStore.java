@@ -0,0 +1,31 @@
+package com.example.account.idempotency;
+
+/**
+ * Idempotency-Key 별 처리 상태와 응답을 보관한다.
+ * 값은 처리 중이면 PENDING, 끝났으면 응답 JSON 이다.
+ */
+public interface IdempotencyStore {
+    String PENDING = "PENDING";
+
+    /**
+     * @return 저장된 값(PENDING 또는 응답 JSON). 없으면 null
+     */
+    String get(String key);
+
+    /**
+     * 아무도 처리하지 않은 키면 PENDING 을 남기고 true 를 반환한다.
+     */
+    boolean tryBegin(String key);
+
+    /**
+     * 처리가 길어져도 PENDING 이 만료되지 않도록 처리하는 동안 주기적으로 호출한다.
+     */
+    void renew(String key);
+
+    void complete(String key, String response);
+
+    /**
+     * 처리에 실패하면 PENDING 을 지워 같은 키로 다시 요청할 수 있게 한다.
+     */
+    void abort(String key);
+}
@@ -0,0 +1,51 @@
+package com.example.account.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 단일 노드용 저장소. 크기 제한과 만료가 있는 Caffeine 캐시에 보관한다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.idempotency.store", havingValue = "local")
+public class LocalIdempotencyStore implements IdempotencyStore {
+    private final Cache<String, String> responses;
+
+    public LocalIdempotencyStore(@Value("${account.idempotency.ttl:86400000}") long ttlMillis,
+                                 @Value("${account.idempotency.maximum-size:100000}") long maximumSize) {
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    @Override
+    public String get(String key) {
+        return responses.getIfPresent(key);
+    }
+
+    @Override
+    public boolean tryBegin(String key) {
+        return responses.asMap().putIfAbsent(key, PENDING) == null;
+    }
+
+    // PENDING 도 ttl 동안 남는다. 노드가 죽으면 캐시도 함께 사라지므로 늘릴 필요가 없다.
+    @Override
+    public void renew(String key) {
+    }
+
+    @Override
+    public void complete(String key, String response) {
+        responses.put(key, response);
+    }
+
+    @Override
+    public void abort(String key) {
+        responses.asMap().remove(key, PENDING);
+    }
+}
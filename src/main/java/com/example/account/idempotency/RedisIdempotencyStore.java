@@ -0,0 +1,78 @@
+package com.example.account.idempotency;
+
+import org.redisson.api.RBucket;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 노드가 함께 쓰는 저장소. 항목마다 TTL 이 있어 크기가 계속 늘지 않는다.
+ * PENDING 은 처리 중 노드가 죽어도 풀리도록 짧은 TTL 의 키로 따로 남기고, 처리하는 동안 renew 로 만료를 늘린다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.idempotency.store", havingValue = "redis", matchIfMissing = true)
+public class RedisIdempotencyStore implements IdempotencyStore {
+    private static final String PENDING_KEY_PREFIX = "account:idempotency:pending:";
+
+    private final RedissonClient redissonClient;
+    private final RMapCache<String, String> responses;
+    private final long ttlMillis;
+    private final long pendingTtlMillis;
+
+    public RedisIdempotencyStore(RedissonClient redissonClient,
+                                 @Value("${account.idempotency.ttl:86400000}") long ttlMillis,
+                                 @Value("${account.idempotency.pending-ttl:10000}") long pendingTtlMillis) {
+        this.redissonClient = redissonClient;
+        this.responses = redissonClient.getMapCache("account:idempotency", StringCodec.INSTANCE);
+        this.ttlMillis = ttlMillis;
+        this.pendingTtlMillis = pendingTtlMillis;
+    }
+
+    @Override
+    public String get(String key) {
+        String response = responses.get(key);
+        if (response != null) {
+            return response;
+        }
+        return pending(key).isExists() ? PENDING : null;
+    }
+
+    @Override
+    public boolean tryBegin(String key) {
+        RBucket<String> pending = pending(key);
+        if (!pending.trySet(PENDING, pendingTtlMillis, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        // PENDING 을 남긴 뒤에 응답을 확인해야 방금 끝난 요청을 다시 처리하지 않는다.
+        if (responses.containsKey(key)) {
+            pending.delete();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void renew(String key) {
+        pending(key).expire(pendingTtlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void complete(String key, String response) {
+        responses.fastPut(key, response, ttlMillis, TimeUnit.MILLISECONDS);
+        pending(key).delete();
+    }
+
+    @Override
+    public void abort(String key) {
+        pending(key).delete();
+    }
+
+    private RBucket<String> pending(String key) {
+        return redissonClient.getBucket(PENDING_KEY_PREFIX + key, StringCodec.INSTANCE);
+    }
+}
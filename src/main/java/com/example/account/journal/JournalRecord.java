@@ -0,0 +1,118 @@
+package com.example.account.journal;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 저널에 남기는 거래 한 건. 고정 길이(PAYLOAD_SIZE)로 직렬화한다. 거래 보관(archive) 파일도 같은 형식을 쓴다.
+ * 거래 종류/결과는 enum 순서(ordinal)로 저장하므로 TransactionType, TransactionResultType 의 순서를 바꾸면 안 된다.
+ */
+@Getter
+@AllArgsConstructor
+public class JournalRecord {
+    static final int TRANSACTION_ID_LENGTH = 32;
+    public static final int PAYLOAD_SIZE = 124;
+
+    private final long seq;
+    private final long id;
+    private final long accountId;
+    private final TransactionType transactionType;
+    private final TransactionResultType transactionResultType;
+    private final long amount;
+    private final long balanceSnapshot;
+    private final long transactedAtMillis;
+    private final String transactionID;
+    private final String originalTransactionID;
+
+    public static JournalRecord of(long seq, Transaction transaction) {
+        return new JournalRecord(seq,
+                transaction.getId(),
+                transaction.getAccount().getId(),
+                transaction.getTransactionType(),
+                transaction.getTransactionResultType(),
+                transaction.getAmount(),
+                transaction.getBalanceSnapshot(),
+                transaction.getTransactedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                transaction.getTransactionID(),
+                transaction.getOriginalTransactionID());
+    }
+
+    /**
+     * 저널에서 Transaction 을 다시 만든다. account 는 accountId 로 얻은 참조를 넘긴다.
+     */
+    public Transaction toTransaction(Account account) {
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .account(account)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactionID(transactionID)
+                .originalTransactionID(originalTransactionID)
+                .transactedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(transactedAtMillis), ZoneId.systemDefault()))
+                .build();
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putLong(seq);
+        buffer.putLong(id);
+        buffer.putLong(accountId);
+        buffer.put((byte) transactionType.ordinal());
+        buffer.put((byte) transactionResultType.ordinal());
+        buffer.putLong(amount);
+        buffer.putLong(balanceSnapshot);
+        buffer.putLong(transactedAtMillis);
+        putFixed(buffer, transactionID);
+        putFixed(buffer, originalTransactionID);
+        while (buffer.position() < start + PAYLOAD_SIZE) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    public static JournalRecord readFrom(ByteBuffer buffer) {
+        int start = buffer.position();
+        long seq = buffer.getLong();
+        long id = buffer.getLong();
+        long accountId = buffer.getLong();
+        TransactionType transactionType = TransactionType.values()[buffer.get()];
+        TransactionResultType transactionResultType = TransactionResultType.values()[buffer.get()];
+        long amount = buffer.getLong();
+        long balanceSnapshot = buffer.getLong();
+        long transactedAtMillis = buffer.getLong();
+        String transactionID = getFixed(buffer);
+        String originalTransactionID = getFixed(buffer);
+        buffer.position(start + PAYLOAD_SIZE);
+        return new JournalRecord(seq, id, accountId, transactionType, transactionResultType, amount,
+                balanceSnapshot, transactedAtMillis, transactionID, originalTransactionID);
+    }
+
+    private static void putFixed(ByteBuffer buffer, String value) {
+        byte[] bytes = new byte[TRANSACTION_ID_LENGTH];
+        if (value != null) {
+            byte[] source = value.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(source, 0, bytes, 0, Math.min(source.length, TRANSACTION_ID_LENGTH));
+        }
+        buffer.put(bytes);
+    }
+
+    private static String getFixed(ByteBuffer buffer) {
+        byte[] bytes = new byte[TRANSACTION_ID_LENGTH];
+        buffer.get(bytes);
+        int length = 0;
+        while (length < bytes.length && bytes[length] != 0) {
+            length++;
+        }
+        return length == 0 ? null : new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+}
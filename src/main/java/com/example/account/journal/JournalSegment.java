@@ -0,0 +1,143 @@
+package com.example.account.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 저널 segment 파일 하나. 고정 크기로 memory-map 한다.
+ * [header: magic(4) | firstSeq(8) | ...] [record: crc(4) | payload(124)] ...
+ * crc 가 맞지 않는 첫 record 를 끝으로 본다.
+ */
+class JournalSegment implements AutoCloseable {
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = Integer.BYTES + JournalRecord.PAYLOAD_SIZE;
+    private static final int MAGIC = 0x4A524E31; // "JRN1"
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long firstSeq;
+    private final CRC32 crc = new CRC32();
+    private int position;
+
+    private JournalSegment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("not a journal segment: " + path);
+        }
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.firstSeq = buffer.getLong(Integer.BYTES);
+        this.position = HEADER_SIZE + count() * RECORD_SIZE;
+    }
+
+    static JournalSegment create(Path path, int size, long firstSeq) {
+        try {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(Integer.BYTES, firstSeq);
+            buffer.force();
+            return new JournalSegment(path, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static JournalSegment open(Path path, boolean writable) {
+        try {
+            FileChannel channel = writable
+                    ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ);
+            MappedByteBuffer buffer = channel.map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new JournalSegment(path, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long firstSeq() {
+        return firstSeq;
+    }
+
+    long nextSeq() {
+        return firstSeq + (position - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    boolean hasRoom() {
+        return position + RECORD_SIZE <= buffer.capacity();
+    }
+
+    void append(JournalRecord record) {
+        ByteBuffer payload = ByteBuffer.allocate(JournalRecord.PAYLOAD_SIZE);
+        record.writeTo(payload);
+        payload.flip();
+
+        ByteBuffer writer = buffer.duplicate();
+        writer.position(position);
+        writer.putInt(checksum(payload.duplicate()));
+        writer.put(payload);
+        position += RECORD_SIZE;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * fromSeq 부터 끝까지 차례로 넘긴다.
+     */
+    void forEach(long fromSeq, Consumer<JournalRecord> consumer) {
+        int count = count();
+        int index = (int) Math.max(0, fromSeq - firstSeq);
+        ByteBuffer reader = buffer.duplicate();
+        for (; index < count; index++) {
+            reader.position(HEADER_SIZE + index * RECORD_SIZE + Integer.BYTES);
+            consumer.accept(JournalRecord.readFrom(reader));
+        }
+    }
+
+    // 유효한 record 수. crc 가 맞지 않거나 seq 가 이어지지 않으면 멈춘다.
+    private int count() {
+        ByteBuffer reader = buffer.duplicate();
+        CRC32 checker = new CRC32();
+        int count = 0;
+        for (int offset = HEADER_SIZE; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+            reader.position(offset);
+            int storedCrc = reader.getInt();
+            ByteBuffer payload = reader.slice();
+            payload.limit(JournalRecord.PAYLOAD_SIZE);
+            checker.reset();
+            checker.update(payload.duplicate());
+            if (storedCrc != (int) checker.getValue() || payload.getLong(0) != firstSeq + count) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private int checksum(ByteBuffer payload) {
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.account.journal;
+
+import com.example.account.domain.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 거래 저널
+ * 저장할 Transaction 을 고정 길이 record 로 memory-map 한 segment 파일에 이어 쓴다.
+ * segment 가 가득 차면 다음 segment(파일 이름 = 첫 seq)를 만든다.
+ * replay 로 처음(또는 원하는 seq)부터 차례로 읽어 내보내거나 Transaction 을 다시 만든다.
+ *
+ * TransactionLedgerWriter 가 커밋 직전(flush 후) 트랜잭션 안에서 호출하고, 기록에 실패하면 예외를 던져 트랜잭션을 롤백한다.
+ * 따라서 커밋된 거래는 모두 저널에 있다. 반대로 기록 뒤 커밋이 실패한 거래는 저널에만 남을 수 있으므로
+ * (account.journal.uncommitted) replay 하는 쪽은 transactionID 로 DB 에 있는지 확인해야 한다.
+ */
+@Slf4j
+@Component
+public class TransactionJournal {
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    @Value("${account.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${account.journal.directory:journal}")
+    private String directory;
+
+    @Value("${account.journal.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${account.journal.force:true}")
+    private boolean force;
+
+    private final Object appendMonitor = new Object();
+    private Path directoryPath;
+    private JournalSegment current;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directoryPath = Paths.get(directory);
+        Files.createDirectories(directoryPath);
+
+        List<Path> segments = segments();
+        current = segments.isEmpty()
+                ? JournalSegment.create(segmentPath(1), segmentSize, 1)
+                : JournalSegment.open(segments.get(segments.size() - 1), true);
+        log.info("transaction journal opened at {}, next seq {}", current.path(), current.nextSeq());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (current != null) {
+            synchronized (appendMonitor) {
+                current.force();
+                current.close();
+            }
+        }
+    }
+
+    /**
+     * 기록하고 force 까지 끝나야 돌아온다. 실패하면 예외를 그대로 던진다.
+     */
+    public void append(List<Transaction> transactions) {
+        if (!enabled || transactions.isEmpty()) {
+            return;
+        }
+        JournalSegment written;
+        synchronized (appendMonitor) {
+            for (Transaction transaction : transactions) {
+                if (!current.hasRoom()) {
+                    rotate();
+                }
+                current.append(JournalRecord.of(current.nextSeq(), transaction));
+            }
+            written = current;
+        }
+        if (force) {
+            written.force();
+        }
+    }
+
+    /**
+     * fromSeq 부터 마지막까지 seq 순서대로 넘긴다.
+     */
+    public void replay(long fromSeq, Consumer<JournalRecord> consumer) {
+        if (!enabled) {
+            return;
+        }
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSeqOf(segments.get(i + 1)) <= fromSeq) {
+                continue;
+            }
+            try (JournalSegment segment = JournalSegment.open(segments.get(i), false)) {
+                segment.forEach(fromSeq, consumer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void rotate() {
+        current.force();
+        try {
+            current.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long nextSeq = current.nextSeq();
+        current = JournalSegment.create(segmentPath(nextSeq), segmentSize, nextSeq);
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directoryPath)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(long firstSeq) {
+        return directoryPath.resolve(String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.DailyAccountAggregate;
+import com.example.account.domain.Transaction;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.DailyAccountAggregateRepository;
+import com.example.account.type.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCELED;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 저장되는 Transaction 을 계좌별/일별 집계(DailyAccountAggregate)에 더한다.
+ * TransactionLedgerWriter 가 Transaction 을 저장한 트랜잭션 안에서 부르므로 거래와 집계가 함께 커밋된다.
+ *
+ * 성공한 거래는 모두 같은 트랜잭션에서 계좌 row 를 UPDATE 하므로, 먼저 flush 해 계좌 row 락을 잡은 뒤
+ * 집계를 UPDATE 하고 없으면 INSERT 한다. 같은 계좌의 집계는 동시에 INSERT 되지 않는다.
+ * 실패한 거래(F)는 잔액을 바꾸지 않으므로 집계하지 않는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class DailyAggregateProjector {
+    private final DailyAccountAggregateRepository dailyAccountAggregateRepository;
+    private final AccountRepository accountRepository;
+
+    public void project(List<Transaction> transactions) {
+        Map<Long, Map<LocalDate, List<Transaction>>> byAccountAndDate = transactions.stream()
+                .filter(transaction -> transaction.getTransactionResultType() == S)
+                .collect(Collectors.groupingBy(transaction -> transaction.getAccount().getId(),
+                        Collectors.groupingBy(transaction -> transaction.getTransactedAt().toLocalDate())));
+        if (byAccountAndDate.isEmpty()) {
+            return;
+        }
+        accountRepository.flush();
+
+        LocalDateTime now = LocalDateTime.now();
+        byAccountAndDate.forEach((accountId, byDate) -> byDate.forEach((date, rows) -> {
+            Transaction last = rows.stream()
+                    .max(Comparator.comparing(Transaction::getTransactedAt))
+                    .orElseThrow(IllegalStateException::new);
+            long usedAmount = sumOf(rows, USE);
+            long canceledAmount = sumOf(rows, CANCELED);
+
+            if (dailyAccountAggregateRepository.accumulate(accountId, date, (long) rows.size(), usedAmount,
+                    canceledAmount, last.getBalanceSnapshot(), last.getTransactedAt(), now) == 0) {
+                dailyAccountAggregateRepository.save(DailyAccountAggregate.builder()
+                        .account(accountRepository.getById(accountId))
+                        .aggregateDate(date)
+                        .transactionCount((long) rows.size())
+                        .usedAmount(usedAmount)
+                        .canceledAmount(canceledAmount)
+                        .closingBalance(last.getBalanceSnapshot())
+                        .lastTransactedAt(last.getTransactedAt())
+                        .build());
+            }
+        }));
+    }
+
+    private static long sumOf(List<Transaction> rows, TransactionType transactionType) {
+        return rows.stream()
+                .filter(transaction -> transaction.getTransactionType() == transactionType)
+                .mapToLong(Transaction::getAmount)
+                .sum();
+    }
+}
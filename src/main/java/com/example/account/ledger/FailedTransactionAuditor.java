@@ -0,0 +1,224 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Transaction;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.projection.AccountBalance;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.F;
+
+/**
+ * 실패한 거래 시도(F) 기록 단계
+ * 요청 스레드는 크기가 정해진 큐에 넣고 바로 돌아가고, 백그라운드 스레드가 모아서 한 트랜잭션에 저장한다.
+ * 큐가 가득 차면 spill 파일에 이어 쓰고, 큐가 비면 spill 파일을 다시 읽어 저장한다.
+ * 종료 시 큐에 남은 기록도 spill 파일로 내려 다음 기동 때 저장한다.
+ *
+ * 잔액(balanceSnapshot)은 저장할 때가 아니라 실패한 시점에 읽어 함께 넘긴다.
+ * 없는 계좌에 대한 시도는 남길 계좌가 없으므로 버린다.
+ */
+@Slf4j
+@Component
+public class FailedTransactionAuditor {
+    private static final String SEPARATOR = "\t";
+
+    private final TransactionLedgerWriter transactionLedgerWriter;
+    private final AccountRepository accountRepository;
+    private final BlockingQueue<FailedAttempt> queue;
+    private final int batchSize;
+    private final Path spillPath;
+    private final Path drainingPath;
+    private final Object spillMonitor = new Object();
+    private final Counter spilledCounter;
+    private final Counter droppedCounter;
+
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public FailedTransactionAuditor(TransactionLedgerWriter transactionLedgerWriter,
+                                    AccountRepository accountRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${account.audit.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${account.audit.batch-size:500}") int batchSize,
+                                    @Value("${account.audit.spill-file:failed-transactions.spill}") String spillFile) {
+        this.transactionLedgerWriter = transactionLedgerWriter;
+        this.accountRepository = accountRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.spillPath = Paths.get(spillFile);
+        this.drainingPath = Paths.get(spillFile + ".draining");
+        this.spilledCounter = meterRegistry.counter("account.audit.spilled");
+        this.droppedCounter = meterRegistry.counter("account.audit.dropped");
+        meterRegistry.gaugeCollectionSize("account.audit.queue.size", Collections.emptyList(), queue);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::drainLoop, "failed-transaction-auditor");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        List<FailedAttempt> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        spill(remaining);
+    }
+
+    public void record(TransactionType transactionType, String accountNumber, Long amount) {
+        Optional<AccountBalance> accountBalance = accountRepository.findBalanceByAccountNumber(accountNumber);
+        if (!accountBalance.isPresent()) {
+            droppedCounter.increment();
+            return;
+        }
+        FailedAttempt failedAttempt = new FailedAttempt(transactionType, accountNumber,
+                accountBalance.get().getId(), amount, accountBalance.get().getBalance(), LocalDateTime.now());
+        if (!queue.offer(failedAttempt)) {
+            spill(Collections.singletonList(failedAttempt));
+        }
+    }
+
+    private void drainLoop() {
+        List<FailedAttempt> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                FailedAttempt first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    restoreSpilled();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("failed transaction audit write failed, spilling {} records", batch.size(), e);
+                spill(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<FailedAttempt> batch) {
+        transactionLedgerWriter.appendAll(() -> batch.stream()
+                .map(failedAttempt -> Transaction.builder()
+                        .transactionType(failedAttempt.getTransactionType())
+                        .transactionResultType(F)
+                        .account(accountRepository.getById(failedAttempt.getAccountId()))
+                        .amount(failedAttempt.getAmount())
+                        .balanceSnapshot(failedAttempt.getBalanceSnapshot())
+                        .transactionID(UUID.randomUUID().toString().replace("-", ""))
+                        .transactedAt(failedAttempt.getTransactedAt())
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    private void spill(List<FailedAttempt> failedAttempts) {
+        if (failedAttempts.isEmpty()) {
+            return;
+        }
+        List<String> lines = failedAttempts.stream()
+                .map(FailedAttempt::toLine)
+                .collect(Collectors.toList());
+        synchronized (spillMonitor) {
+            try {
+                Files.write(spillPath, lines, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                spilledCounter.increment(lines.size());
+            } catch (IOException e) {
+                droppedCounter.increment(lines.size());
+                log.error("failed to spill {} failed transaction records", lines.size(), e);
+            }
+        }
+    }
+
+    // spill 파일을 옮겨 두고 읽으므로, 읽는 동안 새로 넘친 기록은 새 spill 파일에 쌓인다.
+    private void restoreSpilled() {
+        try {
+            synchronized (spillMonitor) {
+                if (!Files.exists(drainingPath)) {
+                    if (!Files.exists(spillPath)) {
+                        return;
+                    }
+                    Files.move(spillPath, drainingPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            List<FailedAttempt> batch = new ArrayList<>(batchSize);
+            try (BufferedReader reader = Files.newBufferedReader(drainingPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    batch.add(FailedAttempt.fromLine(line));
+                    if (batch.size() == batchSize) {
+                        write(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            Files.delete(drainingPath);
+        } catch (IOException | RuntimeException e) {
+            // 파일은 그대로 두고 다음에 다시 시도한다. 이미 저장한 앞부분은 중복으로 남을 수 있다.
+            log.error("failed to restore spilled failed transaction records", e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class FailedAttempt {
+        private final TransactionType transactionType;
+        private final String accountNumber;
+        private final Long accountId;
+        private final Long amount;
+        private final Long balanceSnapshot;
+        private final LocalDateTime transactedAt;
+
+        String toLine() {
+            return String.join(SEPARATOR, transactionType.name(), accountNumber, String.valueOf(accountId),
+                    String.valueOf(amount), String.valueOf(balanceSnapshot), transactedAt.toString());
+        }
+
+        static FailedAttempt fromLine(String line) {
+            String[] fields = line.split(SEPARATOR);
+            return new FailedAttempt(TransactionType.valueOf(fields[0]), fields[1], Long.valueOf(fields[2]),
+                    Long.valueOf(fields[3]), Long.valueOf(fields[4]), LocalDateTime.parse(fields[5]));
+        }
+    }
+}
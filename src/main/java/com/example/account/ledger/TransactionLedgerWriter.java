@@ -0,0 +1,263 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Transaction;
+import com.example.account.exception.AccountException;
+import com.example.account.journal.TransactionJournal;
+import com.example.account.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 거래 기록(Transaction) 저장 단계
+ * 잔액 변경과 Transaction 저장은 모두 이 writer 가 여는 DB 트랜잭션 안에서 실행된다.
+ *
+ * batch 가 켜져 있으면 여러 요청의 작업을 모아(max-size 개 또는 첫 요청 후 max-linger ms 까지)
+ * 한 트랜잭션에서 실행하고 Transaction 들을 JDBC batch insert 로 저장한 뒤 한 번에 커밋한다(group commit).
+ * 꺼져 있으면 호출한 스레드에서 요청마다 트랜잭션을 연다.
+ *
+ * 저장하는 트랜잭션 안에서 일별 집계(DailyAggregateProjector)를 갱신하고,
+ * flush 로 insert 가 성공한 것을 확인한 뒤 커밋 전에 TransactionJournal 에 남긴다.
+ * 저널 기록이 실패하면 트랜잭션을 롤백하고 요청을 실패시킨다(account.journal.failures).
+ * 저널에 남긴 뒤 커밋이 실패한 거래 수는 account.journal.uncommitted 로 센다.
+ *
+ * 작업은 이미 열린 트랜잭션 밖에서 넘겨야 한다.
+ * 멈출 때는 이미 받은 요청을 모두 커밋하고, 멈춘 뒤의 요청은 IllegalStateException 으로 거절한다.
+ */
+@Slf4j
+@Component
+public class TransactionLedgerWriter {
+    private final TransactionRepository transactionRepository;
+    private final TransactionJournal transactionJournal;
+    private final DailyAggregateProjector dailyAggregateProjector;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer commitTimer;
+    private final Counter journalFailureCounter;
+    private final Counter journalUncommittedCounter;
+
+    @Value("${account.ledger.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${account.ledger.batch.max-size:100}")
+    private int maxBatchSize;
+
+    @Value("${account.ledger.batch.max-linger:5}")
+    private long maxLingerMillis;
+
+    @Value("${account.ledger.batch.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<Entry> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public TransactionLedgerWriter(TransactionRepository transactionRepository,
+                                   TransactionJournal transactionJournal,
+                                   DailyAggregateProjector dailyAggregateProjector,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.transactionJournal = transactionJournal;
+        this.dailyAggregateProjector = dailyAggregateProjector;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizeSummary = meterRegistry.summary("account.ledger.batch.size");
+        this.commitTimer = meterRegistry.timer("account.ledger.commit");
+        this.journalFailureCounter = meterRegistry.counter("account.journal.failures");
+        this.journalUncommittedCounter = meterRegistry.counter("account.journal.uncommitted");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!batchEnabled) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::drainLoop, "ledger-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public Transaction append(Supplier<Transaction> work) {
+        return appendAll(() -> Collections.singletonList(work.get())).get(0);
+    }
+
+    /**
+     * @param work 잔액을 변경하고 저장할 Transaction 들을 돌려주는 작업. AccountException 을 던지면 그 요청만 실패한다.
+     * @return 저장된 Transaction 들
+     */
+    public List<Transaction> appendAll(Supplier<List<Transaction>> work) {
+        if (!batchEnabled) {
+            AtomicInteger journaled = new AtomicInteger();
+            try {
+                return commitTimer.record(() -> transactionTemplate.execute(status -> {
+                    List<Transaction> rows = transactionRepository.saveAll(work.get());
+                    dailyAggregateProjector.project(rows);
+                    journal(rows, journaled);
+                    return rows;
+                }));
+            } catch (RuntimeException e) {
+                journalUncommittedCounter.increment(journaled.get());
+                throw e;
+            }
+        }
+
+        if (!running) {
+            throw new IllegalStateException("ledger writer is stopped");
+        }
+        Entry entry = new Entry(work);
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while queueing ledger entry", e);
+        }
+        // 넣는 사이에 멈췄으면 writer 가 가져가지 않은 요청은 직접 빼고 실패시킨다. 가져간 요청은 writer 가 끝낸다.
+        if (!running && queue.remove(entry)) {
+            throw new IllegalStateException("ledger writer is stopped");
+        }
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void drainLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                commitGroup(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("ledger writer failed", e);
+            } finally {
+                batch.forEach(Entry::failIfPending);
+                batch.clear();
+            }
+        }
+        // 멈춘 뒤에 들어온 요청이 기다리지 않도록 실패시킨다.
+        Entry remaining;
+        while ((remaining = queue.poll()) != null) {
+            remaining.failIfPending();
+        }
+    }
+
+    private void commitGroup(List<Entry> batch) {
+        batchSizeSummary.record(batch.size());
+
+        List<List<Transaction>> results = new ArrayList<>(batch.size());
+        List<Transaction> rows = new ArrayList<>();
+        AtomicInteger journaled = new AtomicInteger();
+        Timer.Sample sample = Timer.start();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Entry entry : batch) {
+                    try {
+                        List<Transaction> transactions = entry.work.get();
+                        rows.addAll(transactions);
+                        results.add(transactions);
+                    } catch (AccountException e) {
+                        // 검증 실패는 DB 를 바꾸지 않으므로 해당 요청만 실패시키고 나머지는 계속 진행한다.
+                        results.add(null);
+                        entry.result.completeExceptionally(e);
+                    }
+                }
+                transactionRepository.saveAll(rows);
+                dailyAggregateProjector.project(rows);
+                journal(rows, journaled);
+            });
+        } catch (RuntimeException e) {
+            journalUncommittedCounter.increment(journaled.get());
+            batch.forEach(entry -> entry.result.completeExceptionally(e));
+            return;
+        } finally {
+            sample.stop(commitTimer);
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) != null) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        }
+    }
+
+    /**
+     * 트랜잭션 안, 커밋 직전에 호출한다. insert 실패(중복 거래 등)가 저널 기록 뒤 커밋에서 드러나지 않도록 먼저 flush 한다.
+     */
+    private void journal(List<Transaction> rows, AtomicInteger journaled) {
+        transactionRepository.flush();
+        try {
+            transactionJournal.append(rows);
+        } catch (RuntimeException e) {
+            journalFailureCounter.increment();
+            log.error("failed to journal {} transactions, rolling back", rows.size(), e);
+            throw e;
+        }
+        journaled.set(rows.size());
+    }
+
+    private static class Entry {
+        private final Supplier<List<Transaction>> work;
+        private final CompletableFuture<List<Transaction>> result = new CompletableFuture<>();
+
+        Entry(Supplier<List<Transaction>> work) {
+            this.work = work;
+        }
+
+        void failIfPending() {
+            result.completeExceptionally(new IllegalStateException("ledger entry was not committed"));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.account.lock;
+
+/**
+ * 계좌번호 단위 락.
+ * account.lock.mode 설정에 따라 Redis 분산 락(redis) 또는 로컬 스트라이프 락(local) 구현이 등록된다.
+ */
+public interface AccountLockManager {
+    boolean tryLock(String accountNumber, long waitMillis, long leaseMillis) throws InterruptedException;
+
+    void unlock(String accountNumber);
+
+    /**
+     * 같은 락을 쓰는 계좌는 같은 키를 돌려준다.
+     * 여러 계좌를 잠글 때는 이 키 순서대로, 키마다 한 번만 잠가야 교착이 생기지 않는다.
+     */
+    default String lockKey(String accountNumber) {
+        return accountNumber;
+    }
+}
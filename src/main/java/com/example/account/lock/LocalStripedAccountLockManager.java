@@ -0,0 +1,60 @@
+package com.example.account.lock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 단일 노드용 계좌 락.
+ * 계좌번호 해시로 고정 크기의 ReentrantLock 배열(stripe)을 골라 쓰므로 계좌 수와 무관하게 메모리가 일정하다.
+ * 프로세스가 죽으면 락도 사라지므로 lease 시간은 쓰지 않는다.
+ * 서로 다른 계좌가 같은 stripe 를 쓸 수 있으므로 lockKey 는 stripe 번호다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.lock.mode", havingValue = "local")
+public class LocalStripedAccountLockManager implements AccountLockManager {
+    private final ReentrantLock[] stripes;
+
+    public LocalStripedAccountLockManager(@Value("${account.lock.stripes:1024}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public boolean tryLock(String accountNumber, long waitMillis, long leaseMillis) throws InterruptedException {
+        ReentrantLock stripe = stripeOf(accountNumber);
+        if (waitMillis <= 0) {
+            return stripe.tryLock();
+        }
+        return stripe.tryLock(waitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void unlock(String accountNumber) {
+        ReentrantLock stripe = stripeOf(accountNumber);
+        if (stripe.isHeldByCurrentThread()) {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public String lockKey(String accountNumber) {
+        // 문자열 순서가 stripe 번호 순서와 같도록 자릿수를 맞춘다.
+        return String.format("%010d", stripeIndexOf(accountNumber));
+    }
+
+    private ReentrantLock stripeOf(String accountNumber) {
+        return stripes[stripeIndexOf(accountNumber)];
+    }
+
+    private int stripeIndexOf(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
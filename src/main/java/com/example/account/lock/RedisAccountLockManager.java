@@ -0,0 +1,35 @@
+package com.example.account.lock;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "account.lock.mode", havingValue = "redis", matchIfMissing = true)
+public class RedisAccountLockManager implements AccountLockManager {
+    private static final String KEY_PREFIX = "ACLK:";
+
+    private final RedissonClient redissonClient;
+
+    @Override
+    public boolean tryLock(String accountNumber, long waitMillis, long leaseMillis) throws InterruptedException {
+        return redissonClient.getLock(KEY_PREFIX + accountNumber)
+                .tryLock(waitMillis, leaseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void unlock(String accountNumber) {
+        try {
+            redissonClient.getLock(KEY_PREFIX + accountNumber).unlock();
+        } catch (IllegalMonitorStateException e) {
+            // lease 시간이 지나 이미 풀린 락
+            log.warn("lock for {} was already released (lease expired)", accountNumber);
+        }
+    }
+}
@@ -2,19 +2,106 @@ package com.example.account.repository;
 
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
+import com.example.account.repository.projection.AccountBalance;
+import com.example.account.repository.projection.AccountSummary;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
-    Optional<Account> findFirstByOrderByIdDesc();
+    @Query("select max(a.accountNumber) from Account a")
+    Optional<String> findMaxAccountNumber();
 
     Integer countByAccountUser(AccountUser accountUser);
 
     Optional<Account> findByAccountNumber(String accountNumber);
 
     List<Account> findByAccountUser(AccountUser accountUser);
+
+    // 엔티티 대신 필요한 컬럼만 읽는다. accountUser.ID 는 FK 컬럼이라 조인하지 않는다.
+    @Query("select a.accountUser.ID as userID, a.accountNumber as accountNumber, a.balance as balance, " +
+            "a.registeredAt as registeredAt, a.unregisteredAt as unregisteredAt " +
+            "from Account a where a.accountUser.ID = :userID")
+    List<AccountSummary> findSummariesByAccountUserID(@Param("userID") Long userID);
+
+    @Query("select a.accountUser.ID as userID, a.accountNumber as accountNumber, a.balance as balance, " +
+            "a.registeredAt as registeredAt, a.unregisteredAt as unregisteredAt " +
+            "from Account a where a.accountNumber = :accountNumber")
+    Optional<AccountSummary> findSummaryByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    @Query("select a.id from Account a where a.accountNumber = :accountNumber")
+    Optional<Long> findIdByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    // 엔티티 자체를 응답으로 내보내는 조회에서만 소유주까지 함께 읽는다.
+    @EntityGraph(attributePaths = "accountUser")
+    Optional<Account> findWithAccountUserById(Long id);
+
+    Optional<AccountBalance> findBalanceByAccountNumber(String accountNumber);
+
+    boolean existsByAccountNumber(String accountNumber);
+
+    // 잔액 확인과 차감을 한 번의 UPDATE 로 처리한다. 조건을 만족하지 못하면 0 을 반환한다.
+    @Modifying
+    @Query("update Account a set a.balance = a.balance - :amount, " +
+            "a.version = a.version + 1, a.updatedAt = :now " +
+            "where a.accountNumber = :accountNumber and a.accountUser.ID = :userID " +
+            "and a.accountStatus = com.example.account.type.AccountStatus.IN_USE " +
+            "and a.balance - a.heldAmount >= :amount")
+    int useBalance(@Param("accountNumber") String accountNumber,
+                   @Param("userID") Long userID,
+                   @Param("amount") Long amount,
+                   @Param("now") LocalDateTime now);
+
+    // 사용 가능 금액(balance - heldAmount) 안에서만 홀드한다. 조건을 만족하지 못하면 0 을 반환한다.
+    @Modifying
+    @Query("update Account a set a.heldAmount = a.heldAmount + :amount, " +
+            "a.version = a.version + 1, a.updatedAt = :now " +
+            "where a.accountNumber = :accountNumber and a.accountUser.ID = :userID " +
+            "and a.accountStatus = com.example.account.type.AccountStatus.IN_USE " +
+            "and a.balance - a.heldAmount >= :amount")
+    int holdBalance(@Param("accountNumber") String accountNumber,
+                    @Param("userID") Long userID,
+                    @Param("amount") Long amount,
+                    @Param("now") LocalDateTime now);
+
+    // 홀드를 끝낸다. 확정 금액만 잔액에서 빼고 홀드 금액 전체를 푼다.
+    @Modifying
+    @Query("update Account a set a.balance = a.balance - :capturedAmount, " +
+            "a.heldAmount = a.heldAmount - :heldAmount, " +
+            "a.version = a.version + 1, a.updatedAt = :now " +
+            "where a.id = :id")
+    int settleHold(@Param("id") Long id,
+                   @Param("capturedAmount") Long capturedAmount,
+                   @Param("heldAmount") Long heldAmount,
+                   @Param("now") LocalDateTime now);
+
+    Optional<AccountBalance> findBalanceById(Long id);
+
+    // 잔액 엔진이 처리한 거래를 차감액(delta)으로 반영한다. 해지는 엔진의 거래가 모두 반영된 뒤에 하므로 해지된 계좌면 0 을 반환한다.
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :delta, " +
+            "a.version = a.version + 1, a.updatedAt = :now " +
+            "where a.accountNumber = :accountNumber " +
+            "and a.accountStatus = com.example.account.type.AccountStatus.IN_USE")
+    int applyBalanceDelta(@Param("accountNumber") String accountNumber,
+                          @Param("delta") Long delta,
+                          @Param("now") LocalDateTime now);
+
+    // 취소 금액을 한 번의 UPDATE 로 되돌린다. 해지된 계좌면 0 을 반환한다.
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :amount, " +
+            "a.version = a.version + 1, a.updatedAt = :now " +
+            "where a.accountNumber = :accountNumber " +
+            "and a.accountStatus = com.example.account.type.AccountStatus.IN_USE")
+    int cancelBalance(@Param("accountNumber") String accountNumber,
+                      @Param("amount") Long amount,
+                      @Param("now") LocalDateTime now);
 }
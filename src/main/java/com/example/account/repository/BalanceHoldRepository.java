@@ -0,0 +1,35 @@
+package com.example.account.repository;
+
+import com.example.account.domain.BalanceHold;
+import com.example.account.repository.projection.HoldExpiry;
+import com.example.account.type.HoldStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BalanceHoldRepository extends JpaRepository<BalanceHold, Long> {
+    @EntityGraph(attributePaths = {"account", "account.accountUser"})
+    Optional<BalanceHold> findByHoldID(String holdID);
+
+    // 진행 중(HELD)인 홀드만 끝낸다. 이미 확정/해제/만료된 홀드면 0 을 반환한다.
+    @Modifying
+    @Query("update BalanceHold h set h.holdStatus = :holdStatus, h.capturedAmount = :capturedAmount, " +
+            "h.updatedAt = :now " +
+            "where h.holdID = :holdID and h.holdStatus = com.example.account.type.HoldStatus.HELD")
+    int complete(@Param("holdID") String holdID,
+                 @Param("holdStatus") HoldStatus holdStatus,
+                 @Param("capturedAmount") Long capturedAmount,
+                 @Param("now") LocalDateTime now);
+
+    @Query("select h.holdID as holdID, h.expiresAt as expiresAt from BalanceHold h " +
+            "where h.holdStatus = com.example.account.type.HoldStatus.HELD")
+    List<HoldExpiry> findActiveHoldExpiries();
+}
@@ -0,0 +1,54 @@
+package com.example.account.repository;
+
+import com.example.account.domain.DailyAccountAggregate;
+import com.example.account.repository.projection.DailyAggregateRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DailyAccountAggregateRepository extends JpaRepository<DailyAccountAggregate, Long> {
+    String ROW_SELECT = "select a.aggregateDate as aggregateDate, a.transactionCount as transactionCount, " +
+            "a.usedAmount as usedAmount, a.canceledAmount as canceledAmount, " +
+            "a.closingBalance as closingBalance " +
+            "from DailyAccountAggregate a where a.account.id = :accountId ";
+
+    // 이미 있는 날짜의 집계에 더한다. 마감 잔액은 더 늦은 거래일 때만 바꾼다. 집계가 없으면 0 을 반환한다.
+    @Modifying
+    @Query("update DailyAccountAggregate a set " +
+            "a.transactionCount = a.transactionCount + :transactionCount, " +
+            "a.usedAmount = a.usedAmount + :usedAmount, " +
+            "a.canceledAmount = a.canceledAmount + :canceledAmount, " +
+            "a.closingBalance = case when a.lastTransactedAt <= :lastTransactedAt " +
+            "then :closingBalance else a.closingBalance end, " +
+            "a.lastTransactedAt = case when a.lastTransactedAt <= :lastTransactedAt " +
+            "then :lastTransactedAt else a.lastTransactedAt end, " +
+            "a.updatedAt = :now " +
+            "where a.account.id = :accountId and a.aggregateDate = :aggregateDate")
+    int accumulate(@Param("accountId") Long accountId,
+                   @Param("aggregateDate") LocalDate aggregateDate,
+                   @Param("transactionCount") Long transactionCount,
+                   @Param("usedAmount") Long usedAmount,
+                   @Param("canceledAmount") Long canceledAmount,
+                   @Param("closingBalance") Long closingBalance,
+                   @Param("lastTransactedAt") LocalDateTime lastTransactedAt,
+                   @Param("now") LocalDateTime now);
+
+    @Query(ROW_SELECT + "and a.aggregateDate between :from and :to order by a.aggregateDate")
+    List<DailyAggregateRow> findRows(@Param("accountId") Long accountId,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to);
+
+    // 기간 시작 전 마지막 집계. 기초 잔액으로 쓴다.
+    @Query(ROW_SELECT + "and a.aggregateDate < :date order by a.aggregateDate desc")
+    List<DailyAggregateRow> findRowsBefore(@Param("accountId") Long accountId,
+                                           @Param("date") LocalDate date,
+                                           Pageable pageable);
+}
@@ -1,15 +1,65 @@
 package com.example.account.repository;
 
-import com.example.account.domain.Account;
-import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.repository.projection.TransactionHistoryRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    String HISTORY_SELECT = "select t.id as id, t.transactionType as transactionType, " +
+            "t.transactionResultType as transactionResultType, t.transactionID as transactionID, " +
+            "t.originalTransactionID as originalTransactionID, t.amount as amount, " +
+            "t.balanceSnapshot as balanceSnapshot, t.transactedAt as transactedAt " +
+            "from Transaction t where t.account.id = :accountId ";
+    String HISTORY_ORDER = "order by t.transactedAt desc, t.id desc";
+
+    // transactionID 의 unique 인덱스를 타고, 응답에 필요한 계좌번호를 위해 계좌만 함께 읽는다.
+    @EntityGraph(attributePaths = "account")
+    Optional<Transaction> findByTransactionID(String transactionID);
+
+    boolean existsByOriginalTransactionID(String originalTransactionID);
+
+    // 거래 내역은 (account_id, transactedAt, id) 인덱스를 최신순으로 따라가며 필요한 건수만 읽는다.
+    // 다음 페이지는 OFFSET 대신 마지막으로 읽은 (transactedAt, id) 이후부터 읽는다.
+    @Query(HISTORY_SELECT + HISTORY_ORDER)
+    List<TransactionHistoryRow> findHistory(@Param("accountId") Long accountId, Pageable pageable);
+
+    @Query(HISTORY_SELECT +
+            "and (t.transactedAt < :transactedAt or (t.transactedAt = :transactedAt and t.id < :id)) " +
+            HISTORY_ORDER)
+    List<TransactionHistoryRow> findHistoryAfter(@Param("accountId") Long accountId,
+                                                 @Param("transactedAt") LocalDateTime transactedAt,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+
+    // 전체 내역 내보내기용. fetch size 단위로 읽어 내려가므로 트랜잭션 안에서 소비하고 닫아야 한다.
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(HISTORY_SELECT + HISTORY_ORDER)
+    Stream<TransactionHistoryRow> streamHistory(@Param("accountId") Long accountId);
+
+    // 보관 대상. 오래된 거래일수록 id 가 작으므로 PK 순으로 읽으면 앞쪽에서 바로 chunk 만큼 찾는다.
+    @Query("select t from Transaction t where t.transactedAt < :cutoff order by t.id")
+    List<Transaction> findArchivable(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
 
+    @Query("select t.transactionID from Transaction t where t.transactionID in :transactionIDs")
+    List<String> findExistingTransactionIDs(@Param("transactionIDs") Collection<String> transactionIDs);
 }
@@ -0,0 +1,11 @@
+package com.example.account.repository.projection;
+
+public interface AccountBalance {
+    Long getId();
+
+    String getAccountNumber();
+
+    Long getBalance();
+
+    Long getVersion();
+}
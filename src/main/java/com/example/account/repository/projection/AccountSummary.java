@@ -0,0 +1,15 @@
+package com.example.account.repository.projection;
+
+import java.time.LocalDateTime;
+
+public interface AccountSummary {
+    Long getUserID();
+
+    String getAccountNumber();
+
+    Long getBalance();
+
+    LocalDateTime getRegisteredAt();
+
+    LocalDateTime getUnregisteredAt();
+}
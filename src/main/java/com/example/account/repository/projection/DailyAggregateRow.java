@@ -0,0 +1,15 @@
+package com.example.account.repository.projection;
+
+import java.time.LocalDate;
+
+public interface DailyAggregateRow {
+    LocalDate getAggregateDate();
+
+    Long getTransactionCount();
+
+    Long getUsedAmount();
+
+    Long getCanceledAmount();
+
+    Long getClosingBalance();
+}
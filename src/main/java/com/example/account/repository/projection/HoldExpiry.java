@@ -0,0 +1,9 @@
+package com.example.account.repository.projection;
+
+import java.time.LocalDateTime;
+
+public interface HoldExpiry {
+    String getHoldID();
+
+    LocalDateTime getExpiresAt();
+}
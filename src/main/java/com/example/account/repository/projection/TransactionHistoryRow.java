@@ -0,0 +1,24 @@
+package com.example.account.repository.projection;
+
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+
+import java.time.LocalDateTime;
+
+public interface TransactionHistoryRow {
+    Long getId();
+
+    TransactionType getTransactionType();
+
+    TransactionResultType getTransactionResultType();
+
+    String getTransactionID();
+
+    String getOriginalTransactionID();
+
+    Long getAmount();
+
+    Long getBalanceSnapshot();
+
+    LocalDateTime getTransactedAt();
+}
@@ -1,19 +1,31 @@
 package com.example.account.service;
 
+import com.example.account.allocator.AccountNumberAllocator;
+import com.example.account.aop.OptimisticRetry;
+import com.example.account.cache.AccountCache;
+import com.example.account.datasource.ReadYourWritesTracker;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountDto;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
 import com.example.account.exception.AccountException;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.projection.AccountSummary;
 import com.example.account.type.AccountStatus;
 import com.example.account.type.ErrorCode;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-
-import javax.transaction.Transactional;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -21,25 +33,52 @@ import java.util.stream.Collectors;
 import static com.example.account.type.AccountStatus.*;
 import static com.example.account.type.ErrorCode.*;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AccountService {
     private final AccountRepository accountRepository;
     private final AccountUserRepository accountUserRepository;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final AccountCache accountCache;
+    private final RedisBalanceAuthority redisBalanceAuthority;
+    private final BalanceEngine balanceEngine;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private static final int ACCOUNT_NUMBER_ATTEMPTS = 3;
+
+    // 트랜잭션을 새로 열어 다시 시도하기 위해 프록시를 거쳐 부른다.
+    @Lazy
+    @Autowired
+    private AccountService self;
 
     // 해당 사용자가 있는지 확인
     // 계좌번호 생성하고 계좌를 저장 후, 그 정보를 넘김
-    @Transactional
+    // 발급한 번호가 이미 있는 계좌번호와 겹치면(Redis 카운터가 초기화된 경우 등) 발급기를 DB 에 다시 맞추고 새 번호로 다시 시도한다.
+    @Timed(value = "account.service", extraTags = {"operation", "createAccount"})
     public AccountDto createAccount(Long userID, Long initialBalance) {
+        for (int attempt = 1; ; attempt++) {
+            String newAccountNumber = accountNumberAllocator.next();
+            try {
+                return self.createAccountWithNumber(userID, initialBalance, newAccountNumber);
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= ACCOUNT_NUMBER_ATTEMPTS || !accountRepository.existsByAccountNumber(newAccountNumber)) {
+                    throw e;
+                }
+                log.warn("account number {} is already taken, realigning the allocator", newAccountNumber);
+                accountNumberAllocator.realign();
+            }
+        }
+    }
+
+    // 번호가 겹치면 커밋(insert) 시점에 DataIntegrityViolationException 이 나므로 트랜잭션 밖에서 다시 시도한다.
+    @Transactional
+    public AccountDto createAccountWithNumber(Long userID, Long initialBalance, String newAccountNumber) {
 
         //Exeption을 새로 정의해서 없으면 throw하도록 함.
         AccountUser accountUser = accountUserRepository.findById(userID)
                 .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
 
-        String newAccountNumber = accountRepository.findFirstByOrderByIdDesc()
-                .map(account -> (Integer.parseInt(account.getAccountNumber())) + 1 + "")
-                .orElse("1000000000");
-
         Account savedAccount = accountRepository.save(
                 Account.builder()
                         .accountUser(accountUser)
@@ -49,59 +88,119 @@ public class AccountService {
                         .registeredAt(LocalDateTime.now())
                         .build()
         );
+        accountCache.evictAccountNumbers(userID);
+        readYourWritesTracker.recordWrite(userID);
 
         return AccountDto.fromEntity(savedAccount);
     }
 
-    @Transactional
+    // 요청에 사용자가 없으므로 replica 지연만 보고 보낸다.
+    @Transactional(readOnly = true)
     public Account getAccount(Long id) {
         if(id < 0){
             throw new RuntimeException("Minus");
         }
-        return accountRepository.findById(id).get();
+        return accountRepository.findWithAccountUserById(id).get();
     }
 
     // 사용자 또는 계좌가 없을 때, 아이디와 계좌 소유주가 다를 때, 계좌가 이미 해지 상태일 때,
     // 잔액이 있는 경우에는 delete할 수 없게 한다.
-    @Transactional
+    // 잔액 기준이 Redis 나 메모리 엔진이면 그쪽 잔액으로 먼저 확인해 막고, 남은 거래가 DB 에 반영되기를 기다린다.
+    // 기다리는 동안 DB 커넥션을 잡지 않도록 트랜잭션 밖에서 하고, DB 해지는 프록시를 거쳐 새 트랜잭션에서 한다.
+    @Timed(value = "account.service", extraTags = {"operation", "deleteAccount"})
     public AccountDto deleteAccount(Long userID, String accountNumber) {
-        AccountUser accountUser = accountUserRepository.findById(userID)
-                .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
+        boolean closedByBalanceOwner = unregisterInBalanceOwner(userID, accountNumber);
+        try {
+            return self.unregisterAccount(userID, accountNumber, closedByBalanceOwner);
+        } catch (RuntimeException e) {
+            // DB 해지가 커밋되지 않았으므로 다시 사용할 수 있게 되돌린다.
+            if (closedByBalanceOwner) {
+                reopenInBalanceOwner(accountNumber);
+            }
+            throw e;
+        }
+    }
+
+    @OptimisticRetry
+    @Transactional
+    public AccountDto unregisterAccount(Long userID, String accountNumber, boolean closedByBalanceOwner) {
+        // 사용자 조회는 실패한 경우에만 USER_NOT_FOUND 를 구분하기 위해 한다.
         Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND));
+                .orElseThrow(() -> new AccountException(
+                        accountUserRepository.existsById(userID) ? ACCOUNT_NOT_FOUND : USER_NOT_FOUND));
 
-        validateDeleteAccount(accountUser, account);
+        validateDeleteAccount(userID, account, closedByBalanceOwner);
 
         account.setAccountStatus(AccountStatus.UNREGISTERED);
         account.setUnregisteredAt(LocalDateTime.now());
+        accountCache.evictAccount(accountNumber);
+        readYourWritesTracker.recordWrite(userID);
 
         return AccountDto.fromEntity(account);
     }
 
-    private void validateDeleteAccount(AccountUser accountUser, Account account) {
+    private boolean unregisterInBalanceOwner(Long userID, String accountNumber) {
+        try {
+            return redisBalanceAuthority.unregister(userID, accountNumber)
+                    || balanceEngine.unregister(userID, accountNumber);
+        } catch (AccountException e) {
+            if ((e.getErrorCode() == USER_ACCOUNT_UN_MATCHED || e.getErrorCode() == ACCOUNT_NOT_FOUND)
+                    && !accountUserRepository.existsById(userID)) {
+                throw new AccountException(USER_NOT_FOUND);
+            }
+            throw e;
+        }
+    }
+
+    private void reopenInBalanceOwner(String accountNumber) {
+        if (redisBalanceAuthority.owns(accountNumber)) {
+            redisBalanceAuthority.reopen(accountNumber);
+        } else {
+            balanceEngine.reopen(accountNumber);
+        }
+    }
+
+    private void validateDeleteAccount(Long userID, Account account, boolean closedByBalanceOwner) {
         //사용자와 계좌의 소유주과 다른 케이스
-        if(!Objects.equals(accountUser.getID(), account.getAccountUser().getID())){
-            throw new AccountException(USER_ACCOUNT_UN_MATCHED);
+        if(!Objects.equals(userID, account.getAccountUser().getID())){
+            throw new AccountException(
+                    accountUserRepository.existsById(userID) ? USER_ACCOUNT_UN_MATCHED : USER_NOT_FOUND);
         }
         //사용자의 계좌가 이미 해지된 케이스
         if(account.getAccountStatus() == AccountStatus.UNREGISTERED){
             throw new AccountException(ACCOUNT_ALREADY_UNREGISTERED);
         }
-        //계좌에 잔액이 남아있는 케이스
-        if(account.getBalance() > 0){
+        //계좌에 잔액이 남아있는 케이스. Redis 나 엔진이 잔액 기준인 계좌는 이미 그쪽 잔액으로 확인했다.
+        if(!closedByBalanceOwner && account.getBalance() > 0){
             throw new AccountException(BALANCE_OVER_ZERO);
         }
     }
 
-    @Transactional
+    // 사용자의 계좌번호 목록과 계좌별 정보를 따로 캐시해 두고 조합한다.
+    // replica 로 읽되, 사용자의 마지막 쓰기가 아직 replica 에 없으면 primary 로 읽는다.
+    @Timed(value = "account.service", extraTags = {"operation", "getAccountsByUserID"})
+    @Transactional(readOnly = true)
     public List<AccountDto> getAccountsByUserID(Long userID) {
-        AccountUser accountUser = accountUserRepository.findById(userID)
-                .orElseThrow(() -> new AccountException((USER_NOT_FOUND)));
-        List<Account> accounts = accountRepository
-                .findByAccountUser(accountUser);
-
-        return accounts.stream()
-                .map(AccountDto::fromEntity)
+        readYourWritesTracker.bindReader(userID);
+        String[] accountNumbers = accountCache.getAccountNumbers(userID, () -> {
+            List<AccountSummary> accounts = accountRepository
+                    .findSummariesByAccountUserID(userID);
+            if (accounts.isEmpty() && !accountUserRepository.existsById(userID)) {
+                throw new AccountException(USER_NOT_FOUND);
+            }
+
+            accounts.forEach(account -> accountCache.putAccount(AccountDto.fromSummary(account)));
+            return accounts.stream()
+                    .map(AccountSummary::getAccountNumber)
+                    .toArray(String[]::new);
+        });
+
+        return Arrays.stream(accountNumbers)
+                .map(accountNumber -> accountCache.getAccount(accountNumber,
+                        () -> accountRepository.findSummaryByAccountNumber(accountNumber)
+                                .map(AccountDto::fromSummary)
+                                .orElse(null)))
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 }
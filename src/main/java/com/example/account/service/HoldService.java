@@ -0,0 +1,229 @@
+package com.example.account.service;
+
+import com.example.account.cache.AccountCache;
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.domain.Account;
+import com.example.account.domain.BalanceHold;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.HoldDto;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
+import com.example.account.exception.AccountException;
+import com.example.account.hold.HoldExpiryScheduler;
+import com.example.account.ledger.TransactionLedgerWriter;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.BalanceHoldRepository;
+import com.example.account.repository.projection.AccountBalance;
+import com.example.account.repository.projection.HoldExpiry;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.HoldStatus;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.HOLD;
+import static com.example.account.type.TransactionType.RELEASED;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 잔액 홀드(승인) / 확정(capture) / 해제(release)
+ * 홀드는 Account.heldAmount 에 금액을 묶어 두고, 확정하면 확정 금액만 잔액에서 뺀다.
+ * 각 단계는 조건부 UPDATE 와 거래 기록을 한 트랜잭션으로 저장한다. 트랜잭션은 TransactionLedgerWriter 가 연다.
+ * 만료된 홀드는 HoldExpiryScheduler 가 해제한다.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HoldService {
+    private final TransactionLedgerWriter transactionLedgerWriter;
+    private final HoldExpiryScheduler holdExpiryScheduler;
+    private final BalanceEngine balanceEngine;
+    private final RedisBalanceAuthority redisBalanceAuthority;
+    private final AccountUserRepository accountUserRepository;
+    private final AccountRepository accountRepository;
+    private final BalanceHoldRepository balanceHoldRepository;
+    private final AccountCache accountCache;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    @Value("${account.hold.default-ttl:900}")
+    private long defaultTtlSeconds;
+
+    @Value("${account.hold.max-ttl:604800}")
+    private long maxTtlSeconds;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleActiveHolds() {
+        List<HoldExpiry> holds = balanceHoldRepository.findActiveHoldExpiries();
+        holds.forEach(hold -> holdExpiryScheduler.schedule(hold.getHoldID(), hold.getExpiresAt(), this::expireHold));
+        if (!holds.isEmpty()) {
+            log.info("scheduled expiry of {} active holds", holds.size());
+        }
+    }
+
+    @Timed(value = "account.service", extraTags = {"operation", "holdBalance"})
+    public HoldDto holdBalance(Long userID, String accountNumber, Long amount, Long ttlSeconds) {
+        // 엔진이 처리하는 계좌는 DB 의 홀드 금액을 보지 않고 잔액을 쓰므로 홀드를 막는다.
+        if (redisBalanceAuthority.owns(accountNumber) || balanceEngine.owns(accountNumber)) {
+            throw new AccountException(ErrorCode.HOLD_NOT_SUPPORTED);
+        }
+        long ttl = Math.min(ttlSeconds == null ? defaultTtlSeconds : ttlSeconds, maxTtlSeconds);
+        BalanceHold hold = BalanceHold.builder()
+                .holdID(UUID.randomUUID().toString().replace("-", ""))
+                .amount(amount)
+                .holdStatus(HoldStatus.HELD)
+                .expiresAt(LocalDateTime.now().plusSeconds(ttl))
+                .build();
+
+        Transaction transaction = transactionLedgerWriter.append(() -> {
+            if (accountRepository.holdBalance(accountNumber, userID, amount, LocalDateTime.now()) == 0) {
+                throw holdFailure(userID, accountNumber);
+            }
+            AccountBalance accountBalance = accountRepository.findBalanceByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+            Account account = accountRepository.getById(accountBalance.getId());
+            hold.setAccount(account);
+            balanceHoldRepository.save(hold);
+            return newTransaction(HOLD, account, amount, accountBalance.getBalance());
+        });
+        accountCache.evictAccount(accountNumber);
+        readYourWritesTracker.recordWrite(userID);
+        holdExpiryScheduler.schedule(hold.getHoldID(), hold.getExpiresAt(), this::expireHold);
+
+        return HoldDto.fromEntity(hold, accountNumber, transaction.getBalanceSnapshot());
+    }
+
+    /**
+     * 홀드 금액 중 amount 만큼 잔액에서 빼고 나머지는 푼다. amount 가 없으면 전액 확정한다.
+     */
+    @Timed(value = "account.service", extraTags = {"operation", "captureHold"})
+    public HoldDto captureHold(Long userID, String holdID, String accountNumber, Long amount) {
+        BalanceHold hold = findActiveHold(userID, holdID, accountNumber);
+        long capturedAmount = amount == null ? hold.getAmount() : amount;
+        if (capturedAmount > hold.getAmount()) {
+            throw new AccountException(ErrorCode.CAPTURE_EXCEED_HOLD);
+        }
+        return complete(hold, HoldStatus.CAPTURED, capturedAmount);
+    }
+
+    @Timed(value = "account.service", extraTags = {"operation", "releaseHold"})
+    public HoldDto releaseHold(Long userID, String holdID, String accountNumber) {
+        return complete(findActiveHold(userID, holdID, accountNumber), HoldStatus.RELEASED, 0L);
+    }
+
+    // 타이머가 부른다. 이미 확정/해제된 홀드는 그대로 둔다.
+    void expireHold(String holdID) {
+        balanceHoldRepository.findByHoldID(holdID)
+                .filter(hold -> hold.getHoldStatus() == HoldStatus.HELD)
+                .ifPresent(hold -> {
+                    try {
+                        complete(hold, HoldStatus.EXPIRED, 0L);
+                    } catch (AccountException e) {
+                        log.debug("hold {} was completed before it expired", holdID);
+                    }
+                });
+    }
+
+    private HoldDto complete(BalanceHold hold, HoldStatus holdStatus, long capturedAmount) {
+        String accountNumber = hold.getAccount().getAccountNumber();
+        Long accountId = hold.getAccount().getId();
+
+        List<Transaction> transactions = transactionLedgerWriter.appendAll(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (balanceHoldRepository.complete(hold.getHoldID(), holdStatus, capturedAmount, now) == 0) {
+                throw new AccountException(ErrorCode.HOLD_ALREADY_COMPLETED);
+            }
+            accountRepository.settleHold(accountId, capturedAmount, hold.getAmount(), now);
+            Long balance = accountRepository.findBalanceById(accountId)
+                    .map(AccountBalance::getBalance)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+            Account account = accountRepository.getById(accountId);
+            List<Transaction> rows = new ArrayList<>(2);
+            if (capturedAmount > 0) {
+                rows.add(newTransaction(USE, account, capturedAmount, balance));
+            }
+            if (capturedAmount < hold.getAmount()) {
+                rows.add(newTransaction(RELEASED, account, hold.getAmount() - capturedAmount, balance));
+            }
+            return rows;
+        });
+        accountCache.evictAccount(accountNumber);
+        readYourWritesTracker.recordWrite(hold.getAccount().getAccountUser().getID());
+
+        hold.setHoldStatus(holdStatus);
+        hold.setCapturedAmount(capturedAmount);
+        return HoldDto.fromEntity(hold, accountNumber,
+                transactions.get(transactions.size() - 1).getBalanceSnapshot());
+    }
+
+    /**
+     * 1. 홀드가 없는 경우
+     * 2. 홀드와 계좌가 일치하지 않는 경우
+     * 3. 사용자 아이디와 계좌 소유주가 다른 경우
+     * 4. 이미 확정/해제/만료된 경우
+     * 5. 만료 시각이 지난 경우(타이머가 곧 해제한다)
+     */
+    private BalanceHold findActiveHold(Long userID, String holdID, String accountNumber) {
+        BalanceHold hold = balanceHoldRepository.findByHoldID(holdID)
+                .orElseThrow(() -> new AccountException(ErrorCode.HOLD_NOT_FOUND));
+        if (!Objects.equals(hold.getAccount().getAccountNumber(), accountNumber)) {
+            throw new AccountException(ErrorCode.HOLD_ACCOUNT_UN_MATCH);
+        }
+        if (!Objects.equals(hold.getAccount().getAccountUser().getID(), userID)) {
+            throw new AccountException(accountUserRepository.existsById(userID)
+                    ? ErrorCode.USER_ACCOUNT_UN_MATCHED : ErrorCode.USER_NOT_FOUND);
+        }
+        if (hold.getHoldStatus() == HoldStatus.EXPIRED || hold.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new AccountException(ErrorCode.HOLD_EXPIRED);
+        }
+        if (hold.getHoldStatus() != HoldStatus.HELD) {
+            throw new AccountException(ErrorCode.HOLD_ALREADY_COMPLETED);
+        }
+        return hold;
+    }
+
+    // 조건부 UPDATE 가 실패한 이유를 찾는다.
+    private AccountException holdFailure(Long userID, String accountNumber) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElse(null);
+        if (account == null) {
+            return new AccountException(accountUserRepository.existsById(userID)
+                    ? ErrorCode.ACCOUNT_NOT_FOUND : ErrorCode.USER_NOT_FOUND);
+        }
+        if (!Objects.equals(userID, account.getAccountUser().getID())) {
+            return new AccountException(accountUserRepository.existsById(userID)
+                    ? ErrorCode.USER_ACCOUNT_UN_MATCHED : ErrorCode.USER_NOT_FOUND);
+        }
+        if (account.getAccountStatus() != AccountStatus.IN_USE) {
+            return new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
+        return new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+    }
+
+    private Transaction newTransaction(TransactionType transactionType, Account account,
+                                       Long amount, Long balanceSnapshot) {
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(S)
+                .account(account)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactionID(UUID.randomUUID().toString().replace("-", ""))
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+}
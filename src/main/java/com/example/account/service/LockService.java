@@ -0,0 +1,76 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.lock.AccountLockManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.type.ErrorCode.ACCOUNT_TRANSACTION_LOCK;
+
+/**
+ * 계좌 락 획득/해제
+ * 먼저 기다리지 않고 시도해 보고, 실패하면 경합으로 집계한 뒤 wait-time 만큼 기다린다.
+ */
+@Slf4j
+@Service
+public class LockService {
+    private final AccountLockManager accountLockManager;
+    private final Timer waitTimer;
+    private final Counter acquiredCounter;
+    private final Counter contendedCounter;
+    private final Counter failedCounter;
+
+    @Value("${account.lock.wait-time:1000}")
+    private long waitTimeMillis;
+
+    @Value("${account.lock.lease-time:5000}")
+    private long leaseTimeMillis;
+
+    public LockService(AccountLockManager accountLockManager, MeterRegistry meterRegistry) {
+        this.accountLockManager = accountLockManager;
+        this.waitTimer = meterRegistry.timer("account.lock.wait");
+        this.acquiredCounter = meterRegistry.counter("account.lock.acquired");
+        this.contendedCounter = meterRegistry.counter("account.lock.contended");
+        this.failedCounter = meterRegistry.counter("account.lock.failed");
+    }
+
+    public void lock(String accountNumber) {
+        long startedAt = System.nanoTime();
+        try {
+            boolean locked = accountLockManager.tryLock(accountNumber, 0, leaseTimeMillis);
+            if (!locked) {
+                contendedCounter.increment();
+                locked = accountLockManager.tryLock(accountNumber, waitTimeMillis, leaseTimeMillis);
+            }
+            if (!locked) {
+                failedCounter.increment();
+                log.warn("failed to acquire lock for account {} within {} ms", accountNumber, waitTimeMillis);
+                throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+            }
+            acquiredCounter.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedCounter.increment();
+            throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+        } finally {
+            waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void unlock(String accountNumber) {
+        accountLockManager.unlock(accountNumber);
+    }
+
+    /**
+     * @see AccountLockManager#lockKey(String)
+     */
+    public String lockKey(String accountNumber) {
+        return accountLockManager.lockKey(accountNumber);
+    }
+}
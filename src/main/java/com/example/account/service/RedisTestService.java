@@ -1,31 +1,21 @@
 package com.example.account.service;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.TimeUnit;
-
-@Slf4j
+/**
+ * 락 동작 확인용. 실패하면 LockService 가 account.lock.failed 로 집계하고
+ * ACCOUNT_TRANSACTION_LOCK 을 던진다. 락은 lease 시간이 지나면 풀린다.
+ */
 @Service
 @RequiredArgsConstructor
 public class RedisTestService {
-    private final RedissonClient redissonClient;
+    private static final String SAMPLE_LOCK = "sampleLock";
 
-    public String getLock() {
-        RLock lock = redissonClient.getLock("sampleLock");
+    private final LockService lockService;
 
-        try {
-            boolean isLock = lock.tryLock(1, 5, TimeUnit.SECONDS);
-            if(!isLock) {
-                log.error("======Lock acquisition failed=====");
-                return "Lock failed";
-            }
-        } catch (Exception e) {
-            log.error("Redis lock failed");
-        }
+    public String getLock() {
+        lockService.lock(SAMPLE_LOCK);
 
         return "Lock success";
     }
@@ -0,0 +1,68 @@
+package com.example.account.service;
+
+import com.example.account.dto.Statement;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.DailyAccountAggregateRepository;
+import com.example.account.repository.projection.DailyAggregateRow;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 거래명세
+ * Transaction 테이블을 읽지 않고 일별 집계만 읽으므로 비용이 거래 건수가 아니라 기간(일수)에 비례한다.
+ */
+@Service
+@RequiredArgsConstructor
+public class StatementService {
+    private final AccountRepository accountRepository;
+    private final DailyAccountAggregateRepository dailyAccountAggregateRepository;
+
+    @Value("${account.statement.max-days:366}")
+    private long maxDays;
+
+    @Timed(value = "account.service", extraTags = {"operation", "getStatement"})
+    public Statement.Response getStatement(String accountNumber, LocalDate from, LocalDate to) {
+        if (from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new AccountException(ErrorCode.INVALID_STATEMENT_PERIOD);
+        }
+        Long accountId = accountRepository.findIdByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+        List<DailyAggregateRow> rows = dailyAccountAggregateRepository.findRows(accountId, from, to);
+        Long openingBalance = rows.isEmpty() ? closingBalanceBefore(accountId, from) : openingBalanceOf(rows.get(0));
+        Long closingBalance = rows.isEmpty() ? openingBalance : rows.get(rows.size() - 1).getClosingBalance();
+
+        return Statement.Response.builder()
+                .accountNumber(accountNumber)
+                .from(from)
+                .to(to)
+                .openingBalance(openingBalance)
+                .closingBalance(closingBalance)
+                .transactionCount(rows.stream().mapToLong(DailyAggregateRow::getTransactionCount).sum())
+                .usedAmount(rows.stream().mapToLong(DailyAggregateRow::getUsedAmount).sum())
+                .canceledAmount(rows.stream().mapToLong(DailyAggregateRow::getCanceledAmount).sum())
+                .days(rows.stream().map(Statement.Day::from).collect(Collectors.toList()))
+                .build();
+    }
+
+    // 그날 잔액은 사용만큼 줄고 취소만큼 늘었으므로 마감 잔액에서 되돌리면 시작 잔액이다.
+    private static Long openingBalanceOf(DailyAggregateRow row) {
+        return row.getClosingBalance() + row.getUsedAmount() - row.getCanceledAmount();
+    }
+
+    private Long closingBalanceBefore(Long accountId, LocalDate date) {
+        List<DailyAggregateRow> before = dailyAccountAggregateRepository
+                .findRowsBefore(accountId, date, PageRequest.of(0, 1));
+        return before.isEmpty() ? null : before.get(0).getClosingBalance();
+    }
+}
@@ -1,65 +1,299 @@
 package com.example.account.service;
 
+import com.example.account.aop.OptimisticRetry;
+import com.example.account.archive.TransactionArchive;
+import com.example.account.cache.AccountCache;
+import com.example.account.cache.RecentTransactionCache;
+import com.example.account.datasource.ReadYourWritesTracker;
 import com.example.account.domain.Account;
-import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistory;
+import com.example.account.dto.UseBalance;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
 import com.example.account.exception.AccountException;
+import com.example.account.ledger.FailedTransactionAuditor;
+import com.example.account.ledger.TransactionLedgerWriter;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.repository.TransactionRepository;
+import com.example.account.repository.projection.AccountBalance;
+import com.example.account.repository.projection.TransactionHistoryRow;
 import com.example.account.type.AccountStatus;
+import com.example.account.type.ConcurrencyMode;
 import com.example.account.type.ErrorCode;
 import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
-import java.util.Objects;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.example.account.type.TransactionResultType.F;
 import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCELED;
 import static com.example.account.type.TransactionType.USE;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
-    private final TransactionRepository transactionRepository;
+    private final TransactionLedgerWriter transactionLedgerWriter;
+    private final BalanceEngine balanceEngine;
+    private final RedisBalanceAuthority redisBalanceAuthority;
+    private final FailedTransactionAuditor failedTransactionAuditor;
     private final AccountUserRepository accountUserRepository;
     private final AccountRepository accountRepositoy;
+    private final LockService lockService;
+    private final AccountCache accountCache;
+    private final TransactionRepository transactionRepository;
+    private final RecentTransactionCache recentTransactionCache;
+    private final TransactionArchive transactionArchive;
+    private final ReadYourWritesTracker readYourWritesTracker;
 
+    // 거래 내역 정렬 순서 (transactedAt desc, id desc)
+    private static final Comparator<TransactionHistoryRow> NEWEST_FIRST = Comparator
+            .comparing(TransactionHistoryRow::getTransactedAt)
+            .thenComparing(TransactionHistoryRow::getId)
+            .reversed();
 
+    @Value("${account.concurrency.mode:lock}")
+    private ConcurrencyMode concurrencyMode;
 
-    @Transactional
+    @Value("${account.history.max-page-size:100}")
+    private int maxHistoryPageSize;
+
+    // @OptimisticRetry 가 걸린 DB 단계를 프록시를 거쳐 부르기 위해 자신을 주입받는다.
+    @Lazy
+    @Autowired
+    private TransactionService self;
+
+    // 트랜잭션은 TransactionLedgerWriter 가 연다.
+    @Timed(value = "account.service", extraTags = {"operation", "useBalance"})
+    @OptimisticRetry
     public TransactionDto useBalance(Long userID, String accountNumber, Long amount){
-        AccountUser user = accountUserRepository.findById(userID)
-                .orElseThrow(() -> new AccountException(ErrorCode.USER_NOT_FOUND));
-        Account account = accountRepositoy.findByAccountNumber(accountNumber)
+        if (ownedByEngine(accountNumber)) {
+            TransactionDto transactionDto = useBalanceInEngine(userID, accountNumber, amount);
+            recentTransactionCache.put(transactionDto);
+            return transactionDto;
+        }
+
+        Transaction transaction = transactionLedgerWriter.append(
+                () -> useBalanceByMode(userID, accountNumber, amount));
+        accountCache.evictAccount(accountNumber);
+        readYourWritesTracker.recordWrite(userID);
+
+        TransactionDto transactionDto = TransactionDto.fromEntity(transaction, accountNumber);
+        recentTransactionCache.put(transactionDto);
+        return transactionDto;
+    }
+
+    // Redis 또는 메모리 엔진이 잔액 기준인 계좌. 둘 다 켜져 있으면 Redis 가 우선한다.
+    private boolean ownedByEngine(String accountNumber) {
+        return redisBalanceAuthority.owns(accountNumber) || balanceEngine.owns(accountNumber);
+    }
+
+    // DB 반영은 엔진이 나중에 하므로 계좌 캐시는 엔진이 반영한 뒤 무효화한다.
+    private TransactionDto useBalanceInEngine(Long userID, String accountNumber, Long amount) {
+        Transaction transaction;
+        try {
+            transaction = redisBalanceAuthority.owns(accountNumber)
+                    ? redisBalanceAuthority.useBalance(userID, accountNumber, amount)
+                    : balanceEngine.useBalance(userID, accountNumber, amount);
+        } catch (AccountException e) {
+            if (e.getErrorCode() == ErrorCode.USER_ACCOUNT_UN_MATCHED && !accountUserRepository.existsById(userID)) {
+                throw new AccountException(ErrorCode.USER_NOT_FOUND);
+            }
+            throw e;
+        }
+
+        return TransactionDto.fromEntity(transaction, accountNumber);
+    }
+
+    /**
+     * 여러 건의 잔액 사용을 한 번에 처리한다.
+     * 계좌별로 묶어 요청 순서대로 적용하고, 건별 성공(S)/실패(F) 결과를 요청 순서대로 돌려준다.
+     * 모든 거래 기록은 한 트랜잭션에서 batch insert 로 저장된다.
+     * 엔진이 소유한 계좌는 한 번만 처리하고, 충돌 시 다시 실행하는 것은 DB 단계(useBalanceBatchInDb)뿐이다.
+     */
+    @Timed(value = "account.service", extraTags = {"operation", "useBalanceBatch"})
+    public List<TransactionDto> useBalanceBatch(List<UseBalance.Request> requests) {
+        Map<String, List<Integer>> indexesByAccount = new TreeMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            indexesByAccount.computeIfAbsent(requests.get(i).getAccountNumber(), key -> new ArrayList<>())
+                    .add(i);
+        }
+
+        TransactionDto[] results = new TransactionDto[requests.size()];
+        useBalanceBatchInEngine(requests, indexesByAccount, results);
+        if (!indexesByAccount.isEmpty()) {
+            self.useBalanceBatchInDb(requests, indexesByAccount, results);
+        }
+        indexesByAccount.keySet().forEach(accountCache::evictAccount);
+        // 엔진 계좌의 쓰기는 엔진이 DB 에 반영할 때 기록한다.
+        indexesByAccount.values().stream()
+                .flatMap(List::stream)
+                .map(index -> requests.get(index).getUserID())
+                .distinct()
+                .forEach(readYourWritesTracker::recordWrite);
+        Arrays.stream(results)
+                .filter(result -> result.getTransactionResultType() == S)
+                .forEach(recentTransactionCache::put);
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 엔진이 소유하지 않은 계좌의 요청을 DB 에서 처리하고 results 의 해당 위치를 채운다.
+     * 다시 실행돼도 DB 밖에 남는 것이 없도록 이 안에서는 DB 작업만 한다.
+     */
+    @OptimisticRetry
+    public void useBalanceBatchInDb(List<UseBalance.Request> requests,
+                                    Map<String, List<Integer>> indexesByAccount,
+                                    TransactionDto[] results) {
+        Map<String, List<String>> locks = lockAccounts(indexesByAccount.keySet());
+        Set<String> lockedAccounts = locks.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toSet());
+        try {
+            transactionLedgerWriter.appendAll(() -> {
+                List<Transaction> transactions = new ArrayList<>();
+
+                indexesByAccount.forEach((accountNumber, indexes) -> {
+                    for (int index : indexes) {
+                        UseBalance.Request request = requests.get(index);
+                        if (!lockedAccounts.contains(accountNumber)) {
+                            results[index] = failedTransactionDto(request, ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                            continue;
+                        }
+                        try {
+                            Transaction transaction = useBalanceByMode(request.getUserID(), accountNumber,
+                                    request.getAmount());
+                            transactions.add(transaction);
+                            results[index] = TransactionDto.fromEntity(transaction, accountNumber);
+                        } catch (AccountException e) {
+                            accountRepositoy.findBalanceByAccountNumber(accountNumber)
+                                    .ifPresent(accountBalance -> transactions.add(newTransaction(USE, F,
+                                            accountRepositoy.getById(accountBalance.getId()),
+                                            request.getAmount(), accountBalance.getBalance())));
+                            results[index] = failedTransactionDto(request, e.getErrorCode());
+                        }
+                    }
+                });
+                return transactions;
+            });
+        } finally {
+            locks.keySet().forEach(lockService::unlock);
+        }
+    }
+
+    // 엔진이 소유한 계좌의 요청은 엔진에서 처리하고 DB 처리 대상에서 뺀다.
+    private void useBalanceBatchInEngine(List<UseBalance.Request> requests,
+                                         Map<String, List<Integer>> indexesByAccount,
+                                         TransactionDto[] results) {
+        Iterator<Map.Entry<String, List<Integer>>> iterator = indexesByAccount.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, List<Integer>> entry = iterator.next();
+            if (!ownedByEngine(entry.getKey())) {
+                continue;
+            }
+            for (int index : entry.getValue()) {
+                UseBalance.Request request = requests.get(index);
+                try {
+                    results[index] = useBalanceInEngine(request.getUserID(), entry.getKey(), request.getAmount());
+                } catch (AccountException e) {
+                    failedTransactionAuditor.record(USE, entry.getKey(), request.getAmount());
+                    results[index] = failedTransactionDto(request, e.getErrorCode());
+                }
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * optimistic 모드가 아니면 락 키 순서대로 락을 잡아 교착을 피한다.
+     * 같은 락을 쓰는 계좌(로컬 stripe 를 같이 쓰는 계좌)는 한 번만 잠근다.
+     * @return 락을 잡은 계좌번호 -> 그 락으로 보호되는 계좌들. 락을 못 잡은 계좌는 빠지고 그 요청은 실패 처리한다.
+     */
+    private Map<String, List<String>> lockAccounts(Set<String> accountNumbers) {
+        Map<String, List<String>> accountsByLockKey = new TreeMap<>();
+        for (String accountNumber : accountNumbers) {
+            String lockKey = concurrencyMode == ConcurrencyMode.OPTIMISTIC
+                    ? accountNumber
+                    : lockService.lockKey(accountNumber);
+            accountsByLockKey.computeIfAbsent(lockKey, key -> new ArrayList<>()).add(accountNumber);
+        }
+
+        Map<String, List<String>> locks = new LinkedHashMap<>();
+        for (List<String> sharingAccounts : accountsByLockKey.values()) {
+            String accountNumber = sharingAccounts.get(0);
+            if (concurrencyMode != ConcurrencyMode.OPTIMISTIC) {
+                try {
+                    lockService.lock(accountNumber);
+                } catch (AccountException e) {
+                    log.error("배치 처리 중 계좌 락을 얻지 못했습니다. {}", sharingAccounts);
+                    continue;
+                }
+            }
+            locks.put(accountNumber, sharingAccounts);
+        }
+        return locks;
+    }
+
+    private TransactionDto failedTransactionDto(UseBalance.Request request, ErrorCode errorCode) {
+        return TransactionDto.builder()
+                .accountNumber(request.getAccountNumber())
+                .transactionType(USE)
+                .transactionResultType(F)
+                .amount(request.getAmount())
+                .transactedAt(LocalDateTime.now())
+                .errorCode(errorCode)
+                .build();
+    }
+
+    private Transaction useBalanceByMode(Long userID, String accountNumber, Long amount) {
+        return concurrencyMode == ConcurrencyMode.OPTIMISTIC
+                ? useBalanceWithVersion(userID, accountNumber, amount)
+                : useBalanceAtomically(userID, accountNumber, amount);
+    }
+
+    // 소유주 확인까지 조건부 UPDATE 한 번으로 처리하고, 실패한 경우에만 계좌/사용자를 읽어 원인을 찾는다.
+    private Transaction useBalanceAtomically(Long userID, String accountNumber, Long amount) {
+        if (accountRepositoy.useBalance(accountNumber, userID, amount, LocalDateTime.now()) == 0) {
+            Account account = findAccount(userID, accountNumber);
+            validateBalance(userID, account, amount);
+            throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+        }
+
+        AccountBalance accountBalance = accountRepositoy.findBalanceByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
-        validateBalance(user, account, amount);
 
-        account.useBalance(amount);
+        return newTransaction(USE, S, accountRepositoy.getById(accountBalance.getId()),
+                amount, accountBalance.getBalance());
+    }
+
+    // 락 없이 엔티티를 수정하고, 커밋 시 @Version 이 다르면 OptimisticRetry 가 다시 실행한다.
+    private Transaction useBalanceWithVersion(Long userID, String accountNumber, Long amount) {
+        Account account = findAccount(userID, accountNumber);
+        validateBalance(userID, account, amount);
 
-        Transaction transaction = transactionRepository.save(
-                Transaction.builder()
-                        .transactionType(USE)
-                        .transactionResultType(S)
-                        .account(account)
-                        .amount(amount)
-                        .balanceSnapshot(account.getBalance())
-                        .transactionID(UUID.randomUUID().toString().replace("-", ""))
-                        .transactedAt(LocalDateTime.now())
-                        .build()
-        );
+        account.useBalance(amount);
 
-        return TransactionDto.fromEntity(transaction);
-        //Long accountBalance = account.getBalance();
-        //account.setBalance(accountBalance - amount);
+        return newTransaction(USE, S, account, amount, account.getBalance());
     }
 
     /**
@@ -71,34 +305,224 @@ public class TransactionService {
      *
      */
 
-    private void validateBalance(AccountUser user, Account account, Long amount) {
-        if(!Objects.equals(user.getID(), account.getAccountUser().getID())){
-            throw  new AccountException(ErrorCode.USER_ACCOUNT_UN_MATCHED);
+    private void validateBalance(Long userID, Account account, Long amount) {
+        if(!Objects.equals(userID, account.getAccountUser().getID())){
+            throw  new AccountException(accountUserRepository.existsById(userID)
+                    ? ErrorCode.USER_ACCOUNT_UN_MATCHED : ErrorCode.USER_NOT_FOUND);
         }
         if(account.getAccountStatus() != AccountStatus.IN_USE){
             throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
         }
-        if(account.getBalance() < amount){
+        if(account.getAvailableBalance() < amount){
             throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
         }
     }
 
+    // 계좌가 없으면 사용자가 있는지 확인해 USER_NOT_FOUND 와 ACCOUNT_NOT_FOUND 를 구분한다.
+    private Account findAccount(Long userID, String accountNumber) {
+        return accountRepositoy.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(accountUserRepository.existsById(userID)
+                        ? ErrorCode.ACCOUNT_NOT_FOUND : ErrorCode.USER_NOT_FOUND));
+    }
+
+    /**
+     * 잔액 사용을 취소한다.
+     * 원거래는 transactionID 인덱스로 찾고, 잔액은 조건부 UPDATE 한 번으로 되돌린다.
+     */
+    @Timed(value = "account.service", extraTags = {"operation", "cancelBalance"})
+    @OptimisticRetry
+    public TransactionDto cancelBalance(String transactionID, String accountNumber, Long amount){
+        AtomicLong canceledVersion = new AtomicLong();
+        Transaction transaction;
+        try {
+            transaction = transactionLedgerWriter.append(
+                    () -> cancelBalanceByMode(transactionID, accountNumber, amount, canceledVersion));
+        } catch (DataIntegrityViolationException e) {
+            // 같은 거래를 동시에 취소하면 늦은 쪽은 원거래 유니크 제약(uk_transaction_original_transaction_id)에서 걸린다.
+            if (transactionRepository.existsByOriginalTransactionID(transactionID)) {
+                throw new AccountException(ErrorCode.TRANSACTION_ALREADY_CANCELED);
+            }
+            throw e;
+        }
+        redisBalanceAuthority.credit(accountNumber, amount, canceledVersion.get());
+        balanceEngine.credit(accountNumber, amount, canceledVersion.get());
+        accountCache.evictAccount(accountNumber);
+
+        TransactionDto transactionDto = TransactionDto.fromEntity(transaction, accountNumber);
+        recentTransactionCache.put(transactionDto);
+        return transactionDto;
+    }
+
+    private Transaction cancelBalanceByMode(String transactionID, String accountNumber, Long amount,
+                                            AtomicLong canceledVersion) {
+        Transaction originalTransaction = transactionRepository.findByTransactionID(transactionID)
+                .orElseThrow(() -> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
+        validateCancelBalance(originalTransaction, accountNumber, amount);
+
+        Transaction transaction;
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            Account account = originalTransaction.getAccount();
+            if (account.getAccountStatus() != AccountStatus.IN_USE) {
+                throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+            }
+            account.cancelBalance(amount);
+            // 엔진이 취소 금액을 한 번만 더하도록 취소를 반영한 version 을 알아 둔다.
+            accountRepositoy.flush();
+            canceledVersion.set(account.getVersion());
+            transaction = newTransaction(CANCELED, S, account, amount, account.getBalance());
+        } else {
+            if (accountRepositoy.cancelBalance(accountNumber, amount, LocalDateTime.now()) == 0) {
+                throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+            }
+            AccountBalance accountBalance = accountRepositoy.findBalanceByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+            canceledVersion.set(accountBalance.getVersion());
+            transaction = newTransaction(CANCELED, S, accountRepositoy.getById(accountBalance.getId()),
+                    amount, accountBalance.getBalance());
+        }
+        transaction.setOriginalTransactionID(transactionID);
+        // 트랜잭션 안에서 기록해 커밋된 뒤에 반영되게 한다.
+        readYourWritesTracker.recordWrite(originalTransaction.getAccount().getAccountUser().getID());
+        return transaction;
+    }
+
+    /**
+     * 1. 거래와 계좌가 일치하지 않는 경우
+     * 2. 성공한 잔액 사용 거래가 아닌 경우
+     * 3. 거래금액과 취소금액이 다른 경우(부분 취소 불가)
+     * 4. 이미 취소된 거래인 경우
+     */
+    private void validateCancelBalance(Transaction transaction, String accountNumber, Long amount) {
+        if(!Objects.equals(transaction.getAccount().getAccountNumber(), accountNumber)){
+            throw new AccountException(ErrorCode.TRANSACTION_ACCOUNT_UN_MATCH);
+        }
+        if(transaction.getTransactionType() != USE || transaction.getTransactionResultType() != S){
+            throw new AccountException(ErrorCode.TRANSACTION_NOT_CANCELABLE);
+        }
+        if(!Objects.equals(transaction.getAmount(), amount)){
+            throw new AccountException(ErrorCode.CANCEL_MUST_FULLY);
+        }
+        if(transactionRepository.existsByOriginalTransactionID(transaction.getTransactionID())){
+            throw new AccountException(ErrorCode.TRANSACTION_ALREADY_CANCELED);
+        }
+    }
+
+    @Timed(value = "account.service", extraTags = {"operation", "queryTransaction"})
+    public TransactionDto queryTransaction(String transactionID) {
+        TransactionDto transactionDto = recentTransactionCache.get(transactionID,
+                () -> transactionRepository.findByTransactionID(transactionID)
+                        .map(TransactionDto::fromEntity)
+                        .orElse(null));
+        if (transactionDto == null) {
+            throw new AccountException(ErrorCode.TRANSACTION_NOT_FOUND);
+        }
+        return transactionDto;
+    }
+
+    @Timed(value = "account.service", extraTags = {"operation", "getTransactionHistory"})
+    public TransactionHistory.Response getTransactionHistory(String accountNumber, String cursor, int size) {
+        Long accountId = getAccountId(accountNumber);
+        int limit = Math.max(1, Math.min(size, maxHistoryPageSize));
+        // 한 건 더 읽어 다음 페이지가 있는지 확인한다.
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+
+        List<TransactionHistoryRow> hotRows;
+        TransactionHistory.Cursor after = cursor == null ? null : TransactionHistory.Cursor.decode(cursor);
+        if (after == null) {
+            hotRows = transactionRepository.findHistory(accountId, pageRequest);
+        } else {
+            hotRows = transactionRepository.findHistoryAfter(accountId, after.getTransactedAt(), after.getId(),
+                    pageRequest);
+        }
+        // 보관된 거래와 합친다. 테이블과 보관 파일 모두 최신순이므로 앞에서부터 limit + 1 건만 고른다.
+        List<TransactionHistoryRow> rows = new ArrayList<>(limit + 1);
+        mergeNewestFirst(hotRows.iterator(), archivedHistory(accountId, after), archivedUntil(),
+                limit + 1, rows::add);
+
+        boolean hasNext = rows.size() > limit;
+        List<TransactionHistoryRow> page = hasNext ? rows.subList(0, limit) : rows;
+        return TransactionHistory.Response.builder()
+                .transactions(page.stream().map(TransactionHistory.Item::from).collect(Collectors.toList()))
+                .nextCursor(hasNext ? TransactionHistory.Cursor.of(page.get(limit - 1)).encode() : null)
+                .build();
+    }
+
+    // 전체 내역을 한 건씩 넘긴다. 목록을 만들지 않으므로 내역 크기와 관계없이 메모리 사용량이 일정하다.
+    @Timed(value = "account.service", extraTags = {"operation", "exportTransactionHistory"})
     @Transactional
-    public void saveFailedUseTransaction(String accountNumber, Long amount) {
-        Account account = accountRepositoy.findByAccountNumber(accountNumber)
+    public void exportTransactionHistory(String accountNumber, Consumer<TransactionHistory.Item> consumer) {
+        Long accountId = getAccountId(accountNumber);
+        try (Stream<TransactionHistoryRow> rows = transactionRepository.streamHistory(accountId)) {
+            mergeNewestFirst(rows.iterator(), archivedHistory(accountId, null), archivedUntil(), Long.MAX_VALUE,
+                    row -> consumer.accept(TransactionHistory.Item.from(row)));
+        }
+    }
+
+    private Iterator<TransactionHistoryRow> archivedHistory(Long accountId, TransactionHistory.Cursor after) {
+        if (!transactionArchive.isEnabled()) {
+            return Collections.emptyIterator();
+        }
+        return after == null
+                ? transactionArchive.history(accountId, null, null)
+                : transactionArchive.history(accountId, after.getTransactedAt(), after.getId());
+    }
+
+    private LocalDateTime archivedUntil() {
+        return transactionArchive.isEnabled() ? transactionArchive.newestTransactedAt() : null;
+    }
+
+    // 최신순으로 정렬된 두 목록에서 더 최신인 쪽을 차례로 꺼내 limit 건까지 넘긴다.
+    // 보관 파일은 테이블 거래가 다 떨어지거나 보관된 가장 최근 거래(archivedUntil)보다 오래된 거래가 나올 때에야 읽는다.
+    private static void mergeNewestFirst(Iterator<TransactionHistoryRow> hotRows,
+                                         Iterator<TransactionHistoryRow> archivedRows,
+                                         LocalDateTime archivedUntil,
+                                         long limit, Consumer<TransactionHistoryRow> consumer) {
+        TransactionHistoryRow hotRow = hotRows.hasNext() ? hotRows.next() : null;
+        TransactionHistoryRow archivedRow = null;
+        for (long count = 0; count < limit; count++) {
+            boolean hotRowIsNewer = hotRow != null
+                    && (archivedUntil == null || hotRow.getTransactedAt().isAfter(archivedUntil));
+            if (archivedRow == null && !hotRowIsNewer && archivedRows.hasNext()) {
+                archivedRow = archivedRows.next();
+            }
+            if (hotRow == null && archivedRow == null) {
+                return;
+            }
+            if (archivedRow == null || (hotRow != null && NEWEST_FIRST.compare(hotRow, archivedRow) <= 0)) {
+                consumer.accept(hotRow);
+                hotRow = hotRows.hasNext() ? hotRows.next() : null;
+            } else {
+                consumer.accept(archivedRow);
+                archivedRow = null;
+            }
+        }
+    }
+
+    private Long getAccountId(String accountNumber) {
+        return accountRepositoy.findIdByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+    }
+
+    // 실패 시점의 잔액만 읽고 저장은 백그라운드에서 모아 하므로 오류 응답을 늦추지 않는다.
+    public void saveFailedUseTransaction(String accountNumber, Long amount) {
+        failedTransactionAuditor.record(USE, accountNumber, amount);
+    }
 
-        transactionRepository.save(
-                Transaction.builder()
-                        .transactionType(USE)
-                        .transactionResultType(F)
-                        .account(account)
-                        .amount(amount)
-                        .balanceSnapshot(account.getBalance())
-                        .transactionID(UUID.randomUUID().toString().replace("-", ""))
-                        .transactedAt(LocalDateTime.now())
-                        .build()
-        );
+    public void saveFailedCancelTransaction(String accountNumber, Long amount) {
+        failedTransactionAuditor.record(CANCELED, accountNumber, amount);
+    }
 
+    private Transaction newTransaction(TransactionType transactionType,
+                                       TransactionResultType transactionResultType,
+                                       Account account, Long amount, Long balanceSnapshot) {
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .account(account)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactionID(UUID.randomUUID().toString().replace("-", ""))
+                .transactedAt(LocalDateTime.now())
+                .build();
     }
 }
@@ -0,0 +1,5 @@
+package com.example.account.type;
+
+public enum ConcurrencyMode {
+    LOCK, OPTIMISTIC
+}
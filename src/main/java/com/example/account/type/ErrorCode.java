@@ -12,7 +12,25 @@ public enum ErrorCode {
     USER_ACCOUNT_UN_MATCHED("사용자와 계좌의 소유주가 다릅니다."),
     ACCOUNT_ALREADY_UNREGISTERED("이미 해지된 계좌입니다."),
     AMOUNT_EXCEED_BALANCE("거래 금액이 잔액보다 많습니다"),
-    BALANCE_OVER_ZERO("잔액이 남아있는 계좌는 해지할 수 없습니다.")
+    BALANCE_OVER_ZERO("잔액이 남아있는 계좌는 해지할 수 없습니다."),
+    ACCOUNT_NUMBER_UNAVAILABLE("계좌번호를 발급할 수 없습니다."),
+    ACCOUNT_TRANSACTION_LOCK("해당 계좌는 사용 중입니다."),
+    ACCOUNT_TRANSACTION_CONFLICT("동시에 처리된 거래가 있어 다시 시도해 주세요."),
+    TRANSACTION_NOT_FOUND("해당 거래가 없습니다."),
+    TRANSACTION_ACCOUNT_UN_MATCH("이 거래는 해당 계좌에서 발생한 거래가 아닙니다."),
+    TRANSACTION_NOT_CANCELABLE("성공한 잔액 사용 거래만 취소할 수 있습니다."),
+    TRANSACTION_ALREADY_CANCELED("이미 취소된 거래입니다."),
+    CANCEL_MUST_FULLY("부분 취소는 허용되지 않습니다."),
+    IDEMPOTENT_REQUEST_IN_PROGRESS("같은 Idempotency-Key 의 요청을 처리하고 있습니다. 잠시 후 다시 시도해 주세요."),
+    IDEMPOTENCY_KEY_REUSED("같은 Idempotency-Key 로 내용이 다른 요청을 보낼 수 없습니다."),
+    INVALID_TRANSACTION_CURSOR("거래 내역 cursor 가 올바르지 않습니다."),
+    HOLD_NOT_FOUND("해당 홀드가 없습니다."),
+    HOLD_ACCOUNT_UN_MATCH("이 홀드는 해당 계좌의 홀드가 아닙니다."),
+    HOLD_ALREADY_COMPLETED("이미 확정되었거나 해제된 홀드입니다."),
+    HOLD_EXPIRED("만료된 홀드입니다."),
+    CAPTURE_EXCEED_HOLD("확정 금액이 홀드 금액보다 많습니다."),
+    HOLD_NOT_SUPPORTED("잔액 엔진이 처리하는 계좌는 홀드할 수 없습니다."),
+    INVALID_STATEMENT_PERIOD("거래명세 기간이 올바르지 않습니다.")
     ;
 
     private final String description;
@@ -0,0 +1,8 @@
+package com.example.account.type;
+
+public enum HoldStatus {
+    HELD,
+    CAPTURED,
+    RELEASED,
+    EXPIRED
+}
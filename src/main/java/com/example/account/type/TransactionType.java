@@ -1,5 +1,6 @@
 package com.example.account.type;
 
 public enum TransactionType {
-    USE, CANCELED
+    // 저널이 순서(ordinal)로 저장하므로 새 값은 끝에 붙인다.
+    USE, CANCELED, HOLD, RELEASED
 }
@@ -0,0 +1,159 @@
+package com.example.account.allocator;
+
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RFuture;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountNumberAllocatorTest {
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private RAtomicLong counter;
+
+    @InjectMocks
+    private AccountNumberAllocator accountNumberAllocator;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(accountNumberAllocator, "blockSize", 4);
+        ReflectionTestUtils.setField(accountNumberAllocator, "reserveTimeoutMillis", 1000L);
+        given(redissonClient.getAtomicLong("account:number:sequence"))
+                .willReturn(counter);
+    }
+
+    @Test
+    @DisplayName("카운터가 DB 의 마지막 계좌번호보다 뒤처져 있으면 그 뒤로 맞춤")
+    void alignCounterMovesForward() {
+        //given
+        given(accountRepository.findMaxAccountNumber())
+                .willReturn(Optional.of("1000000041"));
+        given(counter.get())
+                .willReturn(10L);
+        given(counter.compareAndSet(10L, 42L))
+                .willReturn(true);
+
+        //when
+        accountNumberAllocator.alignCounter();
+
+        //then
+        verify(counter, times(1)).compareAndSet(10L, 42L);
+    }
+
+    @Test
+    @DisplayName("카운터가 이미 앞서 있으면 되돌리지 않음")
+    void alignCounterNeverMovesBackward() {
+        //given
+        given(accountRepository.findMaxAccountNumber())
+                .willReturn(Optional.of("1000000041"));
+        given(counter.get())
+                .willReturn(100L);
+
+        //when
+        accountNumberAllocator.alignCounter();
+
+        //then
+        verify(counter, never()).compareAndSet(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("구간 안에서 차례로 발급하고, 절반 이하로 남으면 다음 구간을 미리 예약")
+    void nextIssuesSequentiallyAndPrefetches() {
+        //given
+        RFuture<Long> first = reserved(0L);
+        RFuture<Long> second = reserved(4L);
+        given(counter.getAndAddAsync(4L))
+                .willReturn(first, second);
+
+        //when
+        List<String> issued = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            issued.add(accountNumberAllocator.next());
+        }
+
+        //then
+        assertEquals(List.of("1000000000", "1000000001", "1000000002", "1000000003", "1000000004"), issued);
+        verify(counter, times(2)).getAndAddAsync(4L);
+    }
+
+    @Test
+    @DisplayName("다시 맞추면 들고 있던 구간을 버리고 DB 뒤의 새 구간에서 발급")
+    void realignDiscardsCurrentBlock() {
+        //given
+        RFuture<Long> stale = reserved(0L);
+        RFuture<Long> fresh = reserved(11L);
+        given(counter.getAndAddAsync(4L))
+                .willReturn(stale, fresh);
+        given(accountRepository.findMaxAccountNumber())
+                .willReturn(Optional.of("1000000010"));
+        given(counter.get())
+                .willReturn(4L);
+        given(counter.compareAndSet(4L, 11L))
+                .willReturn(true);
+        assertEquals("1000000000", accountNumberAllocator.next());
+
+        //when
+        accountNumberAllocator.realign();
+
+        //then
+        assertEquals("1000000011", accountNumberAllocator.next());
+        verify(counter, times(1)).compareAndSet(4L, 11L);
+    }
+
+    @Test
+    @DisplayName("구간 예약에 실패하면 계좌번호 발급 불가")
+    @SuppressWarnings("unchecked")
+    void nextFailsWhenReservationFails() {
+        //given
+        RFuture<Long> failed = mock(RFuture.class);
+        CompletableFuture<Long> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new IllegalStateException("redis down"));
+        given(failed.toCompletableFuture())
+                .willReturn(failure);
+        given(counter.getAndAddAsync(4L))
+                .willReturn(failed);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountNumberAllocator.next());
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_NUMBER_UNAVAILABLE, exception.getErrorCode());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RFuture<Long> reserved(long offset) {
+        RFuture<Long> future = mock(RFuture.class);
+        given(future.toCompletableFuture())
+                .willReturn(CompletableFuture.completedFuture(offset));
+        return future;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.account.aop;
+
+import com.example.account.dto.UseBalance;
+import com.example.account.exception.IdempotencyKeyReusedException;
+import com.example.account.idempotency.LocalIdempotencyStore;
+import com.example.account.type.TransactionResultType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyAspectTest {
+    @Mock
+    private ProceedingJoinPoint pjp;
+
+    @Mock
+    private MethodSignature signature;
+
+    private LocalIdempotencyStore idempotencyStore;
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyAspect idempotencyAspect;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() throws NoSuchMethodException {
+        idempotencyStore = new LocalIdempotencyStore(60_000, 100);
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyAspect = new IdempotencyAspect(
+                idempotencyStore,
+                new ObjectMapper().registerModule(new JavaTimeModule()),
+                meterRegistry,
+                1000,
+                10_000);
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        lenient().when(pjp.getSignature()).thenReturn(signature);
+        lenient().when(pjp.getArgs()).thenReturn(args(12L, 1000L));
+        lenient().when(signature.getMethod())
+                .thenReturn(Object.class.getMethod("toString"));
+        lenient().when(signature.getReturnType()).thenReturn((Class) UseBalance.Response.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        idempotencyAspect.stop();
+    }
+
+    @Test
+    @DisplayName("같은 Idempotency-Key 의 요청은 한 번만 처리")
+    void duplicateRequestReturnsStoredResponse() throws Throwable {
+        //given
+        request.addHeader(IdempotencyAspect.HEADER, "key-1");
+        given(pjp.proceed()).willReturn(UseBalance.Response.builder()
+                .accountNumber("1000000012")
+                .transactionResult(TransactionResultType.S)
+                .transactionID("transactionId")
+                .amount(1000L)
+                .build());
+
+        //when
+        UseBalance.Response first = (UseBalance.Response) idempotencyAspect.aroundMethod(pjp);
+        UseBalance.Response second = (UseBalance.Response) idempotencyAspect.aroundMethod(pjp);
+
+        //then
+        verify(pjp, times(1)).proceed();
+        assertEquals("transactionId", first.getTransactionID());
+        assertEquals("transactionId", second.getTransactionID());
+        assertEquals(1000L, second.getAmount());
+    }
+
+    @Test
+    @DisplayName("실패한 요청은 같은 키로 다시 처리")
+    void failedRequestIsNotStored() throws Throwable {
+        //given
+        request.addHeader(IdempotencyAspect.HEADER, "key-2");
+        given(pjp.proceed())
+                .willThrow(new IllegalStateException())
+                .willReturn(UseBalance.Response.builder().transactionID("transactionId").build());
+
+        //when
+        assertThrows(IllegalStateException.class, () -> idempotencyAspect.aroundMethod(pjp));
+        UseBalance.Response retried = (UseBalance.Response) idempotencyAspect.aroundMethod(pjp);
+
+        //then
+        verify(pjp, times(2)).proceed();
+        assertEquals("transactionId", retried.getTransactionID());
+    }
+
+    @Test
+    @DisplayName("Idempotency-Key 가 없으면 매번 처리")
+    void requestWithoutKey() throws Throwable {
+        //given
+        given(pjp.proceed()).willReturn(UseBalance.Response.builder().build());
+
+        //when
+        idempotencyAspect.aroundMethod(pjp);
+        idempotencyAspect.aroundMethod(pjp);
+
+        //then
+        verify(pjp, times(2)).proceed();
+    }
+
+    @Test
+    @DisplayName("같은 키로 본문이 다른 요청 - 422 로 거절")
+    void reusedKeyWithDifferentBody() throws Throwable {
+        //given
+        request.addHeader(IdempotencyAspect.HEADER, "key-3");
+        given(pjp.getArgs()).willReturn(args(12L, 1000L), args(12L, 2000L));
+        given(pjp.proceed()).willReturn(UseBalance.Response.builder().transactionID("transactionId").build());
+
+        //when
+        idempotencyAspect.aroundMethod(pjp);
+
+        //then
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotencyAspect.aroundMethod(pjp));
+        verify(pjp, times(1)).proceed();
+    }
+
+    @Test
+    @DisplayName("키는 사용자별로 나뉨 - 다른 사용자의 같은 키는 따로 처리")
+    void keyIsScopedByUser() throws Throwable {
+        //given
+        request.addHeader(IdempotencyAspect.HEADER, "key-4");
+        given(pjp.getArgs()).willReturn(args(12L, 1000L), args(13L, 1000L));
+        given(pjp.proceed()).willReturn(UseBalance.Response.builder().transactionID("transactionId").build());
+
+        //when
+        idempotencyAspect.aroundMethod(pjp);
+        idempotencyAspect.aroundMethod(pjp);
+
+        //then
+        verify(pjp, times(2)).proceed();
+    }
+
+    @Test
+    @DisplayName("동시에 들어온 같은 키의 요청 두 개는 한 번만 처리")
+    void concurrentRequestsCollapse() throws Throwable {
+        //given
+        request.addHeader(IdempotencyAspect.HEADER, "key-5");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(pjp.proceed()).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return UseBalance.Response.builder().transactionID("transactionId").build();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //when
+        Future<Object> first = executor.submit(() -> aroundMethodInRequest());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Object> second = executor.submit(() -> aroundMethodInRequest());
+        while (meterRegistry.counter("account.idempotency.duplicates", "result", "coalesced").count() < 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        //then
+        assertEquals("transactionId", ((UseBalance.Response) first.get(5, TimeUnit.SECONDS)).getTransactionID());
+        assertEquals("transactionId", ((UseBalance.Response) second.get(5, TimeUnit.SECONDS)).getTransactionID());
+        verify(pjp, times(1)).proceed();
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("다른 노드에서 처리하던 요청이 실패하면 기다리던 요청이 이어서 처리")
+    void waiterProceedsWhenOriginalFails() throws Throwable {
+        //given
+        request.addHeader(IdempotencyAspect.HEADER, "key-6");
+        String key = "toString:12:key-6";
+        assertTrue(idempotencyStore.tryBegin(key));
+        given(pjp.proceed()).willReturn(UseBalance.Response.builder().transactionID("transactionId").build());
+        CompletableFuture.runAsync(() -> idempotencyStore.abort(key),
+                CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+
+        //when
+        UseBalance.Response response = (UseBalance.Response) idempotencyAspect.aroundMethod(pjp);
+
+        //then
+        verify(pjp, times(1)).proceed();
+        assertEquals("transactionId", response.getTransactionID());
+    }
+
+    private Object aroundMethodInRequest() throws Exception {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            return idempotencyAspect.aroundMethod(pjp);
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private static Object[] args(Long userID, Long amount) {
+        return new Object[]{new UseBalance.Request(userID, "1000000012", amount)};
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.account.aop;
+
+import com.example.account.dto.UseBalance;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
+import com.example.account.service.LockService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class LockAopAspectTest {
+    @Mock
+    private LockService lockService;
+
+    @Mock
+    private RedisBalanceAuthority redisBalanceAuthority;
+
+    @Mock
+    private BalanceEngine balanceEngine;
+
+    @Mock
+    private ProceedingJoinPoint pjp;
+
+    @InjectMocks
+    private LockAopAspect lockAopAspect;
+
+    @Test
+    @DisplayName("DB 가 잔액 기준인 계좌는 락을 잡고 실행")
+    void lockDbAccount() throws Throwable {
+        //given
+        given(pjp.getArgs())
+                .willReturn(new Object[]{new UseBalance.Request(12L, "1000000012", 1000L)});
+        given(redisBalanceAuthority.owns("1000000012"))
+                .willReturn(false);
+        given(balanceEngine.owns("1000000012"))
+                .willReturn(false);
+        given(pjp.proceed())
+                .willReturn("done");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(pjp, accountLock("use"));
+
+        //then
+        assertEquals("done", result);
+        InOrder inOrder = inOrder(lockService, pjp);
+        inOrder.verify(lockService).lock("1000000012");
+        inOrder.verify(pjp).proceed();
+        inOrder.verify(lockService).unlock("1000000012");
+    }
+
+    @Test
+    @DisplayName("메모리 엔진 계좌의 잔액 사용은 계좌 락을 잡지 않음")
+    void skipLockForEngineAccount() throws Throwable {
+        //given
+        given(pjp.getArgs())
+                .willReturn(new Object[]{new UseBalance.Request(12L, "1000000099", 1000L)});
+        given(redisBalanceAuthority.owns("1000000099"))
+                .willReturn(false);
+        given(balanceEngine.owns("1000000099"))
+                .willReturn(true);
+        given(pjp.proceed())
+                .willReturn("done");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(pjp, accountLock("use"));
+
+        //then
+        assertEquals("done", result);
+        verifyNoInteractions(lockService);
+    }
+
+    @Test
+    @DisplayName("메모리 엔진 계좌라도 DB 경로 요청은 락을 잡음")
+    void lockEngineAccountOnDbPath() throws Throwable {
+        //given
+        given(pjp.getArgs())
+                .willReturn(new Object[]{new UseBalance.Request(12L, "1000000099", 1000L)});
+        given(pjp.proceed())
+                .willReturn("done");
+
+        //when
+        lockAopAspect.aroundMethod(pjp, accountLock("cancel"));
+
+        //then
+        InOrder inOrder = inOrder(lockService, pjp);
+        inOrder.verify(lockService).lock("1000000099");
+        inOrder.verify(pjp).proceed();
+        inOrder.verify(lockService).unlock("1000000099");
+        verifyNoInteractions(balanceEngine, redisBalanceAuthority);
+    }
+
+    private static AccountLock accountLock(String method) throws NoSuchMethodException {
+        return LockAopAspectTest.class.getDeclaredMethod(method).getAnnotation(AccountLock.class);
+    }
+
+    @AccountLock
+    private static void use() {
+    }
+
+    @AccountLock(dbPath = true)
+    private static void cancel() {
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.account.aop;
+
+import com.example.account.cache.AccountCache;
+import com.example.account.cache.RecentTransactionCache;
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.UseBalance;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
+import com.example.account.exception.AccountException;
+import com.example.account.ledger.FailedTransactionAuditor;
+import com.example.account.ledger.TransactionLedgerWriter;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.projection.AccountBalance;
+import com.example.account.service.LockService;
+import com.example.account.service.TransactionService;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class OptimisticRetryAspectTest {
+    @Mock
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    @Mock
+    private BalanceEngine balanceEngine;
+
+    @Mock
+    private RedisBalanceAuthority redisBalanceAuthority;
+
+    @Mock
+    private FailedTransactionAuditor failedTransactionAuditor;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LockService lockService;
+
+    @Mock
+    private AccountCache accountCache;
+
+    @Mock
+    private RecentTransactionCache recentTransactionCache;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @InjectMocks
+    private TransactionService transactionService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("충돌하면 성공할 때까지 다시 실행")
+    void retryUntilSuccess() throws Throwable {
+        //given
+        OptimisticRetryAspect optimisticRetryAspect = spiedAspect();
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        given(pjp.proceed())
+                .willThrow(new OptimisticLockingFailureException("conflict"))
+                .willThrow(new OptimisticLockingFailureException("conflict"))
+                .willReturn("done");
+
+        //when
+        Object result = optimisticRetryAspect.aroundMethod(pjp);
+
+        //then
+        assertEquals("done", result);
+        verify(pjp, times(3)).proceed();
+        verify(optimisticRetryAspect, times(2)).pause(anyLong());
+        assertEquals(2.0, meterRegistry.counter("account.optimistic.conflicts").count());
+        assertEquals(2.0, meterRegistry.counter("account.optimistic.retries").count());
+    }
+
+    @Test
+    @DisplayName("재시도 간격은 두 배씩 늘고 max-backoff 를 넘지 않으며, max-attempts 를 넘으면 충돌 오류")
+    void backoffAndExhaustion() throws Throwable {
+        //given
+        OptimisticRetryAspect optimisticRetryAspect = spiedAspect();
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        given(pjp.proceed())
+                .willThrow(new OptimisticLockingFailureException("conflict"));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> optimisticRetryAspect.aroundMethod(pjp));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_CONFLICT, exception.getErrorCode());
+        verify(pjp, times(5)).proceed();
+        ArgumentCaptor<Long> pauses = ArgumentCaptor.forClass(Long.class);
+        verify(optimisticRetryAspect, times(4)).pause(pauses.capture());
+        // 간격 4, 8, 10, 10 에 지터를 섞어 [간격/2, 간격] 사이에서 기다린다.
+        long[] backoffs = {4, 8, 10, 10};
+        for (int i = 0; i < backoffs.length; i++) {
+            long pause = pauses.getAllValues().get(i);
+            assertTrue(pause >= backoffs[i] / 2 && pause <= backoffs[i],
+                    "pause " + i + " was " + pause + "ms");
+        }
+        assertEquals(5.0, meterRegistry.counter("account.optimistic.conflicts").count());
+        assertEquals(4.0, meterRegistry.counter("account.optimistic.retries").count());
+    }
+
+    @Test
+    @DisplayName("충돌이 아닌 예외는 다시 실행하지 않음")
+    void otherExceptionIsNotRetried() throws Throwable {
+        //given
+        OptimisticRetryAspect optimisticRetryAspect = spiedAspect();
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        given(pjp.proceed())
+                .willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> optimisticRetryAspect.aroundMethod(pjp));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+        verify(pjp, times(1)).proceed();
+        verify(optimisticRetryAspect, never()).pause(anyLong());
+    }
+
+    @Test
+    @DisplayName("잔액 사용을 다시 실행해도 캐시/read-your-writes 는 성공한 한 번만 반영")
+    void retriedUseBalanceHasNoRepeatedSideEffects() {
+        //given
+        given(transactionLedgerWriter.append(any()))
+                .willThrow(new OptimisticLockingFailureException("conflict"))
+                .willThrow(new OptimisticLockingFailureException("conflict"))
+                .willReturn(Transaction.builder()
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionID("transactionId")
+                        .amount(1000L)
+                        .balanceSnapshot(9000L)
+                        .transactedAt(LocalDateTime.now())
+                        .build());
+
+        //when
+        TransactionDto transactionDto = retrying(transactionService).useBalance(12L, "1000000012", 1000L);
+
+        //then
+        assertEquals("transactionId", transactionDto.getTransactionID());
+        verify(transactionLedgerWriter, times(3)).append(any());
+        verify(accountCache, times(1)).evictAccount("1000000012");
+        verify(readYourWritesTracker, times(1)).recordWrite(12L);
+        verify(recentTransactionCache, times(1)).put(any());
+        verify(failedTransactionAuditor, never()).record(any(), anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("일괄 잔액 사용 - DB 단계만 다시 실행하고 엔진 계좌는 한 번만 처리")
+    @SuppressWarnings("unchecked")
+    void retriedBatchRunsEngineOnce() {
+        //given
+        TransactionService proxy = retrying(transactionService);
+        ReflectionTestUtils.setField(transactionService, "self", proxy);
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(balanceEngine.owns(anyString()))
+                .willAnswer(invocation -> "1000000099".equals(invocation.getArgument(0)));
+        given(balanceEngine.useBalance(12L, "1000000099", 300L))
+                .willReturn(Transaction.builder()
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionID("engineTransactionId")
+                        .amount(300L)
+                        .balanceSnapshot(700L)
+                        .build());
+        given(lockService.lockKey("1000000012"))
+                .willReturn("1000000012");
+        given(transactionLedgerWriter.appendAll(any()))
+                .willThrow(new OptimisticLockingFailureException("conflict"))
+                .willAnswer(invocation -> ((Supplier<List<Transaction>>) invocation.getArgument(0)).get());
+        given(accountRepository.useBalance(eq("1000000012"), anyLong(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber("1000000012"))
+                .willReturn(Optional.of(balance(1L, 500L)));
+        given(accountRepository.getById(1L))
+                .willReturn(account);
+
+        //when
+        List<TransactionDto> results = proxy.useBalanceBatch(Arrays.asList(
+                new UseBalance.Request(12L, "1000000099", 300L),
+                new UseBalance.Request(12L, "1000000012", 500L)
+        ));
+
+        //then
+        assertEquals(S, results.get(0).getTransactionResultType());
+        assertEquals(S, results.get(1).getTransactionResultType());
+        verify(transactionLedgerWriter, times(2)).appendAll(any());
+        verify(balanceEngine, times(1)).useBalance(12L, "1000000099", 300L);
+        verify(lockService, times(2)).lock("1000000012");
+        verify(lockService, times(2)).unlock("1000000012");
+        verify(recentTransactionCache, times(2)).put(any());
+    }
+
+    // 대기 시간을 기록만 하고 실제로는 기다리지 않는다.
+    private OptimisticRetryAspect spiedAspect() throws InterruptedException {
+        OptimisticRetryAspect optimisticRetryAspect = spy(aspect(4L, 10L));
+        doNothing().when(optimisticRetryAspect).pause(anyLong());
+        return optimisticRetryAspect;
+    }
+
+    private OptimisticRetryAspect aspect(long initialBackoffMillis, long maxBackoffMillis) {
+        OptimisticRetryAspect optimisticRetryAspect = new OptimisticRetryAspect(meterRegistry);
+        ReflectionTestUtils.setField(optimisticRetryAspect, "maxAttempts", 5);
+        ReflectionTestUtils.setField(optimisticRetryAspect, "initialBackoffMillis", initialBackoffMillis);
+        ReflectionTestUtils.setField(optimisticRetryAspect, "maxBackoffMillis", maxBackoffMillis);
+        return optimisticRetryAspect;
+    }
+
+    // @OptimisticRetry 메서드를 실제 aspect 로 감싼 프록시
+    private TransactionService retrying(TransactionService target) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(aspect(1L, 1L));
+        return proxyFactory.getProxy();
+    }
+
+    private static AccountBalance balance(Long id, Long balance) {
+        return new AccountBalance() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getAccountNumber() {
+                return null;
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+
+            @Override
+            public Long getVersion() {
+                return 1L;
+            }
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.account.archive;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.journal.JournalRecord;
+import com.example.account.repository.projection.TransactionHistoryRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionArchiveTest {
+    private static final LocalDate DAY = LocalDate.of(2022, 1, 10);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("보관한 거래를 계좌별로 최신순으로 읽고 cursor 이전부터 이어 읽음")
+    void historyNewestFirst() throws Exception {
+        //given
+        TransactionArchive archive = archive();
+        archive.publish(archive.write(DAY, records(1, 6, DAY)));
+        archive.publish(archive.write(DAY.plusDays(1), records(7, 12, DAY.plusDays(1))));
+
+        //when
+        List<Long> all = ids(archive.history(12L, null, null));
+        TransactionHistoryRow fourth = rows(archive.history(12L, null, null)).get(3);
+        List<Long> afterFourth = ids(archive.history(12L, fourth.getTransactedAt(), fourth.getId()));
+
+        //then
+        // 짝수 id 는 12번 계좌, 홀수 id 는 13번 계좌
+        assertEquals(List.of(12L, 10L, 8L, 6L, 4L, 2L), all);
+        assertEquals(List.of(4L, 2L), afterFourth);
+        assertEquals("txid-6", fourth.getTransactionID());
+    }
+
+    @Test
+    @DisplayName("공개하지 않은 파일은 읽지 않고, 다시 열면 공개된 파일만 목록에 올림")
+    void pendingSegmentIsInvisible() throws Exception {
+        //given
+        TransactionArchive archive = archive();
+        archive.publish(archive.write(DAY, records(1, 4, DAY)));
+        Path temp = archive.write(DAY.plusDays(1), records(5, 8, DAY.plusDays(1)));
+
+        //when
+        TransactionArchive reopened = archive();
+
+        //then
+        assertEquals(List.of(4L, 2L), ids(reopened.history(12L, null, null)));
+        assertEquals(List.of(temp), reopened.pending());
+        assertEquals(5L, TransactionArchive.firstIdOf(temp));
+        reopened.discard(temp);
+        assertFalse(Files.exists(temp));
+    }
+
+    @Test
+    @DisplayName("다른 노드가 공유 디렉터리에 공개한 파일은 register/refresh 로 한 번만 목록에 올림")
+    void registerSegmentPublishedByOtherNode() throws Exception {
+        //given
+        TransactionArchive archiver = archive();
+        TransactionArchive reader = archive();
+        String first = archiver.publish(archiver.write(DAY, records(1, 4, DAY)));
+        archiver.publish(archiver.write(DAY.plusDays(1), records(5, 8, DAY.plusDays(1))));
+
+        //when
+        List<Long> beforeRegister = ids(reader.history(12L, null, null));
+        reader.register(first);
+        reader.register(first);
+        List<Long> afterRegister = ids(reader.history(12L, null, null));
+        reader.refresh();
+        List<Long> afterRefresh = ids(reader.history(12L, null, null));
+
+        //then
+        assertEquals(List.of(), beforeRegister);
+        assertEquals(List.of(4L, 2L), afterRegister);
+        assertEquals(List.of(8L, 6L, 4L, 2L), afterRefresh);
+    }
+
+    @Test
+    @DisplayName("계좌 id 범위 안이라도 파일에 없는 계좌는 파일을 열지 않음")
+    void skipSegmentWithoutAccount() throws Exception {
+        //given
+        TransactionArchive archive = archive();
+        String segment = archive.publish(archive.write(DAY, records(1, 4, DAY, 12L, 14L)));
+        // 파일을 열면 실패하도록 지운다.
+        Files.delete(directory.resolve(segment));
+
+        //when
+        List<Long> history = ids(archive.history(13L, null, null));
+
+        //then
+        assertEquals(List.of(), history);
+        assertEquals(DAY.atTime(9, 4), archive.newestTransactedAt());
+    }
+
+    private TransactionArchive archive() throws Exception {
+        TransactionArchive archive = new TransactionArchive();
+        ReflectionTestUtils.setField(archive, "enabled", true);
+        ReflectionTestUtils.setField(archive, "directory", directory.toString());
+        ReflectionTestUtils.setField(archive, "blockRows", 2);
+        archive.open();
+        return archive;
+    }
+
+    private static List<TransactionHistoryRow> rows(Iterator<TransactionHistoryRow> iterator) {
+        List<TransactionHistoryRow> rows = new ArrayList<>();
+        iterator.forEachRemaining(rows::add);
+        return rows;
+    }
+
+    private static List<Long> ids(Iterator<TransactionHistoryRow> iterator) {
+        return rows(iterator).stream().map(TransactionHistoryRow::getId).collect(Collectors.toList());
+    }
+
+    private static List<JournalRecord> records(int from, int to, LocalDate date) {
+        return records(from, to, date, 12L, 13L);
+    }
+
+    private static List<JournalRecord> records(int from, int to, LocalDate date, long evenAccountId, long oddAccountId) {
+        Account even = Account.builder().id(evenAccountId).accountNumber("10000000" + evenAccountId).build();
+        Account odd = Account.builder().id(oddAccountId).accountNumber("10000000" + oddAccountId).build();
+        return IntStream.rangeClosed(from, to)
+                .mapToObj(i -> Transaction.builder()
+                        .id((long) i)
+                        .account(i % 2 == 0 ? even : odd)
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .amount(1L)
+                        .balanceSnapshot(1000L - i)
+                        .transactionID("txid-" + i)
+                        .transactedAt(date.atTime(9, 0).plusMinutes(i))
+                        .build())
+                .map(transaction -> JournalRecord.of(0, transaction))
+                .collect(Collectors.toList());
+    }
+}
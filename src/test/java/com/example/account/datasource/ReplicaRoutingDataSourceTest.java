@@ -0,0 +1,105 @@
+package com.example.account.datasource;
+
+import com.example.account.type.DataSourceType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+    private static final long LAG_TOLERANCE = 1000;
+
+    @Mock
+    private DataSource primaryDataSource;
+
+    @Mock
+    private DataSource replicaDataSource;
+
+    @Mock
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    private ReadYourWritesTracker readYourWritesTracker;
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() {
+        readYourWritesTracker = new ReadYourWritesTracker(true, 60000);
+        routingDataSource = new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource,
+                replicaLagMonitor, readYourWritesTracker, LAG_TOLERANCE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_COMMITTED));
+            TransactionSynchronizationManager.clear();
+        }
+    }
+
+    @Test
+    @DisplayName("readOnly 트랜잭션만 replica 로 보냄")
+    void routeReadOnlyToReplica() {
+        //given
+        given(replicaLagMonitor.replicatedUpTo()).willReturn(System.currentTimeMillis());
+        Object write = routingDataSource.determineCurrentLookupKey();
+
+        //when
+        beginReadOnly();
+        Object read = routingDataSource.determineCurrentLookupKey();
+
+        //then
+        assertEquals(DataSourceType.PRIMARY, write);
+        assertEquals(DataSourceType.REPLICA, read);
+    }
+
+    @Test
+    @DisplayName("replica 지연이 허용치를 넘으면 primary 로 읽음")
+    void routeToPrimaryWhenReplicaLags() {
+        //given
+        given(replicaLagMonitor.replicatedUpTo()).willReturn(System.currentTimeMillis() - LAG_TOLERANCE * 5);
+
+        //when
+        beginReadOnly();
+
+        //then
+        assertEquals(DataSourceType.PRIMARY, routingDataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    @DisplayName("사용자의 마지막 쓰기가 replica 에 반영되기 전에는 그 사용자만 primary 로 읽음")
+    void readYourWrites() {
+        //given
+        long replicatedUpTo = System.currentTimeMillis() - 10;
+        given(replicaLagMonitor.replicatedUpTo()).willReturn(replicatedUpTo);
+        readYourWritesTracker.recordWrite(1L);
+
+        //when
+        beginReadOnly();
+        readYourWritesTracker.bindReader(1L);
+        Object writer = routingDataSource.determineCurrentLookupKey();
+        readYourWritesTracker.bindReader(2L);
+        Object other = routingDataSource.determineCurrentLookupKey();
+
+        //then
+        assertEquals(DataSourceType.PRIMARY, writer);
+        assertEquals(DataSourceType.REPLICA, other);
+    }
+
+    private static void beginReadOnly() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+}
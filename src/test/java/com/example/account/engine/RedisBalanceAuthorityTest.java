@@ -0,0 +1,215 @@
+package com.example.account.engine;
+
+import com.example.account.cache.AccountCache;
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.ledger.TransactionLedgerWriter;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.Redisson;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+// 두 노드가 같은 Redis(embedded)를 쓰고, DB 는 커밋된 거래와 계좌별 차감액을 모으는 가짜로 둔다.
+@ExtendWith(MockitoExtension.class)
+class RedisBalanceAuthorityTest {
+    private static final List<String> ACCOUNT_NUMBERS =
+            List.of("1000000001", "1000000002", "1000000003", "1000000004");
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    @Mock
+    private AccountCache accountCache;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    private RedisServer redisServer;
+    private RedissonClient redissonClient;
+    private final List<RedisBalanceAuthority> nodes = new ArrayList<>();
+
+    // DB: 커밋된 거래(저장된 순서대로)와 계좌별 잔액 차감액. 트랜잭션은 하나씩 커밋된다.
+    private final List<String> committed = new ArrayList<>();
+    private final Map<String, Long> appliedDeltas = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+        redissonClient = Redisson.create(config);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (RedisBalanceAuthority node : nodes) {
+            node.stop();
+        }
+        redissonClient.shutdown();
+        redisServer.stop();
+    }
+
+    @Test
+    @DisplayName("두 노드가 같은 로그를 동시에 반영해도 사용한 거래를 잃거나 두 번 반영하지 않음")
+    void concurrentWritersNeitherLoseNorRepeat() throws Exception {
+        //given
+        givenAccounts();
+        givenDatabase();
+        RedisBalanceAuthority nodeA = node();
+        RedisBalanceAuthority nodeB = node();
+        List<String> spent = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean spending = new AtomicBoolean(true);
+
+        //when
+        // writer 락을 거치지 않고 두 노드가 writeBehind 를 동시에 돌린다(락이 풀린 사이에 겹친 경우).
+        CompletableFuture<Void> writerA = CompletableFuture.runAsync(() -> writeWhile(nodeA, spending));
+        CompletableFuture<Void> writerB = CompletableFuture.runAsync(() -> writeWhile(nodeB, spending));
+        for (int i = 0; i < 400; i++) {
+            RedisBalanceAuthority node = i % 2 == 0 ? nodeA : nodeB;
+            String accountNumber = ACCOUNT_NUMBERS.get(i % ACCOUNT_NUMBERS.size());
+            spent.add(node.useBalance(12L, accountNumber, 10L).getTransactionID());
+        }
+        spending.set(false);
+        writerA.get(30, TimeUnit.SECONDS);
+        writerB.get(30, TimeUnit.SECONDS);
+        while (nodeA.writeBehind() > 0) {
+            // 남은 로그를 마저 반영한다.
+        }
+
+        //then
+        for (String accountNumber : ACCOUNT_NUMBERS) {
+            assertTrue(redissonClient.getList("account:balance-log:" + accountNumber, StringCodec.INSTANCE).isEmpty());
+        }
+        synchronized (committed) {
+            assertEquals(spent.size(), committed.size());
+            assertEquals(new HashSet<>(spent), new HashSet<>(committed));
+            for (String accountNumber : ACCOUNT_NUMBERS) {
+                assertEquals(-1000L, appliedDeltas.get(accountNumber));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("다른 노드가 writer 락을 잡고 있으면 반영하지 않고, 풀리면 반영")
+    void writerLockAllowsOneNode() throws Exception {
+        //given
+        givenAccounts();
+        RLock writerLock = redissonClient.getLock("account:balance-writer");
+        writerLock.lock();
+        RedisBalanceAuthority node = node();
+        node.useBalance(12L, "1000000001", 10L);
+
+        //when
+        CompletableFuture.runAsync(node::flush).get(5, TimeUnit.SECONDS);
+
+        //then
+        verify(transactionLedgerWriter, after(200).never()).appendAll(any());
+        writerLock.unlock();
+        verify(transactionLedgerWriter, timeout(5000).atLeastOnce()).appendAll(any());
+    }
+
+    private void writeWhile(RedisBalanceAuthority node, AtomicBoolean spending) {
+        while (spending.get()) {
+            node.writeBehind();
+        }
+    }
+
+    private RedisBalanceAuthority node() {
+        RedisBalanceAuthority node = new RedisBalanceAuthority(redissonClient, accountRepository,
+                transactionRepository, transactionLedgerWriter, accountCache, readYourWritesTracker);
+        ReflectionTestUtils.setField(node, "enabled", true);
+        ReflectionTestUtils.setField(node, "ownedAccounts", Collections.emptySet());
+        ReflectionTestUtils.setField(node, "flushIntervalMillis", 1L);
+        ReflectionTestUtils.setField(node, "flushBatchSize", 7);
+        ReflectionTestUtils.setField(node, "drainTimeoutMillis", 1000L);
+        node.start();
+        nodes.add(node);
+        return node;
+    }
+
+    private void givenAccounts() {
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willAnswer(invocation -> Optional.of(account(invocation.getArgument(0))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenDatabase() {
+        given(accountRepository.getById(anyLong()))
+                .willAnswer(invocation -> account("100000000" + invocation.getArgument(0)));
+        given(accountRepository.applyBalanceDelta(anyString(), anyLong(), any()))
+                .willAnswer(invocation -> {
+                    appliedDeltas.merge(invocation.getArgument(0), invocation.<Long>getArgument(1), Long::sum);
+                    return 1;
+                });
+        given(transactionRepository.findExistingTransactionIDs(any()))
+                .willAnswer(invocation -> {
+                    Collection<String> transactionIDs = invocation.getArgument(0);
+                    List<String> existing = new ArrayList<>(transactionIDs);
+                    existing.retainAll(new HashSet<>(committed));
+                    return existing;
+                });
+        given(transactionLedgerWriter.appendAll(any()))
+                .willAnswer(invocation -> {
+                    synchronized (committed) {
+                        List<Transaction> transactions =
+                                ((Supplier<List<Transaction>>) invocation.getArgument(0)).get();
+                        transactions.forEach(transaction -> committed.add(transaction.getTransactionID()));
+                        return transactions;
+                    }
+                });
+    }
+
+    private static Account account(String accountNumber) {
+        return Account.builder()
+                .id(Long.parseLong(accountNumber.substring(accountNumber.length() - 1)))
+                .accountUser(AccountUser.builder().ID(12L).build())
+                .accountNumber(accountNumber)
+                .accountStatus(IN_USE)
+                .balance(1_000_000L)
+                .version(0L)
+                .build();
+    }
+}
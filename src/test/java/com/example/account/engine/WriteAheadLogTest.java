@@ -0,0 +1,77 @@
+package com.example.account.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("다시 열면 checkpoint 이후의 기록만 복구")
+    void recoverUnflushedRecords() throws Exception {
+        //given
+        Path path = directory.resolve("shard-0.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, 4096)) {
+            wal.recover();
+            for (int i = 0; i < 5; i++) {
+                assertTrue(wal.tryAppend(record(wal.nextSeq(), 1000L - i)));
+            }
+            wal.force();
+            wal.checkpoint(3);
+        }
+
+        //when
+        List<WalRecord> unflushed;
+        long nextSeq;
+        try (WriteAheadLog wal = WriteAheadLog.open(path, 4096)) {
+            unflushed = wal.recover();
+            nextSeq = wal.nextSeq();
+        }
+
+        //then
+        assertEquals(2, unflushed.size());
+        assertEquals(4, unflushed.get(0).getSeq());
+        assertEquals(996L, unflushed.get(1).getBalanceSnapshot());
+        assertEquals("1000000012", unflushed.get(1).getAccountNumber());
+        assertEquals(6, nextSeq);
+    }
+
+    @Test
+    @DisplayName("가득 차면 DB 반영이 끝난 뒤에만 처음부터 다시 씀")
+    void wrapAroundAfterCheckpoint() throws Exception {
+        //given
+        Path path = directory.resolve("shard-1.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, 512)) {
+            wal.recover();
+            while (wal.tryAppend(record(wal.nextSeq(), 100L))) {
+            }
+            long lastSeq = wal.lastSeq();
+
+            //when
+            boolean appendedBeforeCheckpoint = wal.tryAppend(record(wal.nextSeq(), 100L));
+            wal.checkpoint(lastSeq);
+            boolean appendedAfterCheckpoint = wal.tryAppend(record(wal.nextSeq(), 100L));
+            wal.force();
+
+            //then
+            assertFalse(appendedBeforeCheckpoint);
+            assertTrue(appendedAfterCheckpoint);
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(path, 512)) {
+            List<WalRecord> unflushed = wal.recover();
+            assertEquals(1, unflushed.size());
+        }
+    }
+
+    private static WalRecord record(long seq, long balanceSnapshot) {
+        return new WalRecord(seq, 1L, "1000000012", 1L, balanceSnapshot,
+                String.format("%032d", seq), System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.account.journal;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionJournalTest {
+    // header + record 3건
+    private static final int SEGMENT_SIZE = JournalSegment.HEADER_SIZE + JournalSegment.RECORD_SIZE * 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("segment 가 가득 차면 다음 segment 로 넘어가고 순서대로 다시 읽음")
+    void rotateAndReplay() throws Exception {
+        //given
+        TransactionJournal journal = journal();
+        journal.append(transactions(1, 7));
+
+        //when
+        List<JournalRecord> all = new ArrayList<>();
+        journal.replay(1, all::add);
+        List<JournalRecord> fromFive = new ArrayList<>();
+        journal.replay(5, fromFive::add);
+        journal.close();
+
+        //then
+        assertEquals(3, segmentCount());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L),
+                all.stream().map(JournalRecord::getSeq).collect(Collectors.toList()));
+        assertEquals(List.of(5L, 6L, 7L),
+                fromFive.stream().map(JournalRecord::getSeq).collect(Collectors.toList()));
+        assertEquals("txid-7", all.get(6).getTransactionID());
+        assertEquals(12L, all.get(6).getAccountId());
+        assertEquals(993L, all.get(6).getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("다시 열면 마지막 seq 다음부터 이어 씀")
+    void resumeAfterReopen() throws Exception {
+        //given
+        TransactionJournal journal = journal();
+        journal.append(transactions(1, 4));
+        journal.close();
+
+        //when
+        TransactionJournal reopened = journal();
+        reopened.append(transactions(5, 5));
+        List<JournalRecord> records = new ArrayList<>();
+        reopened.replay(1, records::add);
+        reopened.close();
+
+        //then
+        assertEquals(5, records.size());
+        assertEquals(5L, records.get(4).getSeq());
+        assertEquals("txid-5", records.get(4).getTransactionID());
+    }
+
+    private TransactionJournal journal() throws Exception {
+        TransactionJournal journal = new TransactionJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", directory.toString());
+        ReflectionTestUtils.setField(journal, "segmentSize", SEGMENT_SIZE);
+        ReflectionTestUtils.setField(journal, "force", false);
+        journal.open();
+        return journal;
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static List<Transaction> transactions(int from, int to) {
+        Account account = Account.builder().id(12L).accountNumber("1000000012").build();
+        return IntStream.rangeClosed(from, to)
+                .mapToObj(i -> Transaction.builder()
+                        .id((long) i)
+                        .account(account)
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .amount(1L)
+                        .balanceSnapshot(1000L - i)
+                        .transactionID("txid-" + i)
+                        .transactedAt(LocalDateTime.now())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.repository.DailyAccountAggregateRepository;
+import com.example.account.repository.projection.DailyAggregateRow;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCELED;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(DailyAggregateProjector.class)
+class DailyAggregateProjectorTest {
+    private static final LocalDate DAY = LocalDate.of(2022, 6, 1);
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private DailyAggregateProjector dailyAggregateProjector;
+    @Autowired
+    private DailyAccountAggregateRepository dailyAccountAggregateRepository;
+
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        AccountUser user = entityManager.persist(AccountUser.builder().name("Pobi").build());
+        account = entityManager.persist(Account.builder()
+                .accountUser(user)
+                .accountNumber("1000000012")
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .build());
+    }
+
+    @Test
+    @DisplayName("같은 날 거래는 한 집계에 더하고, 마감 잔액은 가장 늦은 거래 기준")
+    void accumulateSameDay() {
+        //given
+        dailyAggregateProjector.project(Arrays.asList(
+                transaction(USE, S, 1000L, 9000L, 10),
+                transaction(USE, S, 2000L, 7000L, 11),
+                transaction(USE, F, 9000L, 7000L, 12)));
+
+        //when
+        dailyAggregateProjector.project(Collections.singletonList(transaction(CANCELED, S, 1000L, 8000L, 13)));
+        // 늦게 반영된 이전 거래는 마감 잔액을 바꾸지 않는다.
+        dailyAggregateProjector.project(Collections.singletonList(transaction(USE, S, 500L, 9500L, 9)));
+        entityManager.clear();
+
+        //then
+        List<DailyAggregateRow> rows = dailyAccountAggregateRepository.findRows(account.getId(), DAY, DAY);
+        assertEquals(1, rows.size());
+        assertEquals(4L, rows.get(0).getTransactionCount());
+        assertEquals(3500L, rows.get(0).getUsedAmount());
+        assertEquals(1000L, rows.get(0).getCanceledAmount());
+        assertEquals(8000L, rows.get(0).getClosingBalance());
+    }
+
+    @Test
+    @DisplayName("날짜가 바뀌면 새 집계")
+    void newAggregatePerDay() {
+        //given
+        dailyAggregateProjector.project(Collections.singletonList(transaction(USE, S, 1000L, 9000L, 10)));
+
+        //when
+        Transaction nextDay = transaction(USE, S, 1000L, 8000L, 10);
+        nextDay.setTransactedAt(nextDay.getTransactedAt().plusDays(1));
+        dailyAggregateProjector.project(Collections.singletonList(nextDay));
+        entityManager.clear();
+
+        //then
+        List<DailyAggregateRow> rows = dailyAccountAggregateRepository
+                .findRows(account.getId(), DAY, DAY.plusDays(1));
+        assertEquals(2, rows.size());
+        assertEquals(9000L, rows.get(0).getClosingBalance());
+        assertEquals(8000L, rows.get(1).getClosingBalance());
+    }
+
+    private Transaction transaction(TransactionType transactionType, TransactionResultType transactionResultType,
+                                    Long amount, Long balanceSnapshot, int hour) {
+        return Transaction.builder()
+                .account(account)
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactionID("tx" + hour + amount)
+                .transactedAt(DAY.atTime(hour, 0))
+                .build();
+    }
+}
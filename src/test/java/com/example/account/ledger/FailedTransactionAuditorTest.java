@@ -0,0 +1,185 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.projection.AccountBalance;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionType.CANCELED;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class FailedTransactionAuditorTest {
+    @Mock
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("큐가 가득 차면 실패 시점의 잔액과 함께 spill 파일에 이어 씀")
+    void spillWhenQueueIsFull() throws Exception {
+        //given
+        given(accountRepository.findBalanceByAccountNumber("1000000012"))
+                .willReturn(Optional.of(balance(1L, 700L)));
+        FailedTransactionAuditor auditor = auditor(1);
+
+        //when
+        auditor.record(USE, "1000000012", 1000L);
+        auditor.record(USE, "1000000012", 2000L);
+
+        //then
+        List<String> lines = Files.readAllLines(spillPath());
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("USE\t1000000012\t1\t2000\t700\t"));
+        assertEquals(1.0, meterRegistry.counter("account.audit.spilled").count());
+    }
+
+    @Test
+    @DisplayName("종료 시 큐에 남은 기록을 spill 파일로 내림")
+    void stopSpillsQueuedRecords() throws Exception {
+        //given
+        given(accountRepository.findBalanceByAccountNumber("1000000012"))
+                .willReturn(Optional.of(balance(1L, 700L)));
+        FailedTransactionAuditor auditor = auditor(10);
+        auditor.record(USE, "1000000012", 1000L);
+        auditor.record(CANCELED, "1000000012", 500L);
+
+        //when
+        auditor.stop();
+
+        //then
+        List<String> lines = Files.readAllLines(spillPath());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("USE\t1000000012\t1\t1000\t700\t"));
+        assertTrue(lines.get(1).startsWith("CANCELED\t1000000012\t1\t500\t700\t"));
+        verify(transactionLedgerWriter, never()).appendAll(any());
+    }
+
+    @Test
+    @DisplayName("없는 계좌에 대한 시도는 버림")
+    void dropUnknownAccount() throws Exception {
+        //given
+        given(accountRepository.findBalanceByAccountNumber("1000000099"))
+                .willReturn(Optional.empty());
+        FailedTransactionAuditor auditor = auditor(10);
+
+        //when
+        auditor.record(USE, "1000000099", 1000L);
+        auditor.stop();
+
+        //then
+        assertFalse(Files.exists(spillPath()));
+        assertEquals(1.0, meterRegistry.counter("account.audit.dropped").count());
+    }
+
+    @Test
+    @DisplayName("기동하면 spill 파일의 기록을 실패 시점의 잔액으로 저장하고 파일을 지움")
+    @SuppressWarnings("unchecked")
+    void restoreSpilledOnStart() throws Exception {
+        //given
+        given(accountRepository.findBalanceByAccountNumber("1000000012"))
+                .willReturn(Optional.of(balance(1L, 700L)));
+        FailedTransactionAuditor previous = auditor(10);
+        previous.record(USE, "1000000012", 1000L);
+        previous.stop();
+
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(accountRepository.getById(1L))
+                .willReturn(account);
+        List<Transaction> saved = new CopyOnWriteArrayList<>();
+        given(transactionLedgerWriter.appendAll(any()))
+                .willAnswer(invocation -> {
+                    List<Transaction> transactions = ((Supplier<List<Transaction>>) invocation.getArgument(0)).get();
+                    saved.addAll(transactions);
+                    return transactions;
+                });
+
+        //when
+        FailedTransactionAuditor auditor = auditor(10);
+        auditor.start();
+
+        //then
+        verify(transactionLedgerWriter, timeout(5000)).appendAll(any());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Files.exists(spillPath().resolveSibling("failed.spill.draining")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        auditor.stop();
+
+        assertFalse(Files.exists(spillPath()));
+        assertFalse(Files.exists(spillPath().resolveSibling("failed.spill.draining")));
+        assertEquals(1, saved.size());
+        assertEquals(F, saved.get(0).getTransactionResultType());
+        assertEquals(USE, saved.get(0).getTransactionType());
+        assertEquals(1000L, saved.get(0).getAmount());
+        assertEquals(700L, saved.get(0).getBalanceSnapshot());
+        assertSame(account, saved.get(0).getAccount());
+        // 잔액은 실패 시점에 한 번만 읽는다.
+        verify(accountRepository, times(1)).findBalanceByAccountNumber("1000000012");
+    }
+
+    private FailedTransactionAuditor auditor(int queueCapacity) {
+        return new FailedTransactionAuditor(transactionLedgerWriter, accountRepository, meterRegistry,
+                queueCapacity, 500, spillPath().toString());
+    }
+
+    private Path spillPath() {
+        return directory.resolve("failed.spill");
+    }
+
+    private static AccountBalance balance(Long id, Long balance) {
+        return new AccountBalance() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getAccountNumber() {
+                return "1000000012";
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+
+            @Override
+            public Long getVersion() {
+                return 1L;
+            }
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Transaction;
+import com.example.account.exception.AccountException;
+import com.example.account.journal.TransactionJournal;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionLedgerWriterTest {
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionJournal transactionJournal;
+
+    @Mock
+    private DailyAggregateProjector dailyAggregateProjector;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    @BeforeEach
+    void setUp() {
+        transactionLedgerWriter = new TransactionLedgerWriter(transactionRepository, transactionJournal,
+                dailyAggregateProjector, transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(transactionLedgerWriter, "batchEnabled", true);
+        ReflectionTestUtils.setField(transactionLedgerWriter, "maxBatchSize", 3);
+        ReflectionTestUtils.setField(transactionLedgerWriter, "maxLingerMillis", 5000L);
+        ReflectionTestUtils.setField(transactionLedgerWriter, "queueCapacity", 100);
+        transactionLedgerWriter.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        transactionLedgerWriter.stop();
+    }
+
+    @Test
+    @DisplayName("동시에 들어온 요청을 한 트랜잭션으로 모아 저장")
+    void groupCommit() throws Exception {
+        //when
+        CompletableFuture<Transaction> first = appendAsync("tx1");
+        CompletableFuture<Transaction> second = appendAsync("tx2");
+        CompletableFuture<Transaction> third = appendAsync("tx3");
+
+        //then
+        assertEquals("tx1", first.get(5, TimeUnit.SECONDS).getTransactionID());
+        assertEquals("tx2", second.get(5, TimeUnit.SECONDS).getTransactionID());
+        assertEquals("tx3", third.get(5, TimeUnit.SECONDS).getTransactionID());
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository, times(1)).saveAll(captor.capture());
+        assertEquals(3, captor.getValue().size());
+        InOrder inOrder = inOrder(transactionRepository, transactionJournal, transactionManager);
+        inOrder.verify(transactionRepository).flush();
+        inOrder.verify(transactionJournal).append(captor.getValue());
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("저널 기록에 실패하면 커밋하지 않고 묶음의 요청을 모두 실패")
+    void journalFailureRollsBack() throws Exception {
+        //given
+        ReflectionTestUtils.setField(transactionLedgerWriter, "maxBatchSize", 2);
+        doThrow(new IllegalStateException("disk full")).when(transactionJournal).append(any());
+
+        //when
+        CompletableFuture<Transaction> first = appendAsync("tx1");
+        CompletableFuture<Transaction> second = appendAsync("tx2");
+
+        //then
+        Exception firstException = assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+        Exception secondException = assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertEquals("disk full", firstException.getCause().getMessage());
+        assertEquals("disk full", secondException.getCause().getMessage());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertEquals(1.0, meterRegistry.counter("account.journal.failures").count());
+    }
+
+    @Test
+    @DisplayName("검증에 실패한 요청만 실패하고 같은 묶음의 나머지는 저장")
+    void failingEntryDoesNotPoisonBatch() throws Exception {
+        //when
+        CompletableFuture<Transaction> first = appendAsync("tx1");
+        CompletableFuture<Transaction> failed = CompletableFuture.supplyAsync(() -> transactionLedgerWriter.append(() -> {
+            throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+        }));
+        CompletableFuture<Transaction> third = appendAsync("tx3");
+
+        //then
+        assertEquals("tx1", first.get(5, TimeUnit.SECONDS).getTransactionID());
+        assertEquals("tx3", third.get(5, TimeUnit.SECONDS).getTransactionID());
+        Exception exception = assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, ((AccountException) exception.getCause()).getErrorCode());
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository, times(1)).saveAll(captor.capture());
+        assertEquals(2, captor.getValue().size());
+    }
+
+    @Test
+    @DisplayName("멈출 때 이미 받은 요청은 커밋하고, 멈춘 뒤의 요청은 바로 거절")
+    void stopDrainsQueuedEntriesAndRejectsNewOnes() throws Exception {
+        //given
+        ReflectionTestUtils.setField(transactionLedgerWriter, "maxBatchSize", 1);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Transaction> first = CompletableFuture.supplyAsync(() -> transactionLedgerWriter.append(() -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return transaction("tx1");
+        }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Transaction> queued = appendAsync("tx2");
+        BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(transactionLedgerWriter, "queue");
+        while (queue.isEmpty()) {
+            Thread.sleep(1);
+        }
+
+        //when
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(() -> {
+            try {
+                transactionLedgerWriter.stop();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (Boolean.TRUE.equals(ReflectionTestUtils.getField(transactionLedgerWriter, "running"))) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        //then
+        stopped.get(5, TimeUnit.SECONDS);
+        assertEquals("tx1", first.get(5, TimeUnit.SECONDS).getTransactionID());
+        assertEquals("tx2", queued.get(5, TimeUnit.SECONDS).getTransactionID());
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
+                assertThrows(IllegalStateException.class,
+                        () -> transactionLedgerWriter.append(() -> transaction("tx3"))));
+    }
+
+    private CompletableFuture<Transaction> appendAsync(String transactionID) {
+        return CompletableFuture.supplyAsync(() -> transactionLedgerWriter.append(() -> transaction(transactionID)));
+    }
+
+    private static Transaction transaction(String transactionID) {
+        return Transaction.builder()
+                .transactionID(transactionID)
+                .amount(1000L)
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.repository.projection.AccountSummary;
+import com.example.account.type.AccountStatus;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AccountRepositoryTest {
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private Statistics statistics;
+    private AccountUser user;
+    private Long transactionId;
+
+    @BeforeEach
+    void setUp() {
+        user = entityManager.persist(AccountUser.builder().name("Pobi").build());
+        for (int i = 0; i < 3; i++) {
+            Account account = entityManager.persist(Account.builder()
+                    .accountUser(user)
+                    .accountNumber("100000000" + i)
+                    .accountStatus(AccountStatus.IN_USE)
+                    .balance(1000L)
+                    .build());
+            transactionId = entityManager.persist(Transaction.builder()
+                    .account(account)
+                    .amount(100L)
+                    .balanceSnapshot(900L)
+                    .transactionID("tx" + i)
+                    .build()).getId();
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("거래 조회 시 계좌, 사용자를 함께 읽지 않음")
+    void findTransactionWithoutAccount() {
+        //given
+        //when
+        Transaction transaction = transactionRepository.findById(transactionId).get();
+
+        //then
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+        assertNotNull(transaction.getAccount().getId());
+    }
+
+    @Test
+    @DisplayName("사용자 계좌 목록은 엔티티 없이 한 번의 쿼리로 조회")
+    void findSummariesByAccountUserID() {
+        //given
+        //when
+        List<AccountSummary> summaries = accountRepository.findSummariesByAccountUserID(user.getID());
+
+        //then
+        assertEquals(3, summaries.size());
+        assertEquals(user.getID(), summaries.get(0).getUserID());
+        assertEquals(1000L, summaries.get(0).getBalance());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("엔티티 그래프로 계좌와 소유주를 한 번에 조회")
+    void findWithAccountUserById() {
+        //given
+        Long accountId = accountRepository.findBalanceByAccountNumber("1000000000").get().getId();
+        statistics.clear();
+
+        //when
+        Account account = accountRepository.findWithAccountUserById(accountId).get();
+
+        //then
+        assertEquals("Pobi", account.getAccountUser().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
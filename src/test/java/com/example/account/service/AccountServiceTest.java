@@ -1,15 +1,22 @@
 package com.example.account.service;
 
 import com.example.account.AccountApplication;
+import com.example.account.allocator.AccountNumberAllocator;
+import com.example.account.cache.AccountCache;
+import com.example.account.datasource.ReadYourWritesTracker;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountDto;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
 import com.example.account.exception.AccountException;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.type.AccountStatus;
 import com.example.account.repository.AccountRepository;
+import com.example.account.repository.projection.AccountSummary;
 import com.example.account.type.ErrorCode;
 import org.apache.tomcat.util.http.fileupload.MultipartStream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,14 +25,20 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -37,9 +50,34 @@ class AccountServiceTest {
     @Mock
     private AccountUserRepository accountUserRepository;
 
+    @Mock
+    private AccountNumberAllocator accountNumberAllocator;
+
+    @Mock
+    private AccountCache accountCache;
+
+    @Mock
+    private RedisBalanceAuthority redisBalanceAuthority;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Mock
+    private BalanceEngine balanceEngine;
+
     @InjectMocks
     private AccountService accountService;
 
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lenient().when(accountCache.getAccountNumbers(anyLong(), any()))
+                .thenAnswer(invocation -> ((Supplier<String[]>) invocation.getArgument(1)).get());
+        lenient().when(accountCache.getAccount(anyString(), any()))
+                .thenAnswer(invocation -> ((Supplier<AccountDto>) invocation.getArgument(1)).get());
+        ReflectionTestUtils.setField(accountService, "self", accountService);
+    }
+
     @Test
     @DisplayName("계좌 생성 성공")
     void createAccountSuccess() {
@@ -50,10 +88,8 @@ class AccountServiceTest {
                 .build();
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.of(Account.builder()
-                        .accountNumber("1000000012")
-                        .build()));
+        given(accountNumberAllocator.next())
+                .willReturn("1000000013");
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
                         .accountUser(user)
@@ -72,8 +108,8 @@ class AccountServiceTest {
     }
 
     @Test
-    @DisplayName("계좌 해지 성공")
-    void deleteAccountSuccess() {
+    @DisplayName("계좌번호가 이미 있으면 발급기를 다시 맞추고 새 번호로 생성")
+    void createAccountRetriesTakenAccountNumber() {
         //given
         AccountUser user = AccountUser.builder()
                 .ID(12L)
@@ -81,6 +117,57 @@ class AccountServiceTest {
                 .build();
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
+        given(accountNumberAllocator.next())
+                .willReturn("1000000013", "1000000014");
+        given(accountRepository.save(any()))
+                .willThrow(new DataIntegrityViolationException("uk_account_account_number"))
+                .willAnswer(invocation -> invocation.getArgument(0));
+        given(accountRepository.existsByAccountNumber("1000000013"))
+                .willReturn(true);
+
+        //when
+        AccountDto accountDto = accountService.createAccount(12L, 100L);
+
+        //then
+        assertEquals("1000000014", accountDto.getAccountNumber());
+        verify(accountNumberAllocator, times(1)).realign();
+        verify(accountRepository, times(2)).save(any());
+    }
+
+    @Test
+    @DisplayName("계좌번호와 관계없는 제약 위반은 다시 시도하지 않음")
+    void createAccountDoesNotRetryOtherViolation() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .ID(12L)
+                .name("test")
+                .build();
+        given(accountUserRepository.findById(anyLong()))
+                .willReturn(Optional.of(user));
+        given(accountNumberAllocator.next())
+                .willReturn("1000000013");
+        given(accountRepository.save(any()))
+                .willThrow(new DataIntegrityViolationException("other"));
+        given(accountRepository.existsByAccountNumber("1000000013"))
+                .willReturn(false);
+
+        //when
+        assertThrows(DataIntegrityViolationException.class,
+                () -> accountService.createAccount(12L, 100L));
+
+        //then
+        verify(accountNumberAllocator, never()).realign();
+        verify(accountRepository, times(1)).save(any());
+    }
+
+    @Test
+    @DisplayName("계좌 해지 성공")
+    void deleteAccountSuccess() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .ID(12L)
+                .name("test")
+                .build();
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
                         .accountUser(user)
@@ -91,7 +178,7 @@ class AccountServiceTest {
         ArgumentCaptor<Account> captor = ArgumentCaptor.forClass(Account.class);
 
         //when
-        AccountDto accountDto = accountService.deleteAccount(1L, "1234567890");
+        AccountDto accountDto = accountService.deleteAccount(12L, "1234567890");
 
         //then
         verify(accountRepository, times(1)).save(captor.capture());
@@ -101,6 +188,118 @@ class AccountServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Redis 잔액이 남아 있음 - 계좌 해지 실패")
+    void deleteAccountFailRedisBalanceOverZero() {
+        //given
+        given(redisBalanceAuthority.unregister(12L, "1000000012"))
+                .willThrow(new AccountException(ErrorCode.BALANCE_OVER_ZERO));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountService.deleteAccount(12L, "1000000012"));
+
+        //then
+        assertEquals(ErrorCode.BALANCE_OVER_ZERO, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("엔진 잔액이 남아 있음 - 계좌 해지 실패")
+    void deleteAccountFailEngineBalanceOverZero() {
+        //given
+        given(balanceEngine.unregister(12L, "1000000012"))
+                .willThrow(new AccountException(ErrorCode.BALANCE_OVER_ZERO));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountService.deleteAccount(12L, "1000000012"));
+
+        //then
+        assertEquals(ErrorCode.BALANCE_OVER_ZERO, exception.getErrorCode());
+        verify(accountRepository, never()).findByAccountNumber(anyString());
+    }
+
+    @Test
+    @DisplayName("엔진 계좌 해지 - 엔진이 확인한 잔액으로 DB 잔액 검사를 건너뜀")
+    void deleteAccountClosedByEngine() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .ID(12L)
+                .name("test")
+                .build();
+        given(balanceEngine.unregister(12L, "1000000012"))
+                .willReturn(true);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(user)
+                        .accountStatus(AccountStatus.IN_USE)
+                        .balance(0L)
+                        .accountNumber("1000000012")
+                        .build()));
+
+        //when
+        AccountDto accountDto = accountService.deleteAccount(12L, "1000000012");
+
+        //then
+        assertEquals(12L, accountDto.getUserID());
+        assertEquals("1000000012", accountDto.getAccountNumber());
+    }
+
+    @Test
+    @DisplayName("엔진에서 막은 뒤 DB 해지가 실패하면 엔진 계좌를 되돌린다")
+    void deleteAccountReopenEngineOnFailure() {
+        //given
+        AccountUser owner = AccountUser.builder()
+                .ID(13L)
+                .name("owner")
+                .build();
+        given(balanceEngine.unregister(12L, "1000000012"))
+                .willReturn(true);
+        given(accountUserRepository.existsById(12L))
+                .willReturn(true);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(owner)
+                        .accountStatus(AccountStatus.IN_USE)
+                        .balance(0L)
+                        .accountNumber("1000000012")
+                        .build()));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountService.deleteAccount(12L, "1000000012"));
+
+        //then
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCHED, exception.getErrorCode());
+        verify(balanceEngine).reopen("1000000012");
+    }
+
+    @Test
+    @DisplayName("Redis 에서 막은 뒤 DB 해지가 실패하면 Redis 계좌를 되돌린다")
+    void deleteAccountReopenRedisOnFailure() {
+        //given
+        given(redisBalanceAuthority.unregister(12L, "1000000012"))
+                .willReturn(true);
+        given(redisBalanceAuthority.owns("1000000012"))
+                .willReturn(true);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(AccountUser.builder().ID(12L).name("test").build())
+                        .accountStatus(AccountStatus.UNREGISTERED)
+                        .balance(0L)
+                        .accountNumber("1000000012")
+                        .build()));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountService.deleteAccount(12L, "1000000012"));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
+        verify(redisBalanceAuthority).reopen("1000000012");
+        verify(balanceEngine, never()).reopen(anyString());
+    }
+
     @Test
     @DisplayName("첫 계좌 생성")
     void createFirstAccount() {
@@ -111,8 +310,8 @@ class AccountServiceTest {
                 .build();
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.empty());
+        given(accountNumberAllocator.next())
+                .willReturn("1000000000");
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
                         .accountUser(user)
@@ -149,12 +348,14 @@ class AccountServiceTest {
     @DisplayName("해당 유저 없음 - 계좌 해지 실패")
     void deleteAccountFailUserNotFound() {
         //given
-        given(accountUserRepository.findById(anyLong()))
+        given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.empty());
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(false);
 
         //when
         AccountException exception = assertThrows(AccountException.class,
-                () -> accountService.deleteAccount(1L, "1234567890"));
+                () -> accountService.deleteAccount(12L, "1234567890"));
 
         //then
         assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
@@ -168,14 +369,14 @@ class AccountServiceTest {
                 .ID(12L)
                 .name("test")
                 .build();
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.empty());
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(true);
 
         //when
         AccountException exception = assertThrows(AccountException.class,
-                () -> accountService.deleteAccount(1L, "1234567890"));
+                () -> accountService.deleteAccount(12L, "1234567890"));
 
         //then
         assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, exception.getErrorCode());
@@ -193,18 +394,18 @@ class AccountServiceTest {
                 .ID(13L)
                 .name("test2")
                 .build();
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(test1));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
                         .accountUser(test2)
                         .balance(0L)
                         .accountNumber("1000000012")
                         .build()));
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(true);
 
         //when
         AccountException exception = assertThrows(AccountException.class,
-                () -> accountService.deleteAccount(1L, "1234567890"));
+                () -> accountService.deleteAccount(12L, "1234567890"));
 
         //then
         assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCHED, exception.getErrorCode());
@@ -218,8 +419,6 @@ class AccountServiceTest {
                 .ID(12L)
                 .name("test")
                 .build();
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(test));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
                         .accountUser(test)
@@ -229,7 +428,7 @@ class AccountServiceTest {
 
         //when
         AccountException exception = assertThrows(AccountException.class,
-                () -> accountService.deleteAccount(1L, "1234567890"));
+                () -> accountService.deleteAccount(12L, "1234567890"));
 
         //then
         assertEquals(ErrorCode.BALANCE_OVER_ZERO, exception.getErrorCode());
@@ -243,8 +442,6 @@ class AccountServiceTest {
                 .ID(12L)
                 .name("test")
                 .build();
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(test));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
                         .accountUser(test)
@@ -255,7 +452,7 @@ class AccountServiceTest {
 
         //when
         AccountException exception = assertThrows(AccountException.class,
-                () -> accountService.deleteAccount(1L, "1234567890"));
+                () -> accountService.deleteAccount(12L, "1234567890"));
 
         //then
         assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
@@ -284,30 +481,17 @@ class AccountServiceTest {
     @DisplayName("계좌 조회 성공")
     void successGetAccountsByUserID() {
         //given
-        AccountUser user = AccountUser.builder()
-                .ID(18L)
-                .name("test").build();
-        List<Account> accounts = Arrays.asList(
-                Account.builder()
-                        .accountNumber("1111111111")
-                        .accountUser(user)
-                        .balance(1000L)
-                        .build(),
-                Account.builder()
-                        .accountNumber("2222222222")
-                        .accountUser(user)
-                        .balance(1000L)
-                        .build(),
-                Account.builder()
-                        .accountNumber("3333333333")
-                        .accountUser(user)
-                        .balance(1000L)
-                        .build()
+        List<AccountSummary> accounts = Arrays.asList(
+                summary(18L, "1111111111", 1000L),
+                summary(18L, "2222222222", 1000L),
+                summary(18L, "3333333333", 1000L)
         );
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
-        given(accountRepository.findByAccountUser(any()))
+        given(accountRepository.findSummariesByAccountUserID(anyLong()))
                 .willReturn(accounts);
+        given(accountRepository.findSummaryByAccountNumber(anyString()))
+                .willAnswer(invocation -> accounts.stream()
+                        .filter(account -> account.getAccountNumber().equals(invocation.getArgument(0)))
+                        .findFirst());
         //when
         List<AccountDto> accountsDtos = accountService.getAccountsByUserID(1L);
 
@@ -325,12 +509,41 @@ class AccountServiceTest {
     @Test
     void failedToGetAccounts() {
         //given
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.empty());
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(false);
         //when
         AccountException exception = assertThrows(AccountException.class,
                 () -> accountService.getAccountsByUserID(1L));
         //then
         assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
     }
-}
\ No newline at end of file
+
+    private static AccountSummary summary(Long userID, String accountNumber, Long balance) {
+        return new AccountSummary() {
+            @Override
+            public Long getUserID() {
+                return userID;
+            }
+
+            @Override
+            public String getAccountNumber() {
+                return accountNumber;
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+
+            @Override
+            public LocalDateTime getRegisteredAt() {
+                return null;
+            }
+
+            @Override
+            public LocalDateTime getUnregisteredAt() {
+                return null;
+            }
+        };
+    }
+}
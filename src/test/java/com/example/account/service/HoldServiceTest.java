@@ -0,0 +1,279 @@
+package com.example.account.service;
+
+import com.example.account.cache.AccountCache;
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.BalanceHold;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.HoldDto;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
+import com.example.account.exception.AccountException;
+import com.example.account.hold.HoldExpiryScheduler;
+import com.example.account.ledger.TransactionLedgerWriter;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.BalanceHoldRepository;
+import com.example.account.repository.projection.AccountBalance;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.HoldStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static com.example.account.type.TransactionType.RELEASED;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class HoldServiceTest {
+    @Mock
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    @Mock
+    private HoldExpiryScheduler holdExpiryScheduler;
+
+    @Mock
+    private BalanceEngine balanceEngine;
+
+    @Mock
+    private RedisBalanceAuthority redisBalanceAuthority;
+
+    @Mock
+    private AccountUserRepository accountUserRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private BalanceHoldRepository balanceHoldRepository;
+
+    @Mock
+    private AccountCache accountCache;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @InjectMocks
+    private HoldService holdService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lenient().when(transactionLedgerWriter.append(any()))
+                .thenAnswer(invocation -> ((Supplier<Transaction>) invocation.getArgument(0)).get());
+        lenient().when(transactionLedgerWriter.appendAll(any()))
+                .thenAnswer(invocation -> ((Supplier<List<Transaction>>) invocation.getArgument(0)).get());
+        ReflectionTestUtils.setField(holdService, "defaultTtlSeconds", 900L);
+        ReflectionTestUtils.setField(holdService, "maxTtlSeconds", 3600L);
+    }
+
+    @Test
+    @DisplayName("잔액 홀드 성공")
+    void holdBalanceSuccess() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .balance(10000L)
+                .build();
+        given(accountRepository.holdBalance(eq("1000000012"), eq(12L), eq(1000L), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber("1000000012"))
+                .willReturn(Optional.of(balance(1L, 10000L)));
+        given(accountRepository.getById(1L))
+                .willReturn(account);
+        ArgumentCaptor<BalanceHold> captor = ArgumentCaptor.forClass(BalanceHold.class);
+
+        //when
+        HoldDto holdDto = holdService.holdBalance(12L, "1000000012", 1000L, 7200L);
+
+        //then
+        verify(balanceHoldRepository, times(1)).save(captor.capture());
+        assertEquals(HoldStatus.HELD, captor.getValue().getHoldStatus());
+        assertEquals(1000L, captor.getValue().getAmount());
+        // 최대 유효 시간을 넘지 않는다.
+        assertTrue(captor.getValue().getExpiresAt().isBefore(LocalDateTime.now().plusSeconds(3601)));
+        verify(holdExpiryScheduler, times(1))
+                .schedule(eq(holdDto.getHoldID()), eq(holdDto.getExpiresAt()), any());
+        assertEquals(10000L, holdDto.getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("사용 가능 금액 부족 - 잔액 홀드 실패")
+    void holdBalance_AmountExceedBalance() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .ID(12L)
+                .name("test")
+                .build();
+        given(accountRepository.holdBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(0);
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(user)
+                        .accountStatus(AccountStatus.IN_USE)
+                        .balance(1000L)
+                        .heldAmount(1000L)
+                        .accountNumber("1000000012")
+                        .build()));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> holdService.holdBalance(12L, "1000000012", 1000L, null));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+        verify(holdExpiryScheduler, times(0)).schedule(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("부분 확정 - 확정 금액은 사용 거래, 나머지는 해제 거래로 기록")
+    void captureHoldPartially() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(AccountUser.builder().ID(12L).name("test").build())
+                .accountNumber("1000000012")
+                .build();
+        given(balanceHoldRepository.findByHoldID("holdId"))
+                .willReturn(Optional.of(hold(account, HoldStatus.HELD)));
+        given(balanceHoldRepository.complete(eq("holdId"), eq(HoldStatus.CAPTURED), eq(700L), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceById(1L))
+                .willReturn(Optional.of(balance(1L, 9300L)));
+        given(accountRepository.getById(1L))
+                .willReturn(account);
+        ArgumentCaptor<Supplier<List<Transaction>>> captor = ArgumentCaptor.forClass(Supplier.class);
+
+        //when
+        HoldDto holdDto = holdService.captureHold(12L, "holdId", "1000000012", 700L);
+
+        //then
+        verify(accountRepository, times(1)).settleHold(eq(1L), eq(700L), eq(1000L), any());
+        verify(transactionLedgerWriter).appendAll(captor.capture());
+        List<Transaction> transactions = captor.getValue().get();
+        assertEquals(USE, transactions.get(0).getTransactionType());
+        assertEquals(700L, transactions.get(0).getAmount());
+        assertEquals(RELEASED, transactions.get(1).getTransactionType());
+        assertEquals(300L, transactions.get(1).getAmount());
+        assertEquals(HoldStatus.CAPTURED, holdDto.getHoldStatus());
+        assertEquals(9300L, holdDto.getBalanceSnapshot());
+        verify(readYourWritesTracker, times(1)).recordWrite(12L);
+    }
+
+    @Test
+    @DisplayName("이미 해제된 홀드 - 확정 실패")
+    void captureHold_AlreadyCompleted() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(AccountUser.builder().ID(12L).name("test").build())
+                .accountNumber("1000000012")
+                .build();
+        given(balanceHoldRepository.findByHoldID("holdId"))
+                .willReturn(Optional.of(hold(account, HoldStatus.RELEASED)));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> holdService.captureHold(12L, "holdId", "1000000012", null));
+
+        //then
+        assertEquals(ErrorCode.HOLD_ALREADY_COMPLETED, exception.getErrorCode());
+        verify(accountRepository, times(0)).settleHold(anyLong(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("다른 사용자의 홀드 - 해제 실패")
+    void releaseHold_UserUnMatch() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(AccountUser.builder().ID(12L).name("test").build())
+                .accountNumber("1000000012")
+                .build();
+        given(balanceHoldRepository.findByHoldID("holdId"))
+                .willReturn(Optional.of(hold(account, HoldStatus.HELD)));
+        given(accountUserRepository.existsById(13L))
+                .willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> holdService.releaseHold(13L, "holdId", "1000000012"));
+
+        //then
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCHED, exception.getErrorCode());
+        verify(balanceHoldRepository, times(0)).complete(anyString(), any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("만료 시각이 되어도 이미 확정된 홀드는 그대로 둠")
+    void expireCapturedHold() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(balanceHoldRepository.findByHoldID("holdId"))
+                .willReturn(Optional.of(hold(account, HoldStatus.CAPTURED)));
+
+        //when
+        holdService.expireHold("holdId");
+
+        //then
+        verify(balanceHoldRepository, times(0)).complete(anyString(), any(), anyLong(), any());
+        verify(transactionLedgerWriter, times(0)).appendAll(any());
+    }
+
+    private static BalanceHold hold(Account account, HoldStatus holdStatus) {
+        return BalanceHold.builder()
+                .holdID("holdId")
+                .account(account)
+                .amount(1000L)
+                .holdStatus(holdStatus)
+                .expiresAt(LocalDateTime.now().plusMinutes(10))
+                .build();
+    }
+
+    private static AccountBalance balance(Long id, Long balance) {
+        return new AccountBalance() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getAccountNumber() {
+                return "1000000012";
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+
+            @Override
+            public Long getVersion() {
+                return 1L;
+            }
+        };
+    }
+}
@@ -0,0 +1,748 @@
+package com.example.account.service;
+
+import com.example.account.archive.TransactionArchive;
+import com.example.account.cache.AccountCache;
+import com.example.account.cache.RecentTransactionCache;
+import com.example.account.datasource.ReadYourWritesTracker;
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistory;
+import com.example.account.dto.UseBalance;
+import com.example.account.engine.BalanceEngine;
+import com.example.account.engine.RedisBalanceAuthority;
+import com.example.account.exception.AccountException;
+import com.example.account.ledger.FailedTransactionAuditor;
+import com.example.account.ledger.TransactionLedgerWriter;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.repository.projection.AccountBalance;
+import com.example.account.repository.projection.TransactionHistoryRow;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCELED;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionServiceTest {
+    @Mock
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    @Mock
+    private BalanceEngine balanceEngine;
+
+    @Mock
+    private RedisBalanceAuthority redisBalanceAuthority;
+
+    @Mock
+    private FailedTransactionAuditor failedTransactionAuditor;
+
+    @Mock
+    private AccountUserRepository accountUserRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LockService lockService;
+
+    @Mock
+    private AccountCache accountCache;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private RecentTransactionCache recentTransactionCache;
+
+    @Mock
+    private TransactionArchive transactionArchive;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @InjectMocks
+    private TransactionService transactionService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lenient().when(transactionLedgerWriter.append(any()))
+                .thenAnswer(invocation -> ((Supplier<Transaction>) invocation.getArgument(0)).get());
+        lenient().when(transactionLedgerWriter.appendAll(any()))
+                .thenAnswer(invocation -> ((Supplier<List<Transaction>>) invocation.getArgument(0)).get());
+        lenient().when(recentTransactionCache.get(anyString(), any()))
+                .thenAnswer(invocation -> ((Supplier<TransactionDto>) invocation.getArgument(1)).get());
+        ReflectionTestUtils.setField(transactionService, "self", transactionService);
+    }
+
+    @Test
+    @DisplayName("잔액 사용 성공")
+    void useBalanceSuccess() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(accountRepository.useBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber(anyString()))
+                .willReturn(Optional.of(balance(1L, 9000L)));
+        given(accountRepository.getById(anyLong()))
+                .willReturn(account);
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(12L, "1000000012", 1000L);
+
+        //then
+        verify(transactionLedgerWriter, times(1)).append(any());
+        assertEquals(1000L, transactionDto.getAmount());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+        assertEquals("1000000012", transactionDto.getAccountNumber());
+        assertEquals(USE, transactionDto.getTransactionType());
+        assertEquals(S, transactionDto.getTransactionResultType());
+    }
+
+    @Test
+    @DisplayName("해당 유저 없음 - 잔액 사용 실패")
+    void useBalanceFailUserNotFound() {
+        //given
+        given(accountRepository.useBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(0);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.empty());
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(false);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(12L, "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("잔액 부족 - 잔액 사용 실패")
+    void useBalanceFailAmountExceedBalance() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .ID(12L)
+                .name("test")
+                .build();
+        given(accountRepository.useBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(0);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(user)
+                        .accountStatus(AccountStatus.IN_USE)
+                        .balance(100L)
+                        .accountNumber("1000000012")
+                        .build()));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(12L, "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+        verify(transactionRepository, never()).save(any());
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("계좌 소유주 다름 - 잔액 사용 실패")
+    void useBalanceFailUserUnMatch() {
+        //given
+        AccountUser test1 = AccountUser.builder()
+                .ID(12L)
+                .name("test1")
+                .build();
+        AccountUser test2 = AccountUser.builder()
+                .ID(13L)
+                .name("test2")
+                .build();
+        given(accountRepository.useBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(0);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(test2)
+                        .accountStatus(AccountStatus.IN_USE)
+                        .balance(10000L)
+                        .accountNumber("1000000012")
+                        .build()));
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(12L, "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCHED, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("일괄 잔액 사용 - 건별 성공/실패")
+    void useBalanceBatchPartialFailure() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .ID(12L)
+                .name("test")
+                .build();
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(user)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(500L)
+                .accountNumber("1000000012")
+                .build();
+        given(accountRepository.useBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(1, 0);
+        given(accountRepository.findBalanceByAccountNumber(anyString()))
+                .willReturn(Optional.of(balance(1L, 500L)));
+        given(accountRepository.getById(anyLong()))
+                .willReturn(account);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(lockService.lockKey(anyString()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        List<TransactionDto> results = transactionService.useBalanceBatch(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 500L),
+                new UseBalance.Request(12L, "1000000012", 1000L)
+        ));
+
+        //then
+        assertEquals(2, results.size());
+        assertEquals(S, results.get(0).getTransactionResultType());
+        assertEquals(F, results.get(1).getTransactionResultType());
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, results.get(1).getErrorCode());
+        verify(lockService, times(1)).lock("1000000012");
+        verify(lockService, times(1)).unlock("1000000012");
+    }
+
+    @Test
+    @DisplayName("일괄 잔액 사용 - 같은 락을 쓰는 계좌는 락 키 순서대로 한 번만 잠금")
+    void useBalanceBatchLocksSharedStripeOnce() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(lockService.lockKey("1000000012"))
+                .willReturn("0000000007");
+        given(lockService.lockKey("1000000013"))
+                .willReturn("0000000003");
+        given(lockService.lockKey("1000000014"))
+                .willReturn("0000000007");
+        given(accountRepository.useBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber(anyString()))
+                .willReturn(Optional.of(balance(1L, 500L)));
+        given(accountRepository.getById(anyLong()))
+                .willReturn(account);
+
+        //when
+        List<TransactionDto> results = transactionService.useBalanceBatch(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 100L),
+                new UseBalance.Request(12L, "1000000013", 100L),
+                new UseBalance.Request(12L, "1000000014", 100L)
+        ));
+
+        //then
+        assertTrue(results.stream().allMatch(result -> result.getTransactionResultType() == S));
+        InOrder inOrder = inOrder(lockService);
+        inOrder.verify(lockService).lock("1000000013");
+        inOrder.verify(lockService).lock("1000000012");
+        verify(lockService, never()).lock("1000000014");
+        verify(lockService, times(1)).unlock("1000000012");
+        verify(lockService, times(1)).unlock("1000000013");
+        verify(lockService, never()).unlock("1000000014");
+    }
+
+    @Test
+    @DisplayName("일괄 잔액 사용 - 엔진 계좌는 엔진에서, 나머지만 DB 에서 처리")
+    void useBalanceBatchSplitsEngineAccounts() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(balanceEngine.owns("1000000099"))
+                .willReturn(true);
+        given(balanceEngine.useBalance(12L, "1000000099", 300L))
+                .willReturn(Transaction.builder()
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionID("engineTransactionId")
+                        .amount(300L)
+                        .balanceSnapshot(700L)
+                        .build());
+        given(accountRepository.useBalance(eq("1000000012"), anyLong(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber("1000000012"))
+                .willReturn(Optional.of(balance(1L, 500L)));
+        given(accountRepository.getById(anyLong()))
+                .willReturn(account);
+        given(lockService.lockKey("1000000012"))
+                .willReturn("1000000012");
+
+        //when
+        List<TransactionDto> results = transactionService.useBalanceBatch(Arrays.asList(
+                new UseBalance.Request(12L, "1000000099", 300L),
+                new UseBalance.Request(12L, "1000000012", 500L)
+        ));
+
+        //then
+        assertEquals(S, results.get(0).getTransactionResultType());
+        assertEquals("engineTransactionId", results.get(0).getTransactionID());
+        assertEquals(S, results.get(1).getTransactionResultType());
+        verify(balanceEngine, times(1)).useBalance(12L, "1000000099", 300L);
+        verify(lockService, times(0)).lock("1000000099");
+        verify(accountRepository, times(0)).useBalance(eq("1000000099"), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("거래 확인 성공")
+    void queryTransactionSuccess() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(transactionRepository.findByTransactionID(anyString()))
+                .willReturn(Optional.of(Transaction.builder()
+                        .account(account)
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionID("transactionId")
+                        .amount(1000L)
+                        .balanceSnapshot(9000L)
+                        .build()));
+
+        //when
+        TransactionDto transactionDto = transactionService.queryTransaction("transactionId");
+
+        //then
+        assertEquals("1000000012", transactionDto.getAccountNumber());
+        assertEquals("transactionId", transactionDto.getTransactionID());
+        assertEquals(S, transactionDto.getTransactionResultType());
+        assertEquals(1000L, transactionDto.getAmount());
+    }
+
+    @Test
+    @DisplayName("해당 거래 없음 - 거래 확인 실패")
+    void queryTransaction_TransactionNotFound() {
+        //given
+        given(transactionRepository.findByTransactionID(anyString()))
+                .willReturn(Optional.empty());
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.queryTransaction("transactionId"));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("거래 내역 조회 - 다음 페이지가 있으면 마지막 거래 위치를 cursor 로 반환")
+    void getTransactionHistoryWithNextCursor() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "maxHistoryPageSize", 100);
+        LocalDateTime now = LocalDateTime.of(2022, 6, 1, 12, 0);
+        given(accountRepository.findIdByAccountNumber("1000000012"))
+                .willReturn(Optional.of(12L));
+        given(transactionRepository.findHistory(eq(12L), any()))
+                .willReturn(Arrays.asList(
+                        historyRow(3L, now),
+                        historyRow(2L, now.minusMinutes(1)),
+                        historyRow(1L, now.minusMinutes(2))));
+        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
+
+        //when
+        TransactionHistory.Response response =
+                transactionService.getTransactionHistory("1000000012", null, 2);
+
+        //then
+        verify(transactionRepository).findHistory(eq(12L), captor.capture());
+        assertEquals(3, captor.getValue().getPageSize());
+        assertEquals(2, response.getTransactions().size());
+        assertEquals("tx3", response.getTransactions().get(0).getTransactionID());
+        TransactionHistory.Cursor cursor = TransactionHistory.Cursor.decode(response.getNextCursor());
+        assertEquals(2L, cursor.getId());
+        assertEquals(now.minusMinutes(1), cursor.getTransactedAt());
+    }
+
+    @Test
+    @DisplayName("거래 내역 조회 - cursor 이후부터 읽고 마지막 페이지면 cursor 없음")
+    void getTransactionHistoryAfterCursor() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "maxHistoryPageSize", 100);
+        LocalDateTime transactedAt = LocalDateTime.of(2022, 6, 1, 11, 59);
+        given(accountRepository.findIdByAccountNumber("1000000012"))
+                .willReturn(Optional.of(12L));
+        given(transactionRepository.findHistoryAfter(eq(12L), eq(transactedAt), eq(2L), any()))
+                .willReturn(Arrays.asList(historyRow(1L, transactedAt.minusMinutes(1))));
+
+        //when
+        TransactionHistory.Response response = transactionService.getTransactionHistory("1000000012",
+                new TransactionHistory.Cursor(transactedAt, 2L).encode(), 2);
+
+        //then
+        assertEquals(1, response.getTransactions().size());
+        assertNull(response.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("거래 내역 조회 - 보관된 거래를 테이블 거래와 최신순으로 합침")
+    void getTransactionHistoryMergesArchive() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "maxHistoryPageSize", 100);
+        LocalDateTime now = LocalDateTime.of(2022, 6, 1, 12, 0);
+        given(accountRepository.findIdByAccountNumber("1000000012"))
+                .willReturn(Optional.of(12L));
+        given(transactionRepository.findHistory(eq(12L), any()))
+                .willReturn(Arrays.asList(
+                        historyRow(5L, now),
+                        historyRow(3L, now.minusDays(2))));
+        given(transactionArchive.isEnabled()).willReturn(true);
+        given(transactionArchive.newestTransactedAt()).willReturn(now.minusDays(1));
+        given(transactionArchive.history(12L, null, null))
+                .willReturn(Arrays.asList(
+                        historyRow(4L, now.minusDays(1)),
+                        historyRow(2L, now.minusDays(3))).iterator());
+
+        //when
+        TransactionHistory.Response response =
+                transactionService.getTransactionHistory("1000000012", null, 3);
+
+        //then
+        assertEquals(3, response.getTransactions().size());
+        assertEquals("tx5", response.getTransactions().get(0).getTransactionID());
+        assertEquals("tx4", response.getTransactions().get(1).getTransactionID());
+        assertEquals("tx3", response.getTransactions().get(2).getTransactionID());
+        assertEquals(3L, TransactionHistory.Cursor.decode(response.getNextCursor()).getId());
+    }
+
+    @Test
+    @DisplayName("거래 내역 조회 - 테이블 거래가 보관된 거래보다 모두 최신이면 보관 파일을 읽지 않음")
+    @SuppressWarnings("unchecked")
+    void getTransactionHistorySkipsArchiveForNewerRows() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "maxHistoryPageSize", 100);
+        LocalDateTime now = LocalDateTime.of(2022, 6, 1, 12, 0);
+        given(accountRepository.findIdByAccountNumber("1000000012"))
+                .willReturn(Optional.of(12L));
+        given(transactionRepository.findHistory(eq(12L), any()))
+                .willReturn(Arrays.asList(
+                        historyRow(7L, now),
+                        historyRow(6L, now.minusDays(1)),
+                        historyRow(5L, now.minusDays(2))));
+        Iterator<TransactionHistoryRow> archived = mock(Iterator.class);
+        given(transactionArchive.isEnabled()).willReturn(true);
+        given(transactionArchive.newestTransactedAt()).willReturn(now.minusDays(90));
+        given(transactionArchive.history(12L, null, null))
+                .willReturn(archived);
+
+        //when
+        TransactionHistory.Response response =
+                transactionService.getTransactionHistory("1000000012", null, 2);
+
+        //then
+        assertEquals(2, response.getTransactions().size());
+        assertEquals(6L, TransactionHistory.Cursor.decode(response.getNextCursor()).getId());
+        verifyNoInteractions(archived);
+    }
+
+    @Test
+    @DisplayName("잘못된 cursor - 거래 내역 조회 실패")
+    void getTransactionHistory_InvalidCursor() {
+        //given
+        given(accountRepository.findIdByAccountNumber("1000000012"))
+                .willReturn(Optional.of(12L));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.getTransactionHistory("1000000012", "not-a-cursor", 2));
+
+        //then
+        assertEquals(ErrorCode.INVALID_TRANSACTION_CURSOR, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("잔액 사용 취소 성공")
+    void cancelBalanceSuccess() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(AccountUser.builder().ID(12L).build())
+                .accountNumber("1000000012")
+                .build();
+        given(transactionRepository.findByTransactionID(anyString()))
+                .willReturn(Optional.of(usedTransaction(account, 1000L)));
+        given(transactionRepository.existsByOriginalTransactionID(anyString()))
+                .willReturn(false);
+        given(accountRepository.cancelBalance(anyString(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber(anyString()))
+                .willReturn(Optional.of(balance(1L, 10000L)));
+        given(accountRepository.getById(anyLong()))
+                .willReturn(account);
+
+        //when
+        TransactionDto transactionDto = transactionService.cancelBalance("transactionId", "1000000012", 1000L);
+
+        //then
+        assertEquals(CANCELED, transactionDto.getTransactionType());
+        assertEquals(S, transactionDto.getTransactionResultType());
+        assertEquals(1000L, transactionDto.getAmount());
+        assertEquals(10000L, transactionDto.getBalanceSnapshot());
+        verify(accountRepository, times(1)).cancelBalance(eq("1000000012"), eq(1000L), any());
+        verify(readYourWritesTracker, times(1)).recordWrite(12L);
+    }
+
+    @Test
+    @DisplayName("부분 취소 불가 - 잔액 사용 취소 실패")
+    void cancelBalance_CancelMustFully() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(transactionRepository.findByTransactionID(anyString()))
+                .willReturn(Optional.of(usedTransaction(account, 1000L)));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance("transactionId", "1000000012", 500L));
+
+        //then
+        assertEquals(ErrorCode.CANCEL_MUST_FULLY, exception.getErrorCode());
+        verify(accountRepository, times(0)).cancelBalance(anyString(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("이미 취소된 거래 - 잔액 사용 취소 실패")
+    void cancelBalance_TransactionAlreadyCanceled() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountNumber("1000000012")
+                .build();
+        given(transactionRepository.findByTransactionID(anyString()))
+                .willReturn(Optional.of(usedTransaction(account, 1000L)));
+        given(transactionRepository.existsByOriginalTransactionID(anyString()))
+                .willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance("transactionId", "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_ALREADY_CANCELED, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("같은 거래를 동시에 취소 - 유니크 제약 위반을 이미 취소된 거래로 응답")
+    void cancelBalance_ConcurrentCancel() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(AccountUser.builder().ID(12L).build())
+                .accountNumber("1000000012")
+                .build();
+        given(transactionRepository.findByTransactionID(anyString()))
+                .willReturn(Optional.of(usedTransaction(account, 1000L)));
+        given(transactionRepository.existsByOriginalTransactionID(anyString()))
+                .willReturn(false, true);
+        given(accountRepository.cancelBalance(anyString(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber(anyString()))
+                .willReturn(Optional.of(balance(1L, 10000L)));
+        given(accountRepository.getById(anyLong()))
+                .willReturn(account);
+        given(transactionLedgerWriter.append(any()))
+                .willAnswer(invocation -> {
+                    ((Supplier<Transaction>) invocation.getArgument(0)).get();
+                    throw new DataIntegrityViolationException("uk_transaction_original_transaction_id");
+                });
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance("transactionId", "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_ALREADY_CANCELED, exception.getErrorCode());
+        verify(balanceEngine, times(0)).credit(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("잔액 사용 취소 - 엔진에 취소를 반영한 version 과 함께 금액을 더함")
+    void cancelBalanceCreditsEngine() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(AccountUser.builder().ID(12L).build())
+                .accountNumber("1000000099")
+                .build();
+        given(transactionRepository.findByTransactionID(anyString()))
+                .willReturn(Optional.of(usedTransaction(account, 1000L)));
+        given(transactionRepository.existsByOriginalTransactionID(anyString()))
+                .willReturn(false);
+        given(accountRepository.cancelBalance(anyString(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findBalanceByAccountNumber(anyString()))
+                .willReturn(Optional.of(balance(1L, 10000L)));
+        given(accountRepository.getById(anyLong()))
+                .willReturn(account);
+
+        //when
+        transactionService.cancelBalance("transactionId", "1000000099", 1000L);
+
+        //then
+        verify(balanceEngine, times(1)).credit("1000000099", 1000L, 1L);
+    }
+
+    @Test
+    @DisplayName("엔진이 소유한 계좌는 DB 를 거치지 않고 잔액 사용")
+    void useBalanceInEngine() {
+        //given
+        given(balanceEngine.owns(anyString()))
+                .willReturn(true);
+        given(balanceEngine.useBalance(anyLong(), anyString(), anyLong()))
+                .willReturn(Transaction.builder()
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionID("transactionId")
+                        .amount(1000L)
+                        .balanceSnapshot(9000L)
+                        .build());
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(12L, "1000000012", 1000L);
+
+        //then
+        assertEquals("1000000012", transactionDto.getAccountNumber());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+        verify(transactionLedgerWriter, times(0)).append(any());
+        verify(accountRepository, times(0)).useBalance(anyString(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Redis 가 잔액 기준인 계좌는 엔진보다 Redis 에서 잔액 사용")
+    void useBalanceInRedis() {
+        //given
+        given(redisBalanceAuthority.owns(anyString()))
+                .willReturn(true);
+        given(redisBalanceAuthority.useBalance(anyLong(), anyString(), anyLong()))
+                .willReturn(Transaction.builder()
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionID("transactionId")
+                        .amount(1000L)
+                        .balanceSnapshot(9000L)
+                        .build());
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(12L, "1000000012", 1000L);
+
+        //then
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+        verify(balanceEngine, times(0)).useBalance(anyLong(), anyString(), anyLong());
+        verify(transactionLedgerWriter, times(0)).append(any());
+    }
+
+    @Test
+    @DisplayName("실패 거래 기록은 DB 를 거치지 않고 auditor 에 넘김")
+    void saveFailedUseTransaction() {
+        //given
+        //when
+        transactionService.saveFailedUseTransaction("1000000012", 1000L);
+
+        //then
+        verify(failedTransactionAuditor, times(1)).record(USE, "1000000012", 1000L);
+        verify(accountRepository, times(0)).findBalanceByAccountNumber(anyString());
+    }
+
+    private static Transaction usedTransaction(Account account, Long amount) {
+        return Transaction.builder()
+                .account(account)
+                .transactionType(USE)
+                .transactionResultType(S)
+                .transactionID("transactionId")
+                .amount(amount)
+                .balanceSnapshot(9000L)
+                .build();
+    }
+
+    private static AccountBalance balance(Long id, Long balance) {
+        return new AccountBalance() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getAccountNumber() {
+                return null;
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+
+            @Override
+            public Long getVersion() {
+                return 1L;
+            }
+        };
+    }
+
+    private static TransactionHistoryRow historyRow(Long id, LocalDateTime transactedAt) {
+        TransactionHistoryRow row = mock(TransactionHistoryRow.class);
+        lenient().when(row.getId()).thenReturn(id);
+        lenient().when(row.getTransactedAt()).thenReturn(transactedAt);
+        lenient().when(row.getTransactionID()).thenReturn("tx" + id);
+        lenient().when(row.getTransactionType()).thenReturn(USE);
+        lenient().when(row.getTransactionResultType()).thenReturn(S);
+        return row;
+    }
+}